@@ -0,0 +1,34 @@
+package de.sk9.commons.fswatchdog.core;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.stream.Stream;
+
+/**
+ * Summary of the events below {@code directory} (including the directory
+ * itself) that were collapsed during a bulk operation.
+ */
+public record AggregateEvent(Path directory, int created, int modified, int deleted) {
+
+	public int total() {
+		return created + modified + deleted;
+	}
+
+	/**
+	 * Lists the current content of the directory lazily, for consumers that
+	 * need the individual paths. Deleted paths are only reflected by their
+	 * absence; the stream must be closed.
+	 */
+	public Stream<Path> walk() throws IOException {
+		return walk(directory);
+	}
+
+	/**
+	 * Lists the current content of a directory lazily, e.g. of one reported by
+	 * a single create event; the stream must be closed.
+	 */
+	public static Stream<Path> walk(Path directory) throws IOException {
+		return Files.isDirectory(directory) ? Files.walk(directory) : Stream.empty();
+	}
+}
@@ -0,0 +1,14 @@
+package de.sk9.commons.fswatchdog.core;
+
+/**
+ * A {@link Subscriber} that accepts collapsed bulk changes from an
+ * {@link AggregatingSubscriber}.
+ */
+public interface AggregateSubscriber extends Subscriber {
+
+	/**
+	 * Called instead of the individual callbacks for the events collapsed into
+	 * the summary.
+	 */
+	void onAggregate(AggregateEvent summary);
+}
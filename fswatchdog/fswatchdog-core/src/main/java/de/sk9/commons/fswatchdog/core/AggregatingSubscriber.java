@@ -0,0 +1,243 @@
+package de.sk9.commons.fswatchdog.core;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Decorator that collapses bursts of events into {@link AggregateEvent}s. As
+ * long as no directory below the watched root receives more than
+ * {@code threshold} events in its subtree within {@code window}, events are
+ * passed on one by one. Above that, the deepest directory that received most
+ * of these events is aggregated: all further events in its subtree are only
+ * counted, and the summary is delivered once the subtree has been quiet for
+ * {@code window}. Events delivered before the threshold was crossed are not
+ * part of the summary.
+ * <p>
+ * Created directories are reported as a whole, see
+ * {@link Subscriber#reportsCreatedDirectoriesOnly()}; their content can be
+ * listed with {@link AggregateEvent#walk(Path)}.
+ */
+public class AggregatingSubscriber implements Subscriber, AutoCloseable {
+	private static Logger log = LogManager.getLogger(AggregatingSubscriber.class);
+
+	private final AggregateSubscriber delegate;
+	private final Path root;
+	private final int threshold;
+	private final long windowNanos;
+	private final Map<Path, Rate> rates = new HashMap<>();
+	private final Map<Path, Aggregate> aggregating = new HashMap<>();
+	private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+		Thread thread = new Thread(r, "fswatchdog-aggregation");
+		thread.setDaemon(true);
+		return thread;
+	});
+
+	private enum Kind {
+		CREATE, MODIFY, DELETE
+	}
+
+	private static class Rate {
+		long windowStart;
+		int count;
+	}
+
+	private static class Aggregate {
+		long lastEvent;
+		int created;
+		int modified;
+		int deleted;
+
+		void add(Kind kind, long now) {
+			lastEvent = now;
+			switch (kind) {
+			case CREATE:
+				created++;
+				break;
+			case MODIFY:
+				modified++;
+				break;
+			case DELETE:
+				deleted++;
+				break;
+			}
+		}
+
+		void addAll(Aggregate other) {
+			created += other.created;
+			modified += other.modified;
+			deleted += other.deleted;
+			lastEvent = Math.max(lastEvent, other.lastEvent);
+		}
+	}
+
+	/**
+	 * @param root the watched root, events are counted for it and the
+	 *             directories below
+	 */
+	public AggregatingSubscriber(AggregateSubscriber delegate, Path root, int threshold, Duration window) {
+		if (threshold <= 0) {
+			throw new IllegalArgumentException("threshold must be positive");
+		}
+		this.delegate = delegate;
+		this.root = root;
+		this.threshold = threshold;
+		this.windowNanos = window.toNanos();
+		long tick = Math.max(1, windowNanos / 2);
+		scheduler.scheduleWithFixedDelay(this::flushQuiet, tick, tick, TimeUnit.NANOSECONDS);
+	}
+
+	@Override
+	public void onCreate(Path path) {
+		event(path, Kind.CREATE);
+	}
+
+	@Override
+	public void onModify(Path path) {
+		event(path, Kind.MODIFY);
+	}
+
+	@Override
+	public void onDelete(Path path) {
+		event(path, Kind.DELETE);
+	}
+
+	@Override
+	public synchronized void onOverflow() {
+		delegate.onOverflow();
+	}
+
+	@Override
+	public synchronized void onError(IOException ioe) {
+		delegate.onError(ioe);
+	}
+
+	@Override
+	public boolean reportsCreatedDirectoriesOnly() {
+		return true;
+	}
+
+	/**
+	 * Delivers all pending summaries and stops the flush timer.
+	 */
+	@Override
+	public synchronized void close() {
+		scheduler.shutdownNow();
+		List<Path> dirs = new ArrayList<>(aggregating.keySet());
+		dirs.forEach(dir -> deliver(dir, aggregating.remove(dir)));
+		rates.clear();
+	}
+
+	private synchronized void event(Path path, Kind kind) {
+		long now = System.nanoTime();
+		Aggregate aggregate = aggregateOf(path);
+		if (aggregate != null) {
+			aggregate.add(kind, now);
+			return;
+		}
+
+		List<Path> ancestors = new ArrayList<>();
+		List<Rate> ancestorRates = new ArrayList<>();
+		int crossed = -1;
+		for (Path p = path.getParent(); p != null && p.startsWith(root); p = p.getParent()) {
+			Rate rate = rates.computeIfAbsent(p, d -> new Rate());
+			if (rate.count == 0 || now - rate.windowStart > windowNanos) {
+				rate.windowStart = now;
+				rate.count = 0;
+			}
+			if (++rate.count > threshold && crossed < 0) {
+				crossed = ancestors.size();
+			}
+			ancestors.add(p);
+			ancestorRates.add(rate);
+		}
+		if (crossed < 0) {
+			deliver(path, kind);
+			return;
+		}
+		// aggregate the deepest directory that holds most of the burst
+		int chosen = crossed;
+		for (int i = 0; i < crossed; i++) {
+			if (2 * ancestorRates.get(i).count > ancestorRates.get(crossed).count) {
+				chosen = i;
+				break;
+			}
+		}
+		Path dir = ancestors.get(chosen);
+		int count = ancestorRates.get(chosen).count;
+		// ancestors only keep counting the events outside the aggregated directory
+		for (Path p = dir; p != null && p.startsWith(root); p = p.getParent()) {
+			Rate rate = rates.get(p);
+			rate.count = Math.max(0, rate.count - count);
+		}
+
+		aggregate = new Aggregate();
+		// nested directories that are already aggregated are merged into this one
+		for (Iterator<Map.Entry<Path, Aggregate>> it = aggregating.entrySet().iterator(); it.hasNext();) {
+			Map.Entry<Path, Aggregate> e = it.next();
+			if (e.getKey().startsWith(dir)) {
+				aggregate.addAll(e.getValue());
+				it.remove();
+			}
+		}
+		aggregate.add(kind, now);
+		aggregating.put(dir, aggregate);
+		Path aggregated = dir;
+		log.debug(() -> "aggregating events below " + aggregated);
+	}
+
+	private Aggregate aggregateOf(Path path) {
+		for (Path p = path; p != null && p.startsWith(root); p = p.getParent()) {
+			Aggregate aggregate = aggregating.get(p);
+			if (aggregate != null) {
+				return aggregate;
+			}
+		}
+		return null;
+	}
+
+	private synchronized void flushQuiet() {
+		long now = System.nanoTime();
+		for (Iterator<Map.Entry<Path, Aggregate>> it = aggregating.entrySet().iterator(); it.hasNext();) {
+			Map.Entry<Path, Aggregate> e = it.next();
+			if (now - e.getValue().lastEvent >= windowNanos) {
+				it.remove();
+				deliver(e.getKey(), e.getValue());
+			}
+		}
+		rates.values().removeIf(rate -> now - rate.windowStart > windowNanos);
+	}
+
+	private void deliver(Path path, Kind kind) {
+		switch (kind) {
+		case CREATE:
+			delegate.onCreate(path);
+			break;
+		case MODIFY:
+			delegate.onModify(path);
+			break;
+		case DELETE:
+			delegate.onDelete(path);
+			break;
+		}
+	}
+
+	private void deliver(Path dir, Aggregate aggregate) {
+		try {
+			delegate.onAggregate(new AggregateEvent(dir, aggregate.created, aggregate.modified, aggregate.deleted));
+		} catch (RuntimeException e) {
+			log.warn(() -> "subscriber failed handling the summary of " + dir + ", cause: " + e);
+		}
+	}
+}
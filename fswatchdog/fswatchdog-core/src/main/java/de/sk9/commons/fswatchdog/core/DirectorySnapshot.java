@@ -0,0 +1,164 @@
+package de.sk9.commons.fswatchdog.core;
+
+import java.io.IOException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Predicate;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Last-modified/size state of all entries below a root directory. Two
+ * snapshots of the same root can be compared to replay the changes in between
+ * as create/modify/delete callbacks, e.g. after the kernel event queue
+ * overflowed. A snapshot can be kept current with {@link #update(Path)} and
+ * {@link #remove(Path)} while events are delivered normally.
+ */
+public class DirectorySnapshot {
+	private static Logger log = LogManager.getLogger(DirectorySnapshot.class);
+
+	private final Path root;
+	private final Map<Path, State> entries;
+
+	private record State(long lastModified, long size, boolean directory) {
+	}
+
+	private DirectorySnapshot(Path root, Map<Path, State> entries) {
+		this.root = root;
+		this.entries = entries;
+	}
+
+	public static DirectorySnapshot take(Path root) throws IOException {
+		return take(root, dir -> false);
+	}
+
+	/**
+	 * @param skip directories below the root whose content is tracked
+	 *             elsewhere; they are part of the snapshot, their content is not
+	 */
+	static DirectorySnapshot take(Path root, Predicate<Path> skip) throws IOException {
+		Map<Path, State> entries = new HashMap<>();
+		Files.walkFileTree(root, new SimpleFileVisitor<Path>() {
+			@Override
+			public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) {
+				if (!dir.equals(root)) {
+					entries.put(dir, new State(attrs.lastModifiedTime().toMillis(), 0, true));
+					if (skip.test(dir)) {
+						return FileVisitResult.SKIP_SUBTREE;
+					}
+				}
+				return FileVisitResult.CONTINUE;
+			}
+
+			@Override
+			public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+				entries.put(file, new State(attrs.lastModifiedTime().toMillis(), attrs.size(), false));
+				return FileVisitResult.CONTINUE;
+			}
+
+			@Override
+			public FileVisitResult visitFileFailed(Path file, IOException ex) {
+				// vanished between listing and stat - it simply is not part of the snapshot
+				log.debug(() -> "skipping " + file + ", cause: " + ex);
+				return FileVisitResult.CONTINUE;
+			}
+		});
+		return new DirectorySnapshot(root, entries);
+	}
+
+	static DirectorySnapshot empty(Path root) {
+		return new DirectorySnapshot(root, new HashMap<>());
+	}
+
+	/**
+	 * @return a copy without the content of {@code dir}, which itself is kept
+	 */
+	DirectorySnapshot withoutContentOf(Path dir) {
+		Map<Path, State> remaining = new HashMap<>(entries);
+		remaining.keySet().removeIf(p -> p.startsWith(dir) && !p.equals(dir));
+		return new DirectorySnapshot(root, remaining);
+	}
+
+	/**
+	 * @return the content of {@code dir} as a snapshot rooted there
+	 */
+	DirectorySnapshot contentOf(Path dir) {
+		Map<Path, State> content = new HashMap<>();
+		entries.forEach((p, state) -> {
+			if (p.startsWith(dir) && !p.equals(dir)) {
+				content.put(p, state);
+			}
+		});
+		return new DirectorySnapshot(dir, content);
+	}
+
+	public void update(Path path) {
+		try {
+			BasicFileAttributes attrs = Files.readAttributes(path, BasicFileAttributes.class);
+			entries.put(path, new State(attrs.lastModifiedTime().toMillis(), attrs.size(), attrs.isDirectory()));
+		} catch (IOException ex) {
+			entries.remove(path);
+		}
+	}
+
+	public void remove(Path path) {
+		entries.remove(path);
+	}
+
+	public Path getRoot() {
+		return root;
+	}
+
+	public int size() {
+		return entries.size();
+	}
+
+	public boolean contains(Path path) {
+		return entries.containsKey(path);
+	}
+
+	int directoryCount() {
+		return (int) entries.values().stream().filter(State::directory).count();
+	}
+
+	/**
+	 * Reports every difference between this (older) snapshot and the given newer
+	 * one to the subscriber. Directory timestamps are not compared, only their
+	 * existence. The content of a new directory is left out if the subscriber
+	 * {@link Subscriber#reportsCreatedDirectoriesOnly() asks for it}.
+	 *
+	 * @return the number of reported changes
+	 */
+	public int diff(DirectorySnapshot newer, Subscriber subscriber) {
+		int changes = 0;
+		boolean createdDirectoriesOnly = subscriber.reportsCreatedDirectoriesOnly();
+		for (Map.Entry<Path, State> e : newer.entries.entrySet()) {
+			State old = entries.get(e.getKey());
+			if (old == null) {
+				Path parent = e.getKey().getParent();
+				if (createdDirectoriesOnly && newer.entries.containsKey(parent) && !entries.containsKey(parent)) {
+					continue;
+				}
+				subscriber.onCreate(e.getKey());
+				changes++;
+			} else if (!e.getValue().directory()
+					&& (old.lastModified() != e.getValue().lastModified() || old.size() != e.getValue().size())) {
+				subscriber.onModify(e.getKey());
+				changes++;
+			}
+		}
+		for (Path path : entries.keySet()) {
+			if (!newer.entries.containsKey(path)) {
+				subscriber.onDelete(path);
+				changes++;
+			}
+		}
+		return changes;
+	}
+}
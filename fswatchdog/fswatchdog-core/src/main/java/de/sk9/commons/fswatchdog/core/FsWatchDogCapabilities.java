@@ -0,0 +1,43 @@
+package de.sk9.commons.fswatchdog.core;
+
+import java.time.Duration;
+import java.util.Set;
+
+/**
+ * What a {@link FsWatchDogProvider} can do. {@code latency} is the typical
+ * delay between a change and its event. {@code fileStoreTypes} holds the
+ * {@link java.nio.file.FileStore#type()} values the backend works on; the
+ * pseudo types {@link #LOCAL} and {@link #ANY} match every file store that is
+ * not a network file system and every file store.
+ */
+public record FsWatchDogCapabilities(boolean recursive, Duration latency, Set<String> fileStoreTypes) {
+	public static final String LOCAL = "local";
+	public static final String ANY = "*";
+
+	/**
+	 * File systems whose changes made by other hosts are not reported by kernel
+	 * notifications.
+	 */
+	public static final Set<String> NETWORK_FILE_STORE_TYPES = Set.of("nfs", "nfs4", "cifs", "smb", "smb2", "smbfs",
+			"smb3", "afpfs", "fuse.sshfs", "9p", "davfs", "fuse.davfs2", "ncpfs", "webdav");
+
+	/**
+	 * @return how specifically the file store type is supported: 2 if it is
+	 *         named, 1 if it matches {@link #LOCAL}, 0 for {@link #ANY} and -1 if
+	 *         it is not supported
+	 */
+	public int match(String fileStoreType) {
+		if (fileStoreTypes.contains(fileStoreType)) {
+			return 2;
+		} else if (fileStoreTypes.contains(LOCAL) && !NETWORK_FILE_STORE_TYPES.contains(fileStoreType)) {
+			return 1;
+		} else if (fileStoreTypes.contains(ANY)) {
+			return 0;
+		}
+		return -1;
+	}
+
+	public boolean supports(String fileStoreType) {
+		return match(fileStoreType) >= 0;
+	}
+}
@@ -2,18 +2,33 @@ package de.sk9.commons.fswatchdog.core;
 
 import java.io.IOException;
 import java.nio.file.Path;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
 
+import io.methvin.watcher.DirectoryChangeEvent;
 import io.methvin.watcher.DirectoryWatcher;
 
 public class FsWatchDogDirectoryWatcher implements FsWatchDog {
+	private static final long BURST_GAP_NANOS = TimeUnit.MILLISECONDS.toNanos(50);
 
 	private DirectoryWatcher watcher;
+	// directories created in the current burst, only used by the listener thread
+	private final Set<Path> created = new HashSet<>();
+	private long lastCreate;
 
 	public FsWatchDogDirectoryWatcher(Path dir, Subscriber subscriber) throws IOException {
 		this.watcher = DirectoryWatcher.builder().path(dir) // or use paths(directoriesToWatch)
 				.listener(event -> {
+					if (event.eventType() != DirectoryChangeEvent.EventType.CREATE) {
+						created.clear();
+					}
 					switch (event.eventType()) {
 					case CREATE:
+						if (subscriber.reportsCreatedDirectoriesOnly()
+								&& isContentOfCreated(event.path(), event.isDirectory())) {
+							break;
+						}
 						subscriber.onCreate(event.path());
 						break;
 					case MODIFY:
@@ -37,6 +52,26 @@ public class FsWatchDogDirectoryWatcher implements FsWatchDog {
 		watcher.watchAsync();
 	}
 
+	/**
+	 * The watcher reports the content of a new directory right after the
+	 * directory itself; any other event or a pause ends that burst.
+	 */
+	private boolean isContentOfCreated(Path path, boolean directory) {
+		long now = System.nanoTime();
+		if (now - lastCreate > BURST_GAP_NANOS) {
+			created.clear();
+		}
+		lastCreate = now;
+		boolean content = created.contains(path.getParent());
+		if (!content) {
+			created.clear();
+		}
+		if (directory) {
+			created.add(path);
+		}
+		return content;
+	}
+
 	@Override
 	public void close() throws InterruptedException, IOException {
 		watcher.close();
@@ -0,0 +1,30 @@
+package de.sk9.commons.fswatchdog.core;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Set;
+
+/**
+ * directory-watcher, which uses the native recursive APIs where the platform
+ * has them (e.g. FSEvents on macOS). The default for local file systems.
+ */
+public class FsWatchDogDirectoryWatcherProvider implements FsWatchDogProvider {
+	private static final FsWatchDogCapabilities CAPABILITIES = new FsWatchDogCapabilities(true, Duration.ZERO,
+			Set.of(FsWatchDogCapabilities.LOCAL));
+
+	@Override
+	public String name() {
+		return "directory-watcher";
+	}
+
+	@Override
+	public FsWatchDogCapabilities capabilities() {
+		return CAPABILITIES;
+	}
+
+	@Override
+	public FsWatchDog create(Path dir, Subscriber subscriber) throws IOException {
+		return new FsWatchDogDirectoryWatcher(dir, subscriber);
+	}
+}
@@ -1,31 +1,113 @@
 package de.sk9.commons.fswatchdog.core;
 
 import java.io.IOException;
+import java.lang.reflect.Constructor;
 import java.lang.reflect.InvocationTargetException;
+import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.ServiceLoader;
+import java.util.concurrent.ConcurrentHashMap;
 
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
 
+/**
+ * Creates the {@link FsWatchDog} for a root directory with the best
+ * {@link FsWatchDogProvider} for its file store: the most specific match of
+ * the file store type, then recursive support, then the lowest latency, then
+ * the highest priority; providers listed first in the service file win ties
+ * only if all of these are equal. Providers are loaded
+ * once, the choice is cached per file store type.
+ * <p>
+ * The system property {@code de.sk9.commons.fswatchdog.core.FsWatchDog}
+ * overrides the choice with a provider name or the class name of an
+ * implementation with a {@code (Path, Subscriber)} constructor.
+ */
 public class FsWatchDogFactory {
-	
+	private static Logger log = LogManager.getLogger(FsWatchDogFactory.class);
+
+	private static final Map<String, Optional<FsWatchDogProvider>> RESOLVED = new ConcurrentHashMap<>();
+	private static final Map<String, Constructor<? extends FsWatchDog>> CONSTRUCTORS = new ConcurrentHashMap<>();
+
 	private FsWatchDogFactory() {
 	}
-	
+
 	public static FsWatchDogFactory getInstance() {
 		return new FsWatchDogFactory();
 	}
-	
+
 	public FsWatchDog create(Path dir, Subscriber subscriber) throws IOException {
 		String implClassname = System.getProperty(FsWatchDog.class.getCanonicalName());
 		if (null == implClassname || implClassname.isEmpty()) {
-			return new FsWatchDogDirectoryWatcher(dir, subscriber);
-		} else {
-			try {
-				return (FsWatchDog) Class.forName(implClassname).getDeclaredConstructor(Path.class, Subscriber.class).newInstance(dir, subscriber);
-			} catch (InstantiationException | IllegalAccessException | IllegalArgumentException
-					| InvocationTargetException | NoSuchMethodException | SecurityException
-					| ClassNotFoundException e) {
-				throw new RuntimeException(e);
-			}
+			return providerFor(dir).create(dir, subscriber);
+		}
+		Optional<FsWatchDogProvider> named = Providers.ALL.stream()
+				.filter(p -> p.name().equals(implClassname)).findFirst();
+		if (named.isPresent()) {
+			return named.get().create(dir, subscriber);
+		}
+		try {
+			return CONSTRUCTORS.computeIfAbsent(implClassname, FsWatchDogFactory::constructor)
+					.newInstance(dir, subscriber);
+		} catch (InstantiationException | IllegalAccessException | IllegalArgumentException
+				| InvocationTargetException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	/**
+	 * @return the provider used for roots on the file store of {@code dir}
+	 */
+	public FsWatchDogProvider providerFor(Path dir) throws IOException {
+		String type = Files.getFileStore(dir).type();
+		return RESOLVED.computeIfAbsent(type, t -> select(t, Providers.ALL))
+				.orElseThrow(() -> new IOException("no FsWatchDog provider supports file store type " + type));
+	}
+
+	public List<FsWatchDogProvider> providers() {
+		return Providers.ALL;
+	}
+
+	static Optional<FsWatchDogProvider> select(String fileStoreType, List<FsWatchDogProvider> providers) {
+		Optional<FsWatchDogProvider> provider = providers.stream()
+				.filter(p -> p.capabilities().supports(fileStoreType))
+				.sorted(Comparator
+						.comparingInt((FsWatchDogProvider p) -> -p.capabilities().match(fileStoreType))
+						.thenComparing(p -> !p.capabilities().recursive())
+						.thenComparing(p -> p.capabilities().latency())
+						.thenComparingInt(p -> -p.priority()))
+				.findFirst();
+		log.debug(() -> "file store type " + fileStoreType + ": "
+				+ provider.map(FsWatchDogProvider::name).orElse("no provider"));
+		return provider;
+	}
+
+	@SuppressWarnings("unchecked")
+	private static Constructor<? extends FsWatchDog> constructor(String implClassname) {
+		try {
+			return (Constructor<? extends FsWatchDog>) Class.forName(implClassname)
+					.getDeclaredConstructor(Path.class, Subscriber.class);
+		} catch (NoSuchMethodException | SecurityException | ClassNotFoundException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	/**
+	 * Loads the providers on first use.
+	 */
+	private static class Providers {
+		static final List<FsWatchDogProvider> ALL;
+
+		static {
+			List<FsWatchDogProvider> providers = new ArrayList<>();
+			ServiceLoader.load(FsWatchDogProvider.class, FsWatchDogFactory.class.getClassLoader())
+					.forEach(providers::add);
+			ALL = List.copyOf(providers);
 		}
 	}
 }
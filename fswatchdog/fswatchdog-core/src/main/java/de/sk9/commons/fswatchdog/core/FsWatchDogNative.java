@@ -7,6 +7,7 @@ import static java.nio.file.StandardWatchEventKinds.ENTRY_MODIFY;
 import static java.nio.file.StandardWatchEventKinds.OVERFLOW;
 
 import java.io.IOException;
+import java.nio.file.FileSystemException;
 import java.nio.file.FileSystems;
 import java.nio.file.FileVisitResult;
 import java.nio.file.Files;
@@ -17,32 +18,94 @@ import java.nio.file.WatchEvent.Kind;
 import java.nio.file.WatchKey;
 import java.nio.file.WatchService;
 import java.nio.file.attribute.BasicFileAttributes;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.Executor;
 import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
+/**
+ * Watches a tree with one native watch per directory, within a budget of
+ * {@code maxWatches} watches (system property
+ * {@code de.sk9.commons.fswatchdog.core.FsWatchDogNative.maxWatches}). When the
+ * budget or the kernel limit (e.g. {@code fs.inotify.max_user_watches}) is
+ * reached, the remaining subtrees are polled every {@code coldInterval} by
+ * comparing {@link DirectorySnapshot}s. Polling runs on its own thread, so
+ * large cold subtrees do not hold up the events of watched directories; its
+ * changes are handed over and reported by the event thread. The directories
+ * of a polled subtree that changed are promoted to native watches, each with
+ * its subtree, while the rest of the subtree stays polled; if the budget is
+ * exhausted, the hot subtrees that have been idle the longest are demoted to
+ * polling to make room. Subtrees with activity during the last interval are
+ * never demoted.
+ */
 //@SuppressWarnings("java:S125")
 class FsWatchDogNative implements FsWatchDog {
 	private static Logger log = LogManager.getLogger(FsWatchDogNative.class);
 
+	static final String MAX_WATCHES_PROPERTY = FsWatchDogNative.class.getName() + ".maxWatches";
+	static final Duration DEFAULT_COLD_INTERVAL = Duration.ofSeconds(10);
+
+	private final Path root;
 	private WatchService watcher;
 	private final Map<WatchKey, Path> keys;
 	private Subscriber subscriber;
 
 	private boolean configChanged;
 
+	// watch budget, only changed by the constructor and the event thread
+	private int maxWatches;
+	private final long coldIntervalNanos;
+	// how long the event thread waits for events before it checks for polled changes
+	private final long handoffNanos;
+	private final Map<Path, WatchKey> watched = new ConcurrentHashMap<>();
+	private final Map<Path, Long> activity = new HashMap<>();
+	// cold subtree roots, possibly nested in other cold subtrees whose snapshots skip them
+	private final Map<Path, DirectorySnapshot> cold = new ConcurrentHashMap<>();
+	private final Queue<ColdPoll> coldPolls = new ConcurrentLinkedQueue<>();
+	private volatile ScheduledExecutorService coldPoller;
+
+	/**
+	 * Changes the poller found in a cold subtree since {@code older};
+	 * {@code newer} is {@code null} if the subtree root is gone.
+	 */
+	private record ColdPoll(Path root, DirectorySnapshot older, DirectorySnapshot newer, Recorder changes) {
+	}
+
 	public FsWatchDogNative(Path dir, Subscriber subscriber) {
 		this(dir, Executors.newSingleThreadExecutor(), subscriber);
 	}
 
 	public FsWatchDogNative(Path dir, Executor executor, Subscriber subscriber) {
+		this(dir, executor, subscriber, Integer.getInteger(MAX_WATCHES_PROPERTY, Integer.MAX_VALUE),
+				DEFAULT_COLD_INTERVAL);
+	}
+
+	public FsWatchDogNative(Path dir, Executor executor, Subscriber subscriber, int maxWatches,
+			Duration coldInterval) {
+		this.root = dir;
 		this.subscriber = subscriber;
+		this.maxWatches = Math.max(1, maxWatches);
+		this.coldIntervalNanos = coldInterval.toNanos();
+		this.handoffNanos = Math.max(1, coldIntervalNanos / 10);
 		keys = new HashMap<>();
 
 		try {
@@ -61,6 +124,10 @@ class FsWatchDogNative implements FsWatchDog {
 	}
 
 	public void close() throws InterruptedException, IOException {
+		ScheduledExecutorService poller = coldPoller;
+		if (poller != null) {
+			poller.shutdownNow();
+		}
 		watcher.close();
 	}
 
@@ -69,8 +136,37 @@ class FsWatchDogNative implements FsWatchDog {
 		return (WatchEvent<T>) event;
 	}
 
-	private void register(Path dir) throws IOException {
-		WatchKey key = dir.register(watcher, ENTRY_CREATE, ENTRY_DELETE, ENTRY_MODIFY);
+	int watchCount() {
+		return watched.size();
+	}
+
+	Set<Path> coldSubtrees() {
+		return Set.copyOf(cold.keySet());
+	}
+
+	/**
+	 * @return {@code false} if the budget is used up, the directory is not
+	 *         watched then
+	 */
+	private boolean register(Path dir) throws IOException {
+		if (watched.size() >= maxWatches && !watched.containsKey(dir)) {
+			return false;
+		}
+		WatchKey key;
+		try {
+			key = dir.register(watcher, ENTRY_CREATE, ENTRY_DELETE, ENTRY_MODIFY);
+		} catch (FileSystemException ex) {
+			throw ex;
+		} catch (IOException ex) {
+			if (watched.isEmpty()) {
+				throw ex;
+			}
+			// the kernel limit is lower than the budget
+			log.warn(() -> "watch limit reached at " + watched.size() + " watches, cause: " + ex);
+			maxWatches = watched.size();
+			return false;
+		}
+		watched.put(dir, key);
 		Path prev = keys.get(key);
 		if (prev == null) {
 			log.debug(() -> "registering directory " + dir);
@@ -81,6 +177,7 @@ class FsWatchDogNative implements FsWatchDog {
 		}
 		keys.put(key, dir);
 		configChanged = true;
+		return true;
 	}
 
 	private void registerAll(final Path start) throws IOException {
@@ -88,8 +185,17 @@ class FsWatchDogNative implements FsWatchDog {
 		Files.walkFileTree(start, new SimpleFileVisitor<Path>() {
 			@Override
 			public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
-				register(dir);
-				return FileVisitResult.CONTINUE;
+				if (register(dir)) {
+					// a nested cold subtree is watched from now on
+					cold.remove(dir);
+					return FileVisitResult.CONTINUE;
+				}
+				if (!cold.containsKey(dir)) {
+					cold.put(dir, DirectorySnapshot.take(dir, FsWatchDogNative.this::isTrackedSeparately));
+					startColdPolling();
+					log.debug(() -> "polling directory " + dir);
+				}
+				return FileVisitResult.SKIP_SUBTREE;
 			}
 
 			@Override
@@ -112,16 +218,21 @@ class FsWatchDogNative implements FsWatchDog {
 
 			WatchKey key;
 			try {
-				key = watcher.take();
+				applyColdPolls();
+				key = watcher.poll(cold.isEmpty() ? coldIntervalNanos : handoffNanos, TimeUnit.NANOSECONDS);
 			} catch (InterruptedException x) {
 				Thread.currentThread().interrupt();
 				return;
 			}
+			if (key == null) {
+				continue;
+			}
 
 			Path dir = keys.get(key);
 			if (dir == null) {
 				log.warn(() -> "unknown watch key " + key);
 			} else {
+				activity.put(dir, System.nanoTime());
 
 				for (WatchEvent<?> event : key.pollEvents()) {
 					Kind<?> kind = event.kind();
@@ -140,11 +251,17 @@ class FsWatchDogNative implements FsWatchDog {
 						if (kind == ENTRY_CREATE) {
 							try {
 								if (Files.isDirectory(child, NOFOLLOW_LINKS)) {
-									try (Stream<Path> walk = Files.walk(child)) {
-										walk.forEach(p -> {
-											log.debug(() -> "created: " + p);
-											subscriber.onCreate(p);
-										});
+									if (subscriber.reportsCreatedDirectoriesOnly()) {
+										// the content is listed by the consumer if it needs it
+										log.debug(() -> "created: " + child);
+										subscriber.onCreate(child);
+									} else {
+										try (Stream<Path> walk = Files.walk(child)) {
+											walk.forEach(p -> {
+												log.debug(() -> "created: " + p);
+												subscriber.onCreate(p);
+											});
+										}
 									}
 									registerAll(child);
 								} else {
@@ -168,6 +285,8 @@ class FsWatchDogNative implements FsWatchDog {
 				boolean valid = key.reset();
 				if (!valid) {
 					keys.remove(key);
+					watched.remove(dir, key);
+					activity.remove(dir);
 
 					// all directories are inaccessible
 					if (keys.isEmpty()) {
@@ -177,4 +296,271 @@ class FsWatchDogNative implements FsWatchDog {
 			}
 		}
 	}
+
+	/**
+	 * Starts the poller on first use, so fully watched trees need no thread
+	 * for it.
+	 */
+	private void startColdPolling() {
+		if (coldPoller == null) {
+			ScheduledExecutorService poller = Executors.newSingleThreadScheduledExecutor(r -> {
+				Thread thread = new Thread(r, "fswatchdog-cold-poller");
+				thread.setDaemon(true);
+				return thread;
+			});
+			poller.scheduleWithFixedDelay(this::pollColdSubtrees, coldIntervalNanos, coldIntervalNanos,
+					TimeUnit.NANOSECONDS);
+			coldPoller = poller;
+		}
+	}
+
+	/**
+	 * @return whether the content of the directory is watched or polled on its
+	 *         own, and so skipped by the snapshot of an enclosing cold subtree
+	 */
+	private boolean isTrackedSeparately(Path dir) {
+		return watched.containsKey(dir) || cold.containsKey(dir);
+	}
+
+	/**
+	 * Runs on the poller thread: compares every cold subtree with its last
+	 * snapshot and hands the changes over to the event thread.
+	 */
+	private void pollColdSubtrees() {
+		for (Map.Entry<Path, DirectorySnapshot> e : cold.entrySet()) {
+			Path coldRoot = e.getKey();
+			DirectorySnapshot older = e.getValue();
+			Recorder changes = new Recorder();
+			try {
+				if (!Files.isDirectory(coldRoot, NOFOLLOW_LINKS)) {
+					// the deletion of the root itself is reported by the watch or snapshot of its parent
+					older.diff(DirectorySnapshot.empty(coldRoot), changes);
+					coldPolls.add(new ColdPoll(coldRoot, older, null, changes));
+					continue;
+				}
+				DirectorySnapshot newer = DirectorySnapshot.take(coldRoot, this::isTrackedSeparately);
+				if (older.diff(newer, changes) > 0) {
+					coldPolls.add(new ColdPoll(coldRoot, older, newer, changes));
+				}
+			} catch (IOException ex) {
+				changes.onError(ex);
+				coldPolls.add(new ColdPoll(coldRoot, older, older, changes));
+			} catch (RuntimeException ex) {
+				// a failing poll must not stop the polling
+				log.warn(() -> "polling " + coldRoot + " failed, cause: " + ex);
+			}
+		}
+	}
+
+	/**
+	 * Reports the changes handed over by the poller and promotes the changed
+	 * directories. Results for subtrees that were promoted, demoted or split
+	 * meanwhile are dropped; the next poll finds their changes again.
+	 */
+	private void applyColdPolls() {
+		for (ColdPoll poll = coldPolls.poll(); poll != null; poll = coldPolls.poll()) {
+			Path coldRoot = poll.root();
+			if (cold.get(coldRoot) != poll.older()) {
+				continue;
+			}
+			poll.changes().replay(subscriber);
+			if (poll.newer() == null) {
+				cold.remove(coldRoot);
+			} else if (poll.newer() != poll.older()) {
+				try {
+					promote(coldRoot, poll.newer(), poll.changes().directories());
+				} catch (IOException ex) {
+					subscriber.onError(ex);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Watches the changed directories natively, each with its subtree; the rest
+	 * of the cold subtree stays polled.
+	 */
+	private void promote(Path coldRoot, DirectorySnapshot snapshot, Set<Path> changed) throws IOException {
+		Set<Path> dirs = outermost(changed.stream().filter(dir -> Files.isDirectory(dir, NOFOLLOW_LINKS))
+				.collect(Collectors.toSet()));
+		if (dirs.contains(coldRoot)) {
+			cold.remove(coldRoot);
+			promoteSubtree(coldRoot, snapshot);
+			return;
+		}
+		DirectorySnapshot remaining = snapshot;
+		for (Path dir : dirs) {
+			remaining = remaining.withoutContentOf(dir);
+		}
+		cold.put(coldRoot, remaining);
+		for (Path dir : dirs) {
+			promoteSubtree(dir, snapshot.contentOf(dir));
+		}
+	}
+
+	/**
+	 * Demotes idle subtrees if the budget does not suffice. Changes made while
+	 * registering are reported from a second snapshot, so they may be reported
+	 * twice.
+	 *
+	 * @param content the last polled content of the directory
+	 */
+	private void promoteSubtree(Path dir, DirectorySnapshot content) throws IOException {
+		// skipped by the polled content, and so by the second snapshot
+		Set<Path> separate = Stream.concat(watched.keySet().stream(), cold.keySet().stream())
+				.filter(p -> p.startsWith(dir) && !p.equals(dir)).collect(Collectors.toSet());
+		int needed = content.directoryCount() + 1;
+		int free = maxWatches - watched.size();
+		if (free < needed) {
+			demote(needed - free, dir);
+		}
+		registerAll(dir);
+		// protect the promoted directories from being demoted right away
+		long now = System.nanoTime();
+		watched.keySet().stream().filter(d -> d.startsWith(dir)).forEach(d -> activity.put(d, now));
+		log.debug(() -> "promoted " + dir);
+		content.diff(DirectorySnapshot.take(dir, separate::contains), subscriber);
+	}
+
+	/**
+	 * @return the directories that are not below another one of the set
+	 */
+	private static Set<Path> outermost(Set<Path> dirs) {
+		List<Path> byDepth = new ArrayList<>(dirs);
+		byDepth.sort(Comparator.comparingInt(Path::getNameCount));
+		Set<Path> outermost = new LinkedHashSet<>();
+		for (Path dir : byDepth) {
+			if (outermost.stream().noneMatch(dir::startsWith)) {
+				outermost.add(dir);
+			}
+		}
+		return outermost;
+	}
+
+	/**
+	 * Moves the hot subtrees idle for the longest time to polling until
+	 * {@code needed} watches are free or no idle subtree is left. The watched
+	 * root and the ancestors of {@code keep} are never demoted; a subtree below
+	 * a cold directory is tracked by the snapshot of that cold subtree.
+	 */
+	private void demote(int needed, Path keep) throws IOException {
+		long now = System.nanoTime();
+		// latest activity within each subtree, propagated from the deepest directories up
+		Map<Path, Long> subtreeActivity = new HashMap<>(activity);
+		List<Path> byDepth = new ArrayList<>(watched.keySet());
+		byDepth.sort(Comparator.comparingInt(Path::getNameCount).reversed());
+		for (Path dir : byDepth) {
+			Path parent = dir.getParent();
+			Long latest = subtreeActivity.get(dir);
+			if (parent != null && latest != null && watched.containsKey(parent)) {
+				subtreeActivity.merge(parent, latest, Math::max);
+			}
+		}
+
+		List<Path> candidates = new ArrayList<>();
+		for (Path dir : watched.keySet()) {
+			Long latest = subtreeActivity.get(dir);
+			if (!dir.equals(root) && !keep.startsWith(dir)
+					&& (latest == null || now - latest >= coldIntervalNanos)) {
+				candidates.add(dir);
+			}
+		}
+		// never active ones first
+		candidates.sort(Comparator.comparingLong((Path dir) -> subtreeActivity.getOrDefault(dir, Long.MIN_VALUE))
+				.thenComparingInt(Path::getNameCount));
+
+		int freed = 0;
+		for (Path dir : candidates) {
+			if (freed >= needed) {
+				break;
+			}
+			if (watched.containsKey(dir)) {
+				freed += demoteSubtree(dir);
+			}
+		}
+		if (freed < needed) {
+			log.debug(() -> "watch budget of " + maxWatches + " exhausted, promoting partially");
+		}
+	}
+
+	/**
+	 * @return the number of released watches
+	 */
+	private int demoteSubtree(Path subtree) throws IOException {
+		int released = 0;
+		for (Map.Entry<Path, WatchKey> e : new ArrayList<>(watched.entrySet())) {
+			if (e.getKey().startsWith(subtree)) {
+				e.getValue().cancel();
+				keys.remove(e.getValue());
+				watched.remove(e.getKey());
+				activity.remove(e.getKey());
+				released++;
+			}
+		}
+		cold.keySet().removeIf(p -> p.startsWith(subtree));
+		cold.put(subtree, DirectorySnapshot.take(subtree));
+		startColdPolling();
+		// drops what the poller found meanwhile in an enclosing cold subtree, which now skips this one
+		for (Path p = subtree.getParent(); p != null && p.startsWith(root); p = p.getParent()) {
+			DirectorySnapshot enclosing = cold.get(p);
+			if (enclosing != null) {
+				cold.put(p, enclosing.withoutContentOf(subtree));
+				break;
+			}
+		}
+		configChanged = true;
+		log.debug(() -> "demoted " + subtree);
+		return released;
+	}
+
+	/**
+	 * Records the callbacks of a diff to replay them on the event thread,
+	 * together with the directories whose content changed.
+	 */
+	private static class Recorder implements Subscriber {
+		private final List<Consumer<Subscriber>> events = new ArrayList<>();
+		private final Set<Path> directories = new HashSet<>();
+		private final Set<Path> created = new HashSet<>();
+
+		@Override
+		public void onCreate(Path path) {
+			events.add(s -> {
+				if (!s.reportsCreatedDirectoriesOnly() || !created.contains(path.getParent())) {
+					s.onCreate(path);
+				}
+			});
+			directories.add(path.getParent());
+			created.add(path);
+		}
+
+		@Override
+		public void onModify(Path path) {
+			events.add(s -> s.onModify(path));
+			directories.add(path.getParent());
+		}
+
+		@Override
+		public void onDelete(Path path) {
+			events.add(s -> s.onDelete(path));
+			directories.add(path.getParent());
+		}
+
+		@Override
+		public void onOverflow() {
+			events.add(Subscriber::onOverflow);
+		}
+
+		@Override
+		public void onError(IOException ioe) {
+			events.add(s -> s.onError(ioe));
+		}
+
+		Set<Path> directories() {
+			return directories;
+		}
+
+		void replay(Subscriber subscriber) {
+			events.forEach(event -> event.accept(subscriber));
+		}
+	}
 }
@@ -0,0 +1,35 @@
+package de.sk9.commons.fswatchdog.core;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Set;
+
+/**
+ * The JDK {@link java.nio.file.WatchService} with one registration per
+ * directory. It has a lower priority than directory-watcher, so it is only
+ * chosen explicitly.
+ */
+public class FsWatchDogNativeProvider implements FsWatchDogProvider {
+	private static final FsWatchDogCapabilities CAPABILITIES = new FsWatchDogCapabilities(true, Duration.ZERO,
+			Set.of(FsWatchDogCapabilities.LOCAL));
+
+	@Override
+	public String name() {
+		return "native";
+	}
+
+	@Override
+	public FsWatchDogCapabilities capabilities() {
+		return CAPABILITIES;
+	}
+
+	@Override
+	public int priority() {
+		return DEFAULT_PRIORITY - 1;
+	}
+
+	@Override
+	public FsWatchDog create(Path dir, Subscriber subscriber) {
+		return new FsWatchDogNative(dir, subscriber);
+	}
+}
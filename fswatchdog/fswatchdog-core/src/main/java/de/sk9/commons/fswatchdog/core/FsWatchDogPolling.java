@@ -0,0 +1,64 @@
+package de.sk9.commons.fswatchdog.core;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Detects changes by comparing a fresh {@link DirectorySnapshot} with the
+ * previous one every interval. Changes are reported up to one interval late,
+ * and a file modified twice within an interval is reported once.
+ */
+class FsWatchDogPolling implements FsWatchDog {
+	private static Logger log = LogManager.getLogger(FsWatchDogPolling.class);
+
+	static final Duration DEFAULT_INTERVAL = Duration.ofSeconds(2);
+
+	private final Path dir;
+	private final Subscriber subscriber;
+	private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+		Thread thread = new Thread(r, "fswatchdog-polling");
+		thread.setDaemon(true);
+		return thread;
+	});
+	private DirectorySnapshot snapshot;
+
+	public FsWatchDogPolling(Path dir, Subscriber subscriber) throws IOException {
+		this(dir, subscriber, DEFAULT_INTERVAL);
+	}
+
+	public FsWatchDogPolling(Path dir, Subscriber subscriber, Duration interval) throws IOException {
+		this.dir = dir;
+		this.subscriber = subscriber;
+		this.snapshot = DirectorySnapshot.take(dir);
+		scheduler.scheduleWithFixedDelay(this::poll, interval.toNanos(), interval.toNanos(), TimeUnit.NANOSECONDS);
+	}
+
+	private void poll() {
+		try {
+			DirectorySnapshot older = snapshot;
+			DirectorySnapshot newer = DirectorySnapshot.take(dir);
+			// taken over first, so a failing subscriber does not get the same events again
+			snapshot = newer;
+			int changes = older.diff(newer, subscriber);
+			log.trace(() -> "polled " + dir + ": " + changes + " changes");
+		} catch (IOException ex) {
+			subscriber.onError(ex);
+		} catch (RuntimeException ex) {
+			// a failing subscriber must not stop the polling
+			log.warn(() -> "polling " + dir + " failed, cause: " + ex);
+		}
+	}
+
+	@Override
+	public void close() throws InterruptedException {
+		scheduler.shutdownNow();
+		scheduler.awaitTermination(1, TimeUnit.MINUTES);
+	}
+}
@@ -0,0 +1,31 @@
+package de.sk9.commons.fswatchdog.core;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Set;
+
+/**
+ * Periodic {@link DirectorySnapshot} comparison. Works on every file system,
+ * so it is the fallback for network shares, where kernel notifications miss
+ * changes made by other hosts.
+ */
+public class FsWatchDogPollingProvider implements FsWatchDogProvider {
+	private static final FsWatchDogCapabilities CAPABILITIES = new FsWatchDogCapabilities(true,
+			FsWatchDogPolling.DEFAULT_INTERVAL, Set.of(FsWatchDogCapabilities.ANY));
+
+	@Override
+	public String name() {
+		return "polling";
+	}
+
+	@Override
+	public FsWatchDogCapabilities capabilities() {
+		return CAPABILITIES;
+	}
+
+	@Override
+	public FsWatchDog create(Path dir, Subscriber subscriber) throws IOException {
+		return new FsWatchDogPolling(dir, subscriber);
+	}
+}
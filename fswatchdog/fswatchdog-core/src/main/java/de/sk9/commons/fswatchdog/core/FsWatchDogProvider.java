@@ -0,0 +1,29 @@
+package de.sk9.commons.fswatchdog.core;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+/**
+ * A watch backend discovered through {@link java.util.ServiceLoader}.
+ * {@link FsWatchDogFactory} picks the best provider for the file store of
+ * each watched root based on the {@link FsWatchDogCapabilities}, and the
+ * {@link #priority()} among providers with the same capabilities. Providers are
+ * registered in
+ * {@code META-INF/services/de.sk9.commons.fswatchdog.core.FsWatchDogProvider}.
+ */
+public interface FsWatchDogProvider {
+	int DEFAULT_PRIORITY = 0;
+
+	String name();
+
+	FsWatchDogCapabilities capabilities();
+
+	/**
+	 * @return the rank among providers with equal capabilities, higher wins
+	 */
+	default int priority() {
+		return DEFAULT_PRIORITY;
+	}
+
+	FsWatchDog create(Path dir, Subscriber subscriber) throws IOException;
+}
@@ -9,4 +9,15 @@ public interface Subscriber {
 	void onDelete(Path path);
 	void onOverflow();
 	void onError(IOException ioe);
+
+	/**
+	 * If {@code true}, a directory that appears with content, e.g. moved in, is
+	 * reported by a single {@link #onCreate(Path)} of the directory instead of
+	 * one per contained path; the subscriber lists the content itself if it
+	 * needs it. All backends honour it, decorators should pass on the value of
+	 * their delegate.
+	 */
+	default boolean reportsCreatedDirectoriesOnly() {
+		return false;
+	}
 }
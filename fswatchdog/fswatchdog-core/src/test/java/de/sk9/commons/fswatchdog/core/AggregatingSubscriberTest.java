@@ -0,0 +1,134 @@
+package de.sk9.commons.fswatchdog.core;
+
+import static org.awaitility.Awaitility.await;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.hamcrest.Matchers;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class AggregatingSubscriberTest {
+	private final Path root = Path.of("/watched");
+	private final List<Path> created = new CopyOnWriteArrayList<>();
+	private final List<Path> deleted = new CopyOnWriteArrayList<>();
+	private final List<AggregateEvent> summaries = new CopyOnWriteArrayList<>();
+	private AggregatingSubscriber subscriber;
+
+	@BeforeEach
+	void beforeEach() {
+		subscriber = new AggregatingSubscriber(new AggregateSubscriber() {
+			@Override
+			public void onCreate(Path path) {
+				created.add(path);
+			}
+
+			@Override
+			public void onModify(Path path) {
+			}
+
+			@Override
+			public void onDelete(Path path) {
+				deleted.add(path);
+			}
+
+			@Override
+			public void onOverflow() {
+			}
+
+			@Override
+			public void onError(IOException ioe) {
+			}
+
+			@Override
+			public void onAggregate(AggregateEvent summary) {
+				summaries.add(summary);
+			}
+		}, root, 10, Duration.ofMillis(200));
+	}
+
+	@AfterEach
+	void afterEach() {
+		subscriber.close();
+	}
+
+	@Test
+	void testBelowThreshold() {
+		for (int i = 0; i < 10; i++) {
+			subscriber.onCreate(root.resolve("dir").resolve("file" + i));
+		}
+
+		assertThat(created, Matchers.hasSize(10));
+		assertThat(summaries, Matchers.empty());
+	}
+
+	@Test
+	void testBulkCreateAndDelete() {
+		Path archive = root.resolve("archive");
+		subscriber.onCreate(archive);
+		for (int d = 0; d < 100; d++) {
+			for (int f = 0; f < 5; f++) {
+				subscriber.onCreate(archive.resolve("dir" + d).resolve("file" + f));
+			}
+		}
+		await().until(() -> summaries.size() == 1);
+
+		// the archive and the files before the threshold was crossed are delivered one by one
+		assertThat(created, Matchers.hasSize(10));
+		assertThat(summaries.get(0), Matchers.is(new AggregateEvent(archive, 491, 0, 0)));
+
+		for (int d = 0; d < 100; d++) {
+			for (int f = 0; f < 5; f++) {
+				subscriber.onDelete(archive.resolve("dir" + d).resolve("file" + f));
+			}
+		}
+		subscriber.onDelete(archive);
+		subscriber.onCreate(root.resolve("unrelated"));
+		await().until(() -> summaries.size() == 2);
+
+		assertThat(summaries.get(1), Matchers.is(new AggregateEvent(archive, 0, 0, 491)));
+		assertThat(deleted, Matchers.hasSize(10));
+		assertThat(created, Matchers.hasItem(root.resolve("unrelated")));
+	}
+
+	@Test
+	void testCloseDeliversPendingSummaries() {
+		for (int i = 0; i < 20; i++) {
+			subscriber.onModify(root.resolve("file" + i));
+		}
+
+		subscriber.close();
+
+		assertThat(summaries, Matchers.contains(new AggregateEvent(root, 0, 10, 0)));
+	}
+
+	@Test
+	void testEventsOutsideTheRootAreNotCounted() {
+		for (int i = 0; i < 20; i++) {
+			subscriber.onCreate(root.resolveSibling("other").resolve("file" + i));
+		}
+
+		assertThat(created, Matchers.hasSize(20));
+		subscriber.close();
+		assertThat(summaries, Matchers.empty());
+	}
+
+	@Test
+	void testDrillDown() throws IOException {
+		Path dir = Files.createTempDirectory(AggregatingSubscriberTest.class.getSimpleName());
+		Files.writeString(dir.resolve("file"), "foo");
+
+		try (Stream<Path> paths = new AggregateEvent(dir, 1, 0, 0).walk()) {
+			assertThat(paths.collect(Collectors.toList()), Matchers.contains(dir, dir.resolve("file")));
+		}
+	}
+}
@@ -0,0 +1,131 @@
+package de.sk9.commons.fswatchdog.core;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.hamcrest.Matchers.empty;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class DirectorySnapshotTest {
+
+	private Path testDir;
+	private List<Path> created;
+	private List<Path> modified;
+	private List<Path> deleted;
+	private Subscriber recorder;
+
+	@BeforeEach
+	void beforeEach() throws IOException {
+		testDir = Files.createTempDirectory(DirectorySnapshotTest.class.getSimpleName());
+		created = new ArrayList<>();
+		modified = new ArrayList<>();
+		deleted = new ArrayList<>();
+		recorder = new Subscriber() {
+			@Override
+			public void onCreate(Path path) {
+				created.add(path);
+			}
+			@Override
+			public void onModify(Path path) {
+				modified.add(path);
+			}
+			@Override
+			public void onDelete(Path path) {
+				deleted.add(path);
+			}
+			@Override
+			public void onOverflow() {
+				throw new IllegalStateException("overflow");
+			}
+			@Override
+			public void onError(IOException ioe) {
+				throw new IllegalStateException(ioe);
+			}
+		};
+	}
+
+	@Test
+	void testDiff() throws IOException {
+		Path kept = Files.createFile(testDir.resolve("kept"));
+		Path changed = Files.createFile(testDir.resolve("changed"));
+		Path removed = Files.createFile(testDir.resolve("removed"));
+		DirectorySnapshot before = DirectorySnapshot.take(testDir);
+		assertThat(before.size(), is(3));
+
+		Files.write(changed, "foo".getBytes(), StandardOpenOption.APPEND);
+		Files.delete(removed);
+		Path subDir = Files.createDirectory(testDir.resolve("sub"));
+		Path added = Files.createFile(subDir.resolve("added"));
+		DirectorySnapshot after = DirectorySnapshot.take(testDir);
+
+		assertThat(before.diff(after, recorder), is(4));
+		assertThat(created.size(), is(2));
+		assertThat(created.contains(subDir) && created.contains(added), is(true));
+		assertThat(modified, contains(changed));
+		assertThat(deleted, contains(removed));
+		assertThat(after.contains(kept), is(true));
+	}
+
+	@Test
+	void testDiffReportsCreatedDirectoriesOnly() throws IOException {
+		DirectorySnapshot before = DirectorySnapshot.take(testDir);
+		Path subDir = Files.createDirectory(testDir.resolve("sub"));
+		Files.createFile(Files.createDirectory(subDir.resolve("deeper")).resolve("added"));
+		Path file = Files.createFile(testDir.resolve("file"));
+
+		before.diff(DirectorySnapshot.take(testDir), new Subscriber() {
+			@Override
+			public void onCreate(Path path) {
+				recorder.onCreate(path);
+			}
+			@Override
+			public void onModify(Path path) {
+				recorder.onModify(path);
+			}
+			@Override
+			public void onDelete(Path path) {
+				recorder.onDelete(path);
+			}
+			@Override
+			public void onOverflow() {
+				recorder.onOverflow();
+			}
+			@Override
+			public void onError(IOException ioe) {
+				recorder.onError(ioe);
+			}
+			@Override
+			public boolean reportsCreatedDirectoriesOnly() {
+				return true;
+			}
+		});
+
+		assertThat(created, containsInAnyOrder(subDir, file));
+	}
+
+	@Test
+	void testUpdateAndRemove() throws IOException {
+		DirectorySnapshot snapshot = DirectorySnapshot.take(testDir);
+		Path file = Files.createFile(testDir.resolve("file"));
+		Files.setLastModifiedTime(file, FileTime.fromMillis(1000));
+		snapshot.update(file);
+
+		assertThat(snapshot.diff(DirectorySnapshot.take(testDir), recorder), is(0));
+
+		snapshot.remove(file);
+		snapshot.diff(DirectorySnapshot.take(testDir), recorder);
+		assertThat(created, contains(file));
+		assertThat(deleted, is(empty()));
+	}
+}
@@ -1,11 +1,18 @@
 package de.sk9.commons.fswatchdog.core;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
 
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.MethodOrderer.OrderAnnotation;
@@ -29,6 +36,42 @@ public class FsWatchDogFactoryTest {
 		assertTrue(fsWatchDog instanceof FsWatchDogDirectoryWatcher);
 	}
 
+	@Test
+	@Order(0)
+	void testProviderSelection() {
+		List<FsWatchDogProvider> providers = FsWatchDogFactory.getInstance().providers();
+
+		assertEquals("directory-watcher", FsWatchDogFactory.select("ext4", providers).get().name());
+		assertEquals("directory-watcher", FsWatchDogFactory.select("xfs", providers).get().name());
+		assertEquals("polling", FsWatchDogFactory.select("nfs4", providers).get().name());
+		assertEquals("polling", FsWatchDogFactory.select("cifs", providers).get().name());
+		// independent of the order of the service file
+		List<FsWatchDogProvider> reversed = new ArrayList<>(providers);
+		Collections.reverse(reversed);
+		assertEquals("directory-watcher", FsWatchDogFactory.select("ext4", reversed).get().name());
+	}
+
+	@Test
+	@Order(0)
+	void testMostSpecificProviderWins() {
+		FsWatchDogProvider nfs = provider("nfs", new FsWatchDogCapabilities(false, Duration.ofSeconds(10), Set.of("nfs")));
+		FsWatchDogProvider fast = provider("fast", new FsWatchDogCapabilities(true, Duration.ZERO, Set.of("*")));
+		FsWatchDogProvider slow = provider("slow", new FsWatchDogCapabilities(true, Duration.ofSeconds(1), Set.of("*")));
+		List<FsWatchDogProvider> providers = List.of(slow, nfs, fast);
+
+		assertEquals("nfs", FsWatchDogFactory.select("nfs", providers).get().name());
+		assertEquals("fast", FsWatchDogFactory.select("ext4", providers).get().name());
+		assertTrue(FsWatchDogFactory.select("ext4", List.of(nfs)).isEmpty());
+	}
+
+	@Test
+	@Order(0)
+	void testProviderIsCached() throws IOException {
+		FsWatchDogProvider provider = FsWatchDogFactory.getInstance().providerFor(testDir);
+
+		assertSame(provider, FsWatchDogFactory.getInstance().providerFor(testDir));
+	}
+
 	@Test
 	@Order(1)
 	void testWrongImplClassSet() throws IOException {
@@ -47,4 +90,34 @@ public class FsWatchDogFactoryTest {
 		FsWatchDog fsWatchDog = FsWatchDogFactory.getInstance().create(testDir, null);
 		assertTrue(fsWatchDog instanceof FsWatchDogNative);
 	}
+
+	@Test
+	@Order(3)
+	void testProviderNameSet() throws Exception {
+		System.setProperty(FsWatchDog.class.getCanonicalName(), "polling");
+
+		FsWatchDog fsWatchDog = FsWatchDogFactory.getInstance().create(testDir, null);
+		assertTrue(fsWatchDog instanceof FsWatchDogPolling);
+		fsWatchDog.close();
+		System.setProperty(FsWatchDog.class.getCanonicalName(), FsWatchDogNative.class.getCanonicalName());
+	}
+
+	private static FsWatchDogProvider provider(String name, FsWatchDogCapabilities capabilities) {
+		return new FsWatchDogProvider() {
+			@Override
+			public String name() {
+				return name;
+			}
+
+			@Override
+			public FsWatchDogCapabilities capabilities() {
+				return capabilities;
+			}
+
+			@Override
+			public FsWatchDog create(Path dir, Subscriber subscriber) {
+				throw new UnsupportedOperationException();
+			}
+		};
+	}
 }
@@ -0,0 +1,166 @@
+package de.sk9.commons.fswatchdog.core;
+
+import static org.awaitility.Awaitility.await;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.Stream;
+
+import org.hamcrest.Matchers;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class FsWatchDogNativeTest {
+	private Path testDir;
+	private ExecutorService executor;
+	private FsWatchDogNative watchDog;
+	private final List<Path> created = new CopyOnWriteArrayList<>();
+	private final List<Path> modified = new CopyOnWriteArrayList<>();
+	private final Subscriber recorder = new Subscriber() {
+		@Override
+		public void onCreate(Path path) {
+			created.add(path);
+		}
+
+		@Override
+		public void onModify(Path path) {
+			modified.add(path);
+		}
+
+		@Override
+		public void onDelete(Path path) {
+		}
+
+		@Override
+		public void onOverflow() {
+		}
+
+		@Override
+		public void onError(IOException ioe) {
+			throw new IllegalStateException(ioe);
+		}
+	};
+
+	@BeforeEach
+	void beforeEach() throws IOException {
+		testDir = Files.createTempDirectory(FsWatchDogNativeTest.class.getSimpleName());
+		// root, a, a/a1, b, b/b1, c
+		Files.createDirectories(testDir.resolve("a").resolve("a1"));
+		Files.createDirectories(testDir.resolve("b").resolve("b1"));
+		Files.createDirectories(testDir.resolve("c"));
+		executor = Executors.newSingleThreadExecutor();
+	}
+
+	@AfterEach
+	void afterEach() throws Exception {
+		watchDog.close();
+		executor.shutdownNow();
+	}
+
+	@Test
+	void testUnlimitedBudget() throws Exception {
+		watchDog = new FsWatchDogNative(testDir, executor, recorder, Integer.MAX_VALUE, Duration.ofMillis(100));
+
+		assertThat(watchDog.watchCount(), Matchers.is(6));
+		assertThat(watchDog.coldSubtrees(), Matchers.empty());
+	}
+
+	@Test
+	void testColdSubtreesArePolledAndPromoted() throws Exception {
+		watchDog = new FsWatchDogNative(testDir, executor, recorder, 3, Duration.ofMillis(100));
+		assertThat(watchDog.watchCount(), Matchers.is(3));
+		assertThat(watchDog.coldSubtrees(), Matchers.not(Matchers.empty()));
+
+		Path coldRoot = watchDog.coldSubtrees().iterator().next();
+		Path file = Files.writeString(coldRoot.resolve("file"), "foo");
+		await().until(() -> created.contains(file));
+
+		// the changed subtree is watched natively now, idle ones were demoted to make room
+		await().until(() -> !watchDog.coldSubtrees().contains(coldRoot));
+		assertThat(watchDog.watchCount(), Matchers.lessThanOrEqualTo(3));
+		Files.writeString(file, "bar");
+		await().until(() -> modified.contains(file));
+	}
+
+	@Test
+	void testOnlyChangedDirectoriesArePromoted() throws Exception {
+		watchDog = new FsWatchDogNative(testDir, executor, recorder, 3, Duration.ofMillis(100));
+		// one of the cold subtrees has a subdirectory, which one depends on the listing order
+		Path coldRoot = watchDog.coldSubtrees().stream().filter(p -> p.getParent().equals(testDir))
+				.filter(p -> Files.exists(p.resolve(p.getFileName() + "1"))).findFirst().get();
+		Path child = coldRoot.resolve(coldRoot.getFileName() + "1");
+
+		Path file = Files.writeString(child.resolve("file"), "foo");
+		await().until(() -> created.contains(file));
+
+		// the subdirectory is watched now, its parent is still polled
+		assertThat(watchDog.coldSubtrees(), Matchers.hasItem(coldRoot));
+		assertThat(watchDog.coldSubtrees(), Matchers.not(Matchers.hasItem(child)));
+		Files.writeString(file, "bar");
+		await().until(() -> modified.contains(file));
+	}
+
+	@Test
+	void testCreatedDirectoryIsReportedOnceWhenAggregating() throws Exception {
+		Path moved = Files.createTempDirectory(FsWatchDogNativeTest.class.getSimpleName());
+		Files.writeString(Files.createDirectory(moved.resolve("sub")).resolve("file"), "foo");
+		List<AggregateEvent> summaries = new CopyOnWriteArrayList<>();
+		AggregatingSubscriber aggregating = new AggregatingSubscriber(new AggregateSubscriber() {
+			@Override
+			public void onCreate(Path path) {
+				recorder.onCreate(path);
+			}
+
+			@Override
+			public void onModify(Path path) {
+			}
+
+			@Override
+			public void onDelete(Path path) {
+			}
+
+			@Override
+			public void onOverflow() {
+			}
+
+			@Override
+			public void onError(IOException ioe) {
+			}
+
+			@Override
+			public void onAggregate(AggregateEvent summary) {
+				summaries.add(summary);
+			}
+		}, testDir, 10, Duration.ofMillis(100));
+		watchDog = new FsWatchDogNative(testDir, executor, aggregating, Integer.MAX_VALUE, Duration.ofMillis(100));
+
+		Path target = Files.move(moved, testDir.resolve("c").resolve("moved"));
+		await().until(() -> created.contains(target));
+
+		Thread.sleep(200);
+		assertThat(created, Matchers.contains(target));
+		try (Stream<Path> content = AggregateEvent.walk(target)) {
+			assertThat(content.count(), Matchers.is(3L));
+		}
+		aggregating.close();
+	}
+
+	@Test
+	void testNewDirectoriesBeyondBudget() throws Exception {
+		watchDog = new FsWatchDogNative(testDir, executor, recorder, 6, Duration.ofMillis(100));
+
+		Path deep = Files.createDirectories(testDir.resolve("c").resolve("x").resolve("y"));
+		Path file = Files.writeString(deep.resolve("file"), "foo");
+
+		await().until(() -> created.contains(file));
+		assertThat(watchDog.watchCount(), Matchers.lessThanOrEqualTo(6));
+	}
+}
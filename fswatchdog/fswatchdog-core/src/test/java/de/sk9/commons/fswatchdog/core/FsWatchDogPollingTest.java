@@ -0,0 +1,124 @@
+package de.sk9.commons.fswatchdog.core;
+
+import static org.awaitility.Awaitility.await;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.hamcrest.Matchers;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class FsWatchDogPollingTest {
+	private Path testDir;
+	private FsWatchDog watchDog;
+	private final List<String> events = new CopyOnWriteArrayList<>();
+
+	@BeforeEach
+	void beforeEach() throws IOException {
+		testDir = Files.createTempDirectory(FsWatchDogPollingTest.class.getSimpleName());
+		Files.writeString(testDir.resolve("existing"), "a");
+		watchDog = new FsWatchDogPolling(testDir, new Subscriber() {
+			@Override
+			public void onCreate(Path path) {
+				events.add("create " + testDir.relativize(path));
+				if (path.endsWith("failing")) {
+					throw new IllegalStateException("subscriber failed");
+				}
+			}
+
+			@Override
+			public void onModify(Path path) {
+				events.add("modify " + testDir.relativize(path));
+			}
+
+			@Override
+			public void onDelete(Path path) {
+				events.add("delete " + testDir.relativize(path));
+			}
+
+			@Override
+			public void onOverflow() {
+				events.add("overflow");
+			}
+
+			@Override
+			public void onError(IOException ioe) {
+				events.add("error");
+			}
+		}, Duration.ofMillis(50));
+	}
+
+	@AfterEach
+	void afterEach() throws Exception {
+		watchDog.close();
+	}
+
+	@Test
+	void testReportsChanges() throws Exception {
+		Path dir = Files.createDirectory(testDir.resolve("dir"));
+		Files.writeString(dir.resolve("created"), "b");
+		Files.writeString(testDir.resolve("existing"), "longer");
+		await().until(() -> events.size() >= 3);
+
+		Files.delete(dir.resolve("created"));
+		await().until(() -> events.size() >= 4);
+
+		assertThat(events, Matchers.containsInAnyOrder("create dir", "create dir/created", "modify existing",
+				"delete dir/created"));
+	}
+
+	@Test
+	void testReportsCreatedDirectoriesOnly() throws Exception {
+		watchDog.close();
+		watchDog = new FsWatchDogPolling(testDir, new Subscriber() {
+			@Override
+			public void onCreate(Path path) {
+				events.add("create " + testDir.relativize(path));
+			}
+
+			@Override
+			public void onModify(Path path) {
+			}
+
+			@Override
+			public void onDelete(Path path) {
+			}
+
+			@Override
+			public void onOverflow() {
+			}
+
+			@Override
+			public void onError(IOException ioe) {
+			}
+
+			@Override
+			public boolean reportsCreatedDirectoriesOnly() {
+				return true;
+			}
+		}, Duration.ofMillis(50));
+		Path moved = Files.createTempDirectory(FsWatchDogPollingTest.class.getSimpleName());
+		Files.writeString(Files.createDirectory(moved.resolve("sub")).resolve("file"), "b");
+		Files.move(moved, testDir.resolve("dir"));
+		await().until(() -> events.contains("create dir"));
+
+		Thread.sleep(200);
+		assertThat(events, Matchers.contains("create dir"));
+	}
+
+	@Test
+	void testFailingSubscriberGetsNoRepeatedEvents() throws Exception {
+		Files.writeString(testDir.resolve("failing"), "a");
+		await().until(() -> events.contains("create failing"));
+
+		Thread.sleep(300);
+		assertThat(events, Matchers.contains("create failing"));
+	}
+}
@@ -10,6 +10,8 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.StandardOpenOption;
 import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.ForkJoinPool;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
@@ -133,6 +135,45 @@ class FsWatchDogTest {
 		}		
 	}
 	
+	@Test
+	void testDirectoryWatcherReportsCreatedDirectoriesOnly() throws Exception {
+		watchDog.close();
+		Path moved = Files.createTempDirectory(FsWatchDogTest.class.getSimpleName());
+		Files.createTempFile(Files.createTempDirectory(moved, DIR_PREFIX), FILE_PREFIX, null);
+		List<Path> paths = new CopyOnWriteArrayList<>();
+		watchDog = new FsWatchDogDirectoryWatcher(testDir, new Subscriber() {
+			@Override
+			public void onCreate(Path path) {
+				paths.add(path);
+			}
+			@Override
+			public void onModify(Path path) {
+			}
+			@Override
+			public void onDelete(Path path) {
+			}
+			@Override
+			public void onOverflow() {
+			}
+			@Override
+			public void onError(IOException ioe) {
+			}
+			@Override
+			public boolean reportsCreatedDirectoriesOnly() {
+				return true;
+			}
+		});
+		TimeUnit.MILLISECONDS.sleep(200);
+
+		Path target = Files.move(moved, testDir.resolve(DIR_PREFIX));
+		await().until(() -> paths.contains(target));
+		TimeUnit.MILLISECONDS.sleep(200);
+		Path file = Files.createTempFile(target, FILE_PREFIX, null);
+		await().until(() -> paths.contains(file));
+
+		assertThat(paths, is(List.of(target, file)));
+	}
+
 	@Test
 	void testFinish() throws IOException, InterruptedException {
 		watchDog.close();
@@ -0,0 +1,25 @@
+package de.sk9.commons.fswatchdog.reactive;
+
+import java.nio.file.Path;
+
+import de.sk9.commons.fswatchdog.reactive.FsEvent.Type;
+
+/**
+ * Memory-saving form of {@link FsEvent}: the parent directory is a reference
+ * into a {@link DirectoryTable}, the {@link Path} is only resolved on access.
+ */
+public record CompactFsEvent(DirectoryTable table, int directory, String name, Type type) {
+
+	static final int NO_PARENT = -1;
+
+	public Path path() {
+		if (directory == NO_PARENT) {
+			return Path.of(name);
+		}
+		return table.directory(directory).resolve(name);
+	}
+
+	public FsEvent toFsEvent() {
+		return new FsEvent(type, path());
+	}
+}
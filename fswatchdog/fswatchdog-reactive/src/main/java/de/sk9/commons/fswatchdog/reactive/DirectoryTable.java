@@ -0,0 +1,125 @@
+package de.sk9.commons.fswatchdog.reactive;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import de.sk9.commons.fswatchdog.reactive.FsEvent.Type;
+
+/**
+ * Interns parent directories of buffered events. Every directory is stored
+ * once and referenced by an int id, so a backlog of events only holds the
+ * child names.
+ * <p>
+ * Lookups by id are lock-free. A {@code DELETED} event retires the directory
+ * and everything interned below it: retired ids still resolve, so events
+ * compacted before the deletion stay valid, and are reused after
+ * {@link #recycle()}.
+ */
+public class DirectoryTable {
+	private static final int INITIAL_CAPACITY = 64;
+
+	private final Map<Path, Integer> ids = new ConcurrentHashMap<>();
+	// guarded by this
+	private final NavigableMap<String, Integer> sorted = new TreeMap<>();
+	private final List<Integer> retired = new ArrayList<>();
+	private final List<Integer> free = new ArrayList<>();
+	private int next;
+	private volatile AtomicReferenceArray<Path> directories = new AtomicReferenceArray<>(INITIAL_CAPACITY);
+
+	public int intern(Path directory) {
+		Integer id = ids.get(directory);
+		if (id != null) {
+			return id;
+		}
+		synchronized (this) {
+			id = ids.get(directory);
+			if (id != null) {
+				return id;
+			}
+			id = free.isEmpty() ? next++ : free.remove(free.size() - 1);
+			AtomicReferenceArray<Path> current = directories;
+			if (id >= current.length()) {
+				AtomicReferenceArray<Path> grown = new AtomicReferenceArray<>(current.length() * 2);
+				for (int i = 0; i < current.length(); i++) {
+					grown.lazySet(i, current.get(i));
+				}
+				current = grown;
+			}
+			current.set(id, directory);
+			directories = current;
+			sorted.put(key(directory), id);
+			ids.put(directory, id);
+			return id;
+		}
+	}
+
+	public Path directory(int id) {
+		Path directory = directories.get(id);
+		if (directory == null) {
+			throw new IndexOutOfBoundsException(id);
+		}
+		return directory;
+	}
+
+	/**
+	 * @return the number of interned, not retired directories
+	 */
+	public int size() {
+		return ids.size();
+	}
+
+	/**
+	 * Retires the directory and all directories interned below it, they are
+	 * interned again under new ids if they reappear.
+	 */
+	public synchronized void evict(Path directory) {
+		String key = key(directory);
+		Map<String, Integer> subtree = sorted.subMap(key, true, key + Character.MAX_VALUE, false);
+		subtree.forEach((k, id) -> {
+			ids.remove(directories.get(id));
+			retired.add(id);
+		});
+		subtree.clear();
+	}
+
+	/**
+	 * Makes the ids of retired directories available for reuse. Call it only
+	 * when no event compacted before the last {@link #evict(Path) eviction} is
+	 * resolved any more, e.g. after the batches have been drained.
+	 */
+	public synchronized void recycle() {
+		retired.forEach(id -> directories.set(id, null));
+		free.addAll(retired);
+		retired.clear();
+	}
+
+	public CompactFsEvent compact(FsEvent event) {
+		Path parent = event.path().getParent();
+		Path name = event.path().getFileName();
+		CompactFsEvent compact;
+		if (parent == null || name == null) {
+			compact = new CompactFsEvent(this, CompactFsEvent.NO_PARENT, event.path().toString(), event.type());
+		} else {
+			compact = new CompactFsEvent(this, intern(parent), name.toString(), event.type());
+		}
+		if (event.type() == Type.DELETED) {
+			evict(event.path());
+		}
+		return compact;
+	}
+
+	/**
+	 * @return a key whose prefix range in the sorted map is the subtree
+	 */
+	private static String key(Path directory) {
+		String key = directory.toString();
+		String separator = directory.getFileSystem().getSeparator();
+		return key.endsWith(separator) ? key : key + separator;
+	}
+}
@@ -4,5 +4,10 @@ import java.nio.file.Path;
 
 public record FsEvent (Type type, Path path) {
 	
-	public enum Type { CREATED, MODIFIED, DELETED }
+	/**
+	 * {@code RESYNC} is emitted with the watched root directory as path when the
+	 * underlying event queue overflowed. Events may have been lost, the stream
+	 * stays open.
+	 */
+	public enum Type { CREATED, MODIFIED, DELETED, RESYNC }
 }
@@ -0,0 +1,97 @@
+package de.sk9.commons.fswatchdog.reactive;
+
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.function.Consumer;
+
+import de.sk9.commons.fswatchdog.reactive.FsEvent.Type;
+
+/**
+ * Column-wise buffer of events backed by primitive arrays. Directories are
+ * interned in a shared {@link DirectoryTable}; per event only a byte, an int
+ * and the child name are kept.
+ */
+public class FsEventBatch {
+	private static final Type[] TYPES = Type.values();
+	private static final int DEFAULT_CAPACITY = 64;
+
+	private final DirectoryTable table;
+	private byte[] types;
+	private int[] directories;
+	private String[] names;
+	private int size;
+
+	public FsEventBatch(DirectoryTable table) {
+		this(table, DEFAULT_CAPACITY);
+	}
+
+	public FsEventBatch(DirectoryTable table, int initialCapacity) {
+		this.table = table;
+		types = new byte[initialCapacity];
+		directories = new int[initialCapacity];
+		names = new String[initialCapacity];
+	}
+
+	public void add(FsEvent event) {
+		add(table.compact(event));
+	}
+
+	public void add(CompactFsEvent event) {
+		if (event.table() != table) {
+			throw new IllegalArgumentException("event belongs to another directory table");
+		}
+		ensureCapacity(size + 1);
+		types[size] = (byte) event.type().ordinal();
+		directories[size] = event.directory();
+		names[size] = event.name();
+		size++;
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	public Type type(int index) {
+		checkIndex(index);
+		return TYPES[types[index]];
+	}
+
+	public Path path(int index) {
+		return get(index).path();
+	}
+
+	public CompactFsEvent get(int index) {
+		checkIndex(index);
+		return new CompactFsEvent(table, directories[index], names[index], TYPES[types[index]]);
+	}
+
+	public void forEach(Consumer<FsEvent> consumer) {
+		for (int i = 0; i < size; i++) {
+			consumer.accept(get(i).toFsEvent());
+		}
+	}
+
+	public void clear() {
+		Arrays.fill(names, 0, size, null);
+		size = 0;
+	}
+
+	private void checkIndex(int index) {
+		if (index < 0 || index >= size) {
+			throw new IndexOutOfBoundsException(index);
+		}
+	}
+
+	private void ensureCapacity(int capacity) {
+		if (capacity > types.length) {
+			int newCapacity = Math.max(capacity, types.length * 2);
+			types = Arrays.copyOf(types, newCapacity);
+			directories = Arrays.copyOf(directories, newCapacity);
+			names = Arrays.copyOf(names, newCapacity);
+		}
+	}
+}
@@ -1,25 +1,49 @@
 package de.sk9.commons.fswatchdog.reactive;
 
 import java.io.IOException;
-import java.nio.BufferOverflowException;
 import java.nio.file.Path;
-import java.util.HashMap;
-import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.Flow.Publisher;
 import java.util.concurrent.Flow.Subscriber;
 import java.util.concurrent.Flow.Subscription;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
+import de.sk9.commons.fswatchdog.core.DirectorySnapshot;
 import de.sk9.commons.fswatchdog.core.FsWatchDog;
 import de.sk9.commons.fswatchdog.core.FsWatchDogFactory;
 import de.sk9.commons.fswatchdog.reactive.FsEvent.Type;
 
 public class FsWatchDogFlowPublisher implements Publisher<FsEvent>, de.sk9.commons.fswatchdog.core.Subscriber {
 
-	private Map<FsSubscription, Subscriber<? super FsEvent>> subscriptions = new HashMap<>();
+	private final Set<FsSubscription> subscriptions = ConcurrentHashMap.newKeySet();
+	final DirectoryTable table = new DirectoryTable();
+	// compact events offered but not yet resolved by a drain loop
+	private final AtomicInteger buffered = new AtomicInteger();
 	private FsWatchDog watchDog;
+	private final Path dir;
+	private DirectorySnapshot snapshot;
 	boolean initialized = false;
 
 	public FsWatchDogFlowPublisher(Path dir) throws IOException {
+		this(dir, false);
+	}
+
+	/**
+	 * @param catchUpOnOverflow if {@code true} the directory is rescanned after an
+	 *                          overflow and the detected changes are emitted as
+	 *                          synthetic events right after the {@code RESYNC}
+	 *                          event. This keeps a snapshot of the whole tree in
+	 *                          memory.
+	 */
+	public FsWatchDogFlowPublisher(Path dir, boolean catchUpOnOverflow) throws IOException {
+		this.dir = dir;
+		if (catchUpOnOverflow) {
+			snapshot = DirectorySnapshot.take(dir);
+		}
 		watchDog = FsWatchDogFactory.getInstance().create(dir, this);
 		initialized = true;
 	}
@@ -30,37 +54,62 @@ public class FsWatchDogFlowPublisher implements Publisher<FsEvent>, de.sk9.commo
 
 	@Override
 	public void onCreate(Path path) {
+		if (snapshot != null) {
+			snapshot.update(path);
+		}
 		emit(new FsEvent(Type.CREATED, path));
 	}
 
 	@Override
 	public void onModify(Path path) {
+		if (snapshot != null) {
+			snapshot.update(path);
+		}
 		emit(new FsEvent(Type.MODIFIED, path));
 	}
 
 	@Override
 	public void onDelete(Path path) {
+		if (snapshot != null) {
+			snapshot.remove(path);
+		}
 		emit(new FsEvent(Type.DELETED, path));
 	}
 
-	private void emit(FsEvent ev) {
-		subscriptions.keySet().stream()
-				.filter(subscription -> !subscription.isSaturated())
-				.forEach(subscription -> { 
-					subscription.decrement();
-					subscriptions.get(subscription).onNext(ev);
-				});
+	/**
+	 * Delivers the event to every subscription with demand. Saturated
+	 * subscriptions drop it and get a {@code RESYNC} event as soon as they
+	 * request more.
+	 * <p>
+	 * Events are buffered in their compact form, the interned directories are
+	 * recycled whenever all buffers are drained.
+	 */
+	private synchronized void emit(FsEvent ev) {
+		CompactFsEvent compact = table.compact(ev);
+		subscriptions.forEach(subscription -> subscription.offer(compact));
+		if (buffered.get() == 0) {
+			table.recycle();
+		}
 	}
 
 	@Override
 	public void onOverflow() {
-		subscriptions.keySet().stream().forEach(s -> subscriptions.get(s).onError(new BufferOverflowException()));
+		emit(new FsEvent(Type.RESYNC, dir));
+		if (snapshot != null) {
+			try {
+				DirectorySnapshot current = DirectorySnapshot.take(dir);
+				snapshot.diff(current, new CatchUp());
+				snapshot = current;
+			} catch (IOException ex) {
+				onError(ex);
+			}
+		}
 	}
 
 	@Override
 	public void onError(IOException ex) {
 		if (initialized) {
-			subscriptions.keySet().stream().forEach(s -> subscriptions.get(s).onError(ex));
+			subscriptions.forEach(subscription -> subscription.fail(ex));
 		} else {
 			throw new IllegalStateException(ex);
 		}
@@ -68,36 +117,134 @@ public class FsWatchDogFlowPublisher implements Publisher<FsEvent>, de.sk9.commo
 
 	@Override
 	public void subscribe(Subscriber<? super FsEvent> subscriber) {
-		var subscription = new FsSubscription();
-		subscriptions.put(subscription, subscriber);
+		var subscription = new FsSubscription(subscriber);
+		subscriptions.add(subscription);
 		subscriber.onSubscribe(subscription);
 	}
 
+	class CatchUp implements de.sk9.commons.fswatchdog.core.Subscriber {
+		@Override
+		public void onCreate(Path path) {
+			emit(new FsEvent(Type.CREATED, path));
+		}
+
+		@Override
+		public void onModify(Path path) {
+			emit(new FsEvent(Type.MODIFIED, path));
+		}
+
+		@Override
+		public void onDelete(Path path) {
+			emit(new FsEvent(Type.DELETED, path));
+		}
+
+		@Override
+		public void onOverflow() {
+		}
+
+		@Override
+		public void onError(IOException ioe) {
+			FsWatchDogFlowPublisher.this.onError(ioe);
+		}
+	}
+
+	/**
+	 * Signals are serialized by a drain loop: whichever thread increments
+	 * {@code wip} from zero delivers the queued events, including those offered
+	 * or requested meanwhile by other threads. A {@link #request(long)} from
+	 * within {@code onNext} only adds demand, the running loop picks it up.
+	 */
 	class FsSubscription implements Subscription {
-		long count = 0;
+		private final Subscriber<? super FsEvent> subscriber;
+		private final Queue<CompactFsEvent> queue = new ConcurrentLinkedQueue<>();
+		private final AtomicLong requested = new AtomicLong();
+		private final AtomicInteger wip = new AtomicInteger();
+		private volatile IOException error;
+		private volatile boolean cancelled;
+		// only accessed by the draining thread
+		private boolean missed;
+		private boolean done;
+
+		FsSubscription(Subscriber<? super FsEvent> subscriber) {
+			this.subscriber = subscriber;
+		}
 
 		@Override
 		public void request(long n) {
 			if (n <= 0) {
 				throw new IllegalArgumentException();
 			}
-			count = n;
+			requested.getAndUpdate(r -> r + n < 0 ? Long.MAX_VALUE : r + n);
+			drain();
 		}
 
-		public void decrement() {
-			if (count != Long.MAX_VALUE && count > 0) {
-				count--;
-			}
+		@Override
+		public void cancel() {
+			cancelled = true;
+			subscriptions.remove(this);
+			drain();
 		}
 
-		public boolean isSaturated() {
-			return count == 0;
+		void offer(CompactFsEvent ev) {
+			buffered.incrementAndGet();
+			queue.add(ev);
+			drain();
 		}
 
-		@Override
-		public void cancel() {
+		void fail(IOException ex) {
+			error = ex;
 			subscriptions.remove(this);
+			drain();
+		}
+
+		private void drain() {
+			if (wip.getAndIncrement() != 0) {
+				return;
+			}
+			int work = 1;
+			do {
+				while (!cancelled && !done) {
+					if (missed && requested.get() > 0) {
+						missed = false;
+						next(new FsEvent(Type.RESYNC, dir));
+						continue;
+					}
+					FsEvent ev = poll();
+					if (ev == null) {
+						if (error != null) {
+							done = true;
+							subscriber.onError(error);
+						}
+						break;
+					}
+					if (requested.get() == 0) {
+						missed = true;
+					} else {
+						next(ev);
+					}
+				}
+				if (cancelled || done) {
+					while (poll() != null) {
+						// discarded
+					}
+				}
+				work = wip.addAndGet(-work);
+			} while (work != 0);
 		}
 
+		private FsEvent poll() {
+			CompactFsEvent compact = queue.poll();
+			if (compact == null) {
+				return null;
+			}
+			FsEvent ev = compact.toFsEvent();
+			buffered.decrementAndGet();
+			return ev;
+		}
+
+		private void next(FsEvent ev) {
+			requested.getAndUpdate(r -> r == Long.MAX_VALUE ? r : r - 1);
+			subscriber.onNext(ev);
+		}
 	}
 }
@@ -0,0 +1,143 @@
+package de.sk9.commons.fswatchdog.reactive;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import de.sk9.commons.fswatchdog.reactive.FsEvent.Type;
+
+class CompactFsEventTest {
+
+	private static final Path DIR = Path.of("some", "watched", "dir");
+
+	@Test
+	void testRoundTrip() {
+		DirectoryTable table = new DirectoryTable();
+		FsEvent event = new FsEvent(Type.MODIFIED, DIR.resolve("file.jpg"));
+
+		CompactFsEvent compact = table.compact(event);
+
+		assertThat(compact.name(), is("file.jpg"));
+		assertThat(compact.path(), is(event.path()));
+		assertThat(compact.toFsEvent(), is(event));
+	}
+
+	@Test
+	void testParentIsInterned() {
+		DirectoryTable table = new DirectoryTable();
+
+		CompactFsEvent first = table.compact(new FsEvent(Type.CREATED, DIR.resolve("a")));
+		CompactFsEvent second = table.compact(new FsEvent(Type.CREATED, Path.of("some/watched/dir").resolve("b")));
+
+		assertThat(first.directory(), is(second.directory()));
+		assertThat(table.size(), is(1));
+		assertThat(table.directory(first.directory()), sameInstance(table.directory(second.directory())));
+	}
+
+	@Test
+	void testPathWithoutParent() {
+		DirectoryTable table = new DirectoryTable();
+		FsEvent event = new FsEvent(Type.RESYNC, Path.of("root"));
+
+		assertThat(table.compact(event).toFsEvent(), is(event));
+		assertThat(table.size(), is(0));
+	}
+
+	@Test
+	void testDeleteEvictsSubtree() {
+		DirectoryTable table = new DirectoryTable();
+		CompactFsEvent inside = table.compact(new FsEvent(Type.CREATED, DIR.resolve("sub").resolve("a")));
+		table.compact(new FsEvent(Type.CREATED, DIR.resolve("sub").resolve("deeper").resolve("b")));
+		table.compact(new FsEvent(Type.CREATED, DIR.resolve("sub-sibling").resolve("c")));
+		assertThat(table.size(), is(3));
+
+		table.compact(new FsEvent(Type.DELETED, DIR.resolve("sub")));
+
+		// the sibling and the parent of the deleted directory stay
+		assertThat(table.size(), is(2));
+		assertThat(inside.path(), is(DIR.resolve("sub").resolve("a")));
+
+		table.recycle();
+		CompactFsEvent reused = table.compact(new FsEvent(Type.CREATED, Path.of("other", "x")));
+		assertThat(reused.path(), is(Path.of("other", "x")));
+		assertThat(table.compact(new FsEvent(Type.CREATED, DIR.resolve("sub").resolve("a"))).path(),
+				is(DIR.resolve("sub").resolve("a")));
+	}
+
+	@Test
+	void testCompactEventsRetainLessHeap() throws InterruptedException {
+		Path root = Path.of("/", "home", "someone", "Pictures", "library", "2021");
+		int count = 200_000;
+
+		long before = usedHeap();
+		List<FsEvent> events = new ArrayList<>(count);
+		for (int i = 0; i < count; i++) {
+			events.add(new FsEvent(Type.CREATED, root.resolve("album" + i % 100).resolve("IMG_" + i + ".jpg")));
+		}
+		long plain = usedHeap() - before;
+		assertThat(events.size(), is(count));
+		events = null;
+
+		before = usedHeap();
+		DirectoryTable table = new DirectoryTable();
+		List<CompactFsEvent> compacts = new ArrayList<>(count);
+		for (int i = 0; i < count; i++) {
+			compacts.add(table.compact(
+					new FsEvent(Type.CREATED, root.resolve("album" + i % 100).resolve("IMG_" + i + ".jpg"))));
+		}
+		long compact = usedHeap() - before;
+		assertThat(compacts.size(), is(count));
+
+		assertThat(compact < plain * 3 / 4, is(true));
+	}
+
+	private static long usedHeap() throws InterruptedException {
+		Runtime runtime = Runtime.getRuntime();
+		long used = Long.MAX_VALUE;
+		for (int i = 0; i < 5; i++) {
+			System.gc();
+			Thread.sleep(20);
+			used = Math.min(used, runtime.totalMemory() - runtime.freeMemory());
+		}
+		return used;
+	}
+
+	@Test
+	void testBatch() {
+		DirectoryTable table = new DirectoryTable();
+		FsEventBatch batch = new FsEventBatch(table, 1);
+		List<FsEvent> events = List.of(
+				new FsEvent(Type.CREATED, DIR.resolve("a")),
+				new FsEvent(Type.MODIFIED, DIR.resolve("a")),
+				new FsEvent(Type.DELETED, DIR.resolve("sub").resolve("b")));
+		events.forEach(batch::add);
+
+		assertThat(batch.size(), is(3));
+		assertThat(batch.type(2), is(Type.DELETED));
+		assertThat(batch.path(2), is(DIR.resolve("sub").resolve("b")));
+		assertThat(table.size(), is(2));
+
+		List<FsEvent> replayed = new ArrayList<>();
+		batch.forEach(replayed::add);
+		assertThat(replayed, is(events));
+
+		batch.clear();
+		assertThat(batch.isEmpty(), is(true));
+		assertThrows(IndexOutOfBoundsException.class, () -> batch.get(0));
+	}
+
+	@Test
+	void testBatchRejectsForeignTable() {
+		FsEventBatch batch = new FsEventBatch(new DirectoryTable());
+		CompactFsEvent foreign = new DirectoryTable().compact(new FsEvent(Type.CREATED, DIR.resolve("a")));
+
+		assertThrows(IllegalArgumentException.class, () -> batch.add(foreign));
+	}
+}
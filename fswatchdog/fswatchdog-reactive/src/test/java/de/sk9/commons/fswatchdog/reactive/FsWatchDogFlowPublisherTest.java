@@ -1,5 +1,6 @@
 package de.sk9.commons.fswatchdog.reactive;
 
+import static org.hamcrest.MatcherAssert.assertThat;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.spy;
@@ -9,10 +10,15 @@ import static org.mockito.Mockito.verify;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.Flow.Subscriber;
 import java.util.concurrent.Flow.Subscription;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
+import org.hamcrest.Matchers;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
@@ -48,6 +54,145 @@ class FsWatchDogFlowPublisherTest {
 		verify(mock, times(0)).onComplete();
 	}
 
+	@Test
+	void testOverflowKeepsStreamOpen() throws IOException, InterruptedException {
+		FsWatchDogFlowPublisher publisher = new FsWatchDogFlowPublisher(testDir);
+
+		Subscriber<FsEvent> mock = spy(new FSEventSubscriber());
+		publisher.subscribe(mock);
+
+		publisher.onOverflow();
+		Path tempFile = Files.createTempFile(testDir, FILE_PREFIX, null);
+
+		TimeUnit.SECONDS.sleep(1);
+		publisher.close();
+
+		verify(mock, times(1)).onNext(new FsEvent(Type.RESYNC, testDir));
+		verify(mock, times(1)).onNext(new FsEvent(Type.CREATED, tempFile));
+		verify(mock, times(0)).onError(any(Throwable.class));
+	}
+
+	@Test
+	void testOverflowCatchUp() throws IOException, InterruptedException {
+		Path existing = Files.createTempFile(testDir, FILE_PREFIX, null);
+		FsWatchDogFlowPublisher publisher = new FsWatchDogFlowPublisher(testDir, true);
+
+		Subscriber<FsEvent> mock = spy(new FSEventSubscriber());
+		publisher.subscribe(mock);
+
+		// simulate lost events: nothing is watching while the directory changes
+		publisher.close();
+		Path missed = Files.createTempFile(testDir, FILE_PREFIX, null);
+		Files.delete(existing);
+
+		publisher.onOverflow();
+
+		verify(mock, times(1)).onNext(new FsEvent(Type.RESYNC, testDir));
+		verify(mock, times(1)).onNext(new FsEvent(Type.CREATED, missed));
+		verify(mock, times(1)).onNext(new FsEvent(Type.DELETED, existing));
+		verify(mock, times(0)).onError(any(Throwable.class));
+	}
+
+	@Test
+	void testResyncAfterDroppedEvents() throws IOException, InterruptedException {
+		FsWatchDogFlowPublisher publisher = new FsWatchDogFlowPublisher(testDir);
+		publisher.close();
+
+		Subscription[] subscription = new Subscription[1];
+		Subscriber<FsEvent> mock = spy(new FSEventSubscriber() {
+			@Override
+			public void onSubscribe(Subscription s) {
+				subscription[0] = s;
+				s.request(1);
+			}
+
+			@Override
+			public void onNext(FsEvent item) {
+			}
+		});
+		publisher.subscribe(mock);
+
+		Path first = testDir.resolve("first");
+		Path dropped = testDir.resolve("dropped");
+		publisher.onCreate(first);
+		publisher.onCreate(dropped);
+		publisher.onOverflow();
+		verify(mock, times(0)).onNext(new FsEvent(Type.RESYNC, testDir));
+
+		subscription[0].request(1);
+		subscription[0].request(1);
+
+		verify(mock, times(1)).onNext(new FsEvent(Type.CREATED, first));
+		verify(mock, times(0)).onNext(new FsEvent(Type.CREATED, dropped));
+		verify(mock, times(1)).onNext(new FsEvent(Type.RESYNC, testDir));
+	}
+
+	@Test
+	void testConcurrentRequestsAreSerialized() throws Exception {
+		FsWatchDogFlowPublisher publisher = new FsWatchDogFlowPublisher(testDir);
+		publisher.close();
+
+		AtomicInteger active = new AtomicInteger();
+		AtomicBoolean overlapped = new AtomicBoolean();
+		List<FsEvent> received = new CopyOnWriteArrayList<>();
+		Subscription[] subscription = new Subscription[1];
+		publisher.subscribe(new FSEventSubscriber() {
+			@Override
+			public void onSubscribe(Subscription s) {
+				subscription[0] = s;
+			}
+
+			@Override
+			public void onNext(FsEvent item) {
+				// a recursive call from request() would be seen here as well
+				if (active.getAndIncrement() != 0) {
+					overlapped.set(true);
+				}
+				received.add(item);
+				if (received.size() % 2 == 0) {
+					subscription[0].request(1);
+				}
+				active.decrementAndGet();
+			}
+		});
+
+		Thread requester = new Thread(() -> {
+			for (int i = 0; i < 10_000; i++) {
+				subscription[0].request(1);
+			}
+		});
+		requester.start();
+		for (int i = 0; i < 10_000; i++) {
+			publisher.onCreate(testDir.resolve(FILE_PREFIX + i));
+		}
+		requester.join();
+
+		assertThat(overlapped.get(), Matchers.is(false));
+		assertThat(received, Matchers.not(Matchers.empty()));
+		Path last = testDir.resolve("last");
+		subscription[0].request(2);
+		publisher.onCreate(last);
+		assertThat(received.get(received.size() - 1), Matchers.is(new FsEvent(Type.CREATED, last)));
+	}
+
+	@Test
+	void testDrainedDirectoriesAreRecycled() throws IOException, InterruptedException {
+		FsWatchDogFlowPublisher publisher = new FsWatchDogFlowPublisher(testDir);
+		publisher.close();
+		Subscriber<FsEvent> mock = spy(new FSEventSubscriber());
+		publisher.subscribe(mock);
+
+		for (int i = 0; i < 1_000; i++) {
+			Path dir = testDir.resolve("dir" + i);
+			publisher.onCreate(dir.resolve(FILE_PREFIX));
+			publisher.onDelete(dir);
+		}
+
+		verify(mock, times(2_000)).onNext(any(FsEvent.class));
+		// the ids of deleted directories were reused, the table did not grow
+		assertThat(publisher.table.intern(testDir.resolve("new")), Matchers.lessThan(4));
+	}
+
 	@Test 
 	void testNotSoHappyPath() throws InterruptedException {
 		Path notExisting = Path.of("this-path-does-not-exist");
@@ -0,0 +1,92 @@
+package de.sk9.commons.fswatchdog.reactor;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import de.sk9.commons.fswatchdog.core.FsWatchDog;
+import de.sk9.commons.fswatchdog.core.FsWatchDogFactory;
+import de.sk9.commons.fswatchdog.core.Subscriber;
+import de.sk9.commons.fswatchdog.reactive.FsEvent;
+import de.sk9.commons.fswatchdog.reactive.FsEvent.Type;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.FluxSink;
+import reactor.core.publisher.FluxSink.OverflowStrategy;
+import reactor.core.scheduler.Scheduler;
+
+/**
+ * Creates {@link Flux} sources that are fed directly by the core
+ * {@link Subscriber} callbacks. Every subscription starts its own watcher,
+ * cancelling the subscription closes it.
+ */
+public class FsWatchDogFlux {
+	private static Logger log = LogManager.getLogger(FsWatchDogFlux.class);
+
+	private FsWatchDogFlux() {
+	}
+
+	public static Flux<FsEvent> watch(Path dir) {
+		return watch(dir, OverflowStrategy.BUFFER);
+	}
+
+	public static Flux<FsEvent> watch(Path dir, OverflowStrategy overflowStrategy) {
+		return Flux.create(sink -> start(dir, sink), overflowStrategy);
+	}
+
+	/**
+	 * Like {@link #watch(Path, OverflowStrategy)}, events are delivered on the
+	 * given scheduler instead of the watcher thread.
+	 */
+	public static Flux<FsEvent> watch(Path dir, OverflowStrategy overflowStrategy, Scheduler scheduler) {
+		return watch(dir, overflowStrategy).publishOn(scheduler);
+	}
+
+	private static void start(Path dir, FluxSink<FsEvent> sink) {
+		try {
+			FsWatchDog watchDog = FsWatchDogFactory.getInstance().create(dir, new SinkSubscriber(dir, sink));
+			sink.onDispose(() -> close(dir, watchDog));
+		} catch (IOException | RuntimeException ex) {
+			sink.error(ex);
+		}
+	}
+
+	private static void close(Path dir, FsWatchDog watchDog) {
+		try {
+			log.debug(() -> "closing watcher for " + dir);
+			watchDog.close();
+		} catch (IOException ex) {
+			log.warn(() -> "failed closing watcher for " + dir + ", cause: " + ex);
+		} catch (InterruptedException ex) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	private record SinkSubscriber(Path dir, FluxSink<FsEvent> sink) implements Subscriber {
+		@Override
+		public void onCreate(Path path) {
+			sink.next(new FsEvent(Type.CREATED, path));
+		}
+
+		@Override
+		public void onModify(Path path) {
+			sink.next(new FsEvent(Type.MODIFIED, path));
+		}
+
+		@Override
+		public void onDelete(Path path) {
+			sink.next(new FsEvent(Type.DELETED, path));
+		}
+
+		@Override
+		public void onOverflow() {
+			sink.next(new FsEvent(Type.RESYNC, dir));
+		}
+
+		@Override
+		public void onError(IOException ioe) {
+			sink.error(ioe);
+		}
+	}
+}
@@ -0,0 +1,73 @@
+package de.sk9.commons.fswatchdog.reactor;
+
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+import org.reactivestreams.Publisher;
+
+import de.sk9.commons.fswatchdog.reactive.FsEvent;
+import de.sk9.commons.fswatchdog.reactive.FsEvent.Type;
+import reactor.core.publisher.Flux;
+import reactor.core.scheduler.Scheduler;
+
+/**
+ * Processes file events in parallel while keeping the order per path. Events
+ * are hashed by path onto a fixed number of rails, each rail has its own queue
+ * of at most {@code railBuffer} events and runs its work sequentially on the
+ * given scheduler, so a slow rail only holds back the paths hashed onto it
+ * until its queue is full. A queued {@code MODIFIED} event is skipped if a
+ * newer {@code MODIFIED} event for the same path has been received in the
+ * meantime.
+ */
+public class PathOrderedRails {
+
+	private PathOrderedRails() {
+	}
+
+	public static <R> Flux<R> process(Flux<FsEvent> events, int parallelism, int railBuffer, Scheduler scheduler,
+			Function<FsEvent, ? extends Publisher<? extends R>> work) {
+		if (parallelism <= 0 || railBuffer <= 0) {
+			throw new IllegalArgumentException("parallelism and railBuffer must be positive");
+		}
+		return Flux.defer(() -> {
+			Dispatcher dispatcher = new Dispatcher(parallelism);
+			return events.map(dispatcher::sequence)
+					.groupBy(Sequenced::rail, parallelism * railBuffer)
+					.flatMap(rail -> rail.publishOn(scheduler, railBuffer)
+							.concatMap(sequenced -> Flux.<R>defer(() -> {
+								if (sequenced.isStale()) {
+									return Flux.empty();
+								}
+								return Flux.from(work.apply(sequenced.event()));
+							}), 1), parallelism)
+					.doFinally(signal -> dispatcher.latestModify.clear());
+		});
+	}
+
+	private static class Dispatcher {
+		private final int parallelism;
+		private final AtomicLong sequence = new AtomicLong();
+		private final Map<Path, Long> latestModify = new ConcurrentHashMap<>();
+
+		Dispatcher(int parallelism) {
+			this.parallelism = parallelism;
+		}
+
+		Sequenced sequence(FsEvent event) {
+			long seq = sequence.incrementAndGet();
+			if (event.type() == Type.MODIFIED) {
+				latestModify.put(event.path(), seq);
+			}
+			return new Sequenced(this, event, seq, Math.floorMod(event.path().hashCode(), parallelism));
+		}
+	}
+
+	private record Sequenced(Dispatcher dispatcher, FsEvent event, long seq, int rail) {
+		boolean isStale() {
+			return event.type() == Type.MODIFIED && !dispatcher.latestModify.remove(event.path(), seq);
+		}
+	}
+}
@@ -0,0 +1,120 @@
+package de.sk9.commons.fswatchdog.reactor;
+
+import static org.awaitility.Awaitility.await;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import de.sk9.commons.fswatchdog.reactive.FsEvent;
+import de.sk9.commons.fswatchdog.reactive.FsEvent.Type;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.FluxSink.OverflowStrategy;
+import reactor.core.publisher.Sinks;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+import reactor.test.StepVerifier;
+
+class FsWatchDogFluxTest {
+
+	private static final String FILE_PREFIX = "file";
+	private Path testDir1;
+	private Path testDir2;
+
+	@BeforeEach
+	void beforeEach() throws IOException {
+		testDir1 = Files.createTempDirectory(FsWatchDogFluxTest.class.getSimpleName());
+		testDir2 = Files.createTempDirectory(FsWatchDogFluxTest.class.getSimpleName());
+	}
+
+	@Test
+	void testTwoDirs() {
+		Flux<FsEvent> eventsFlux = Flux.just(testDir1, testDir2).flatMap(FsWatchDogFlux::watch);
+
+		StepVerifier.create(eventsFlux)
+				.then(() -> createTempFile(testDir1))
+				.then(() -> createTempFile(testDir2))
+				.expectNextMatches(event -> event.type() == Type.CREATED)
+				.expectNextMatches(event -> event.type() == Type.CREATED)
+				.thenCancel()
+				.verify(Duration.ofSeconds(10));
+	}
+
+	@Test
+	void testTwoHotDirs() throws InterruptedException {
+		Sinks.Many<Path> dirSink = Sinks.many().multicast().directBestEffort();
+		List<FsEvent> events = new CopyOnWriteArrayList<>();
+
+		Disposable disposable = dirSink.asFlux()
+				.flatMap(dir -> FsWatchDogFlux.watch(dir, OverflowStrategy.LATEST))
+				.subscribe(events::add);
+
+		dirSink.tryEmitNext(testDir1);
+		createTempFile(testDir1);
+		createTempFile(testDir2);
+		dirSink.tryEmitNext(testDir2);
+		createTempFile(testDir2);
+
+		await().until(() -> events.size() == 2);
+		TimeUnit.MILLISECONDS.sleep(500);
+		disposable.dispose();
+
+		assertThat(events.size(), is(2));
+		assertThat(events.stream().allMatch(event -> event.type() == Type.CREATED), is(true));
+	}
+
+	@Test
+	void testSchedulerAffinity() {
+		Scheduler scheduler = Schedulers.newSingle("fswatchdog-test");
+		try {
+			StepVerifier.create(FsWatchDogFlux.watch(testDir1, OverflowStrategy.BUFFER, scheduler)
+					.map(event -> Thread.currentThread().getName()))
+					.then(() -> createTempFile(testDir1))
+					.expectNextMatches(thread -> thread.startsWith("fswatchdog-test"))
+					.thenCancel()
+					.verify(Duration.ofSeconds(10));
+		} finally {
+			scheduler.dispose();
+		}
+	}
+
+	@Test
+	void testCancelClosesWatcher() throws InterruptedException {
+		List<FsEvent> events = new CopyOnWriteArrayList<>();
+		Disposable disposable = FsWatchDogFlux.watch(testDir1).subscribe(events::add);
+
+		createTempFile(testDir1);
+		await().until(() -> events.size() == 1);
+
+		disposable.dispose();
+		createTempFile(testDir1);
+		TimeUnit.SECONDS.sleep(1);
+
+		assertThat(events.size(), is(1));
+	}
+
+	@Test
+	void testNotExistingDir() {
+		StepVerifier.create(FsWatchDogFlux.watch(Path.of("this-path-does-not-exist")))
+				.expectError()
+				.verify(Duration.ofSeconds(10));
+	}
+
+	private void createTempFile(Path dir) {
+		try {
+			Files.createTempFile(dir, FILE_PREFIX, null);
+		} catch (IOException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+}
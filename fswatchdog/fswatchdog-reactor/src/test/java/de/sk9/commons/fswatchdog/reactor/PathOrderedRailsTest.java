@@ -0,0 +1,128 @@
+package de.sk9.commons.fswatchdog.reactor;
+
+import static org.awaitility.Awaitility.await;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import de.sk9.commons.fswatchdog.reactive.FsEvent;
+import de.sk9.commons.fswatchdog.reactive.FsEvent.Type;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+class PathOrderedRailsTest {
+
+	private Scheduler scheduler;
+
+	@BeforeEach
+	void beforeEach() {
+		scheduler = Schedulers.newParallel(PathOrderedRailsTest.class.getSimpleName(), 4);
+	}
+
+	@AfterEach
+	void afterEach() {
+		scheduler.dispose();
+	}
+
+	@Test
+	void testOrderPerPath() {
+		List<FsEvent> events = new ArrayList<>();
+		for (int i = 0; i < 1000; i++) {
+			events.add(new FsEvent(i % 2 == 0 ? Type.CREATED : Type.DELETED, Path.of("file" + (i % 20))));
+		}
+		Map<Path, List<FsEvent>> processed = new ConcurrentHashMap<>();
+
+		Long count = PathOrderedRails.process(Flux.fromIterable(events), 4, 8, scheduler,
+				event -> Mono.fromRunnable(() -> processed
+						.computeIfAbsent(event.path(), p -> new CopyOnWriteArrayList<>())
+						.add(event))
+						.thenReturn(event))
+				.count()
+				.block();
+
+		assertThat(count, is(1000L));
+		for (Map.Entry<Path, List<FsEvent>> entry : processed.entrySet()) {
+			List<FsEvent> expected = events.stream().filter(e -> e.path().equals(entry.getKey())).toList();
+			assertThat(entry.getValue(), is(expected));
+		}
+	}
+
+	@Test
+	void testStaleModifyIsDropped() throws InterruptedException {
+		Path path = Path.of("file");
+		Path other = Path.of("other");
+		CountDownLatch busy = new CountDownLatch(1);
+		List<FsEvent> processed = new CopyOnWriteArrayList<>();
+
+		Flux<FsEvent> events = Flux.just(
+				new FsEvent(Type.CREATED, path),
+				new FsEvent(Type.MODIFIED, path),
+				new FsEvent(Type.MODIFIED, path),
+				new FsEvent(Type.MODIFIED, other),
+				new FsEvent(Type.MODIFIED, path));
+
+		PathOrderedRails.process(events, 2, 8, scheduler, event -> Mono.fromCallable(() -> {
+			if (event.type() == Type.CREATED) {
+				// keep the rail busy until all events are queued
+				busy.await(10, TimeUnit.SECONDS);
+			}
+			processed.add(event);
+			return event;
+		})).subscribe();
+		busy.countDown();
+
+		await().until(() -> processed.size() == 3);
+		TimeUnit.MILLISECONDS.sleep(200);
+		assertThat(processed.stream().filter(e -> e.path().equals(path)).toList(), contains(
+				new FsEvent(Type.CREATED, path),
+				new FsEvent(Type.MODIFIED, path)));
+		assertThat(processed.contains(new FsEvent(Type.MODIFIED, other)), is(true));
+		assertThat(processed.size(), is(3));
+	}
+
+	@Test
+	void testSlowRailDoesNotBlockOtherRails() throws InterruptedException {
+		Path slow = Path.of("slow");
+		CountDownLatch busy = new CountDownLatch(1);
+		List<FsEvent> events = new ArrayList<>();
+		for (int i = 0; i < 4; i++) {
+			events.add(new FsEvent(Type.MODIFIED, slow));
+		}
+		List<Path> others = new ArrayList<>();
+		for (int i = 0; others.size() < 50; i++) {
+			Path other = Path.of("other" + i);
+			if (Math.floorMod(other.hashCode(), 2) != Math.floorMod(slow.hashCode(), 2)) {
+				others.add(other);
+				events.add(new FsEvent(Type.CREATED, other));
+			}
+		}
+		List<FsEvent> processed = new CopyOnWriteArrayList<>();
+
+		PathOrderedRails.process(Flux.fromIterable(events), 2, 2, scheduler, event -> Mono.fromCallable(() -> {
+			if (event.path().equals(slow)) {
+				busy.await(10, TimeUnit.SECONDS);
+			}
+			processed.add(event);
+			return event;
+		})).subscribe();
+
+		await().until(() -> processed.size() == others.size());
+		busy.countDown();
+		await().until(() -> processed.size() > others.size());
+	}
+}
@@ -0,0 +1,20 @@
+package de.sk9.commons.imaging.index;
+
+import java.nio.file.Path;
+import java.util.List;
+
+/**
+ * Extracted metadata of one file. {@code size} and {@code lastModified} are
+ * the file attributes at the time of extraction and tell whether the entry is
+ * still current.
+ */
+public record IndexEntry(Path path, long size, long lastModified, List<String> keywords, Integer rating) {
+
+	public IndexEntry {
+		keywords = List.copyOf(keywords);
+	}
+
+	public boolean isCurrent(long size, long lastModified) {
+		return this.size == size && this.lastModified == lastModified;
+	}
+}
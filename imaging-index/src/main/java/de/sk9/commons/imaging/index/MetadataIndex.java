@@ -0,0 +1,380 @@
+package de.sk9.commons.imaging.index;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Keywords and ratings of a set of files with an inverted keyword index. Files
+ * are numbered internally, the postings of a keyword are a {@link BitSet} of
+ * file numbers. The index is safe for concurrent use.
+ *
+ * <p>
+ * On disk the index is stored as a file table followed by the postings of
+ * every keyword as delta encoded varints; the keyword lists of the files are
+ * rebuilt from the postings when loading.
+ */
+public class MetadataIndex {
+	private static final int MAGIC = 0x534B3949;
+	private static final int VERSION = 1;
+
+	private final NavigableMap<Path, Integer> ids = new TreeMap<>();
+	private final List<IndexEntry> entries = new ArrayList<>();
+	private final List<Integer> freeIds = new ArrayList<>();
+	private final Map<String, BitSet> postings = new HashMap<>();
+	private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+	public IndexEntry get(Path path) {
+		lock.readLock().lock();
+		try {
+			Integer id = ids.get(path);
+			return id == null ? null : entries.get(id);
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	public boolean isCurrent(Path path, long size, long lastModified) {
+		IndexEntry entry = get(path);
+		return entry != null && entry.isCurrent(size, lastModified);
+	}
+
+	public void put(IndexEntry entry) {
+		lock.writeLock().lock();
+		try {
+			Integer id = ids.get(entry.path());
+			if (id == null) {
+				id = freeIds.isEmpty() ? entries.size() : freeIds.remove(freeIds.size() - 1);
+				ids.put(entry.path(), id);
+				if (id == entries.size()) {
+					entries.add(null);
+				}
+			} else {
+				unlink(id);
+			}
+			entries.set(id, entry);
+			for (String keyword : entry.keywords()) {
+				postings.computeIfAbsent(keyword, k -> new BitSet()).set(id);
+			}
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	public boolean remove(Path path) {
+		lock.writeLock().lock();
+		try {
+			Integer id = ids.remove(path);
+			if (id == null) {
+				return false;
+			}
+			release(id);
+			return true;
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * Removes the entry of {@code path} and all entries below it. Only the
+	 * range of the sorted paths starting with {@code path} is visited.
+	 *
+	 * @return the number of removed entries
+	 */
+	public int removeTree(Path path) {
+		lock.writeLock().lock();
+		try {
+			int removed = 0;
+			for (Iterator<Map.Entry<Path, Integer>> i = subtreeRange(path).entrySet().iterator(); i.hasNext();) {
+				Map.Entry<Path, Integer> entry = i.next();
+				// the range also holds siblings like "name-2" or "name.jpg"
+				if (entry.getKey().startsWith(path)) {
+					i.remove();
+					release(entry.getValue());
+					removed++;
+				}
+			}
+			return removed;
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	public Set<Path> findByKeyword(String keyword) {
+		lock.readLock().lock();
+		try {
+			BitSet files = postings.get(keyword);
+			if (files == null) {
+				return Collections.emptySet();
+			}
+			Set<Path> result = new LinkedHashSet<>();
+			files.stream().forEach(id -> result.add(entries.get(id).path()));
+			return result;
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * @return the files having all of the given keywords
+	 */
+	public Set<Path> findByKeywords(String... keywords) {
+		lock.readLock().lock();
+		try {
+			BitSet files = null;
+			for (String keyword : keywords) {
+				BitSet posting = postings.get(keyword);
+				if (posting == null) {
+					return Collections.emptySet();
+				}
+				if (files == null) {
+					files = (BitSet) posting.clone();
+				} else {
+					files.and(posting);
+				}
+			}
+			Set<Path> result = new LinkedHashSet<>();
+			if (files != null) {
+				files.stream().forEach(id -> result.add(entries.get(id).path()));
+			}
+			return result;
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	public Set<String> keywords() {
+		lock.readLock().lock();
+		try {
+			return Set.copyOf(postings.keySet());
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	public Set<Path> paths() {
+		lock.readLock().lock();
+		try {
+			return Set.copyOf(ids.keySet());
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	public int size() {
+		lock.readLock().lock();
+		try {
+			return ids.size();
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * Writes the index to a temp file that is synced to disk before it replaces
+	 * the file, so a crash leaves either the old or the new index.
+	 */
+	public void save(Path file) throws IOException {
+		Path directory = file.toAbsolutePath().getParent();
+		Path temp = Files.createTempFile(directory, "." + file.getFileName() + ".", ".tmp");
+		try {
+			lock.readLock().lock();
+			try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+				DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel)));
+				write(out);
+				out.flush();
+				channel.force(true);
+			} finally {
+				lock.readLock().unlock();
+			}
+			try {
+				Files.move(temp, file, StandardCopyOption.ATOMIC_MOVE);
+			} catch (AtomicMoveNotSupportedException e) {
+				Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+			}
+			syncDirectory(directory);
+		} finally {
+			Files.deleteIfExists(temp);
+		}
+	}
+
+	/**
+	 * Makes the rename durable. Not every platform allows opening a directory,
+	 * failures are ignored.
+	 */
+	private static void syncDirectory(Path directory) {
+		try (FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+			channel.force(true);
+		} catch (IOException e) {
+			// the index file itself is complete
+		}
+	}
+
+	public static MetadataIndex load(Path file) throws IOException {
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+			return read(in);
+		}
+	}
+
+	/**
+	 * @return the paths sorted between {@code path} and the first path after
+	 *         all of its descendants
+	 */
+	private NavigableMap<Path, Integer> subtreeRange(Path path) {
+		Path name = path.getFileName();
+		if (name == null) {
+			return ids.tailMap(path, true);
+		}
+		char afterSeparator = (char) (path.getFileSystem().getSeparator().charAt(0) + 1);
+		return ids.subMap(path, true, path.resolveSibling(name.toString() + afterSeparator), false);
+	}
+
+	private void release(int id) {
+		unlink(id);
+		entries.set(id, null);
+		freeIds.add(id);
+	}
+
+	private void unlink(int id) {
+		for (String keyword : entries.get(id).keywords()) {
+			BitSet files = postings.get(keyword);
+			if (files == null) {
+				// duplicate keyword of the same entry
+				continue;
+			}
+			files.clear(id);
+			if (files.isEmpty()) {
+				postings.remove(keyword);
+			}
+		}
+	}
+
+	private void write(DataOutputStream out) throws IOException {
+		out.writeInt(MAGIC);
+		out.writeInt(VERSION);
+
+		// files are renumbered densely, so the postings do not carry holes
+		int[] fileNumbers = new int[entries.size()];
+		writeVarInt(out, ids.size());
+		int fileNumber = 0;
+		for (int id = 0; id < entries.size(); id++) {
+			IndexEntry entry = entries.get(id);
+			if (entry != null) {
+				fileNumbers[id] = fileNumber++;
+				out.writeUTF(entry.path().toString());
+				writeVarLong(out, entry.size());
+				writeVarLong(out, entry.lastModified());
+				out.writeBoolean(entry.rating() != null);
+				if (entry.rating() != null) {
+					out.writeInt(entry.rating());
+				}
+			}
+		}
+
+		Map<String, BitSet> sorted = new TreeMap<>(postings);
+		writeVarInt(out, sorted.size());
+		for (Map.Entry<String, BitSet> posting : sorted.entrySet()) {
+			out.writeUTF(posting.getKey());
+			BitSet files = posting.getValue();
+			writeVarInt(out, files.cardinality());
+			int previous = 0;
+			for (int id = files.nextSetBit(0); id >= 0; id = files.nextSetBit(id + 1)) {
+				writeVarInt(out, fileNumbers[id] - previous);
+				previous = fileNumbers[id];
+			}
+		}
+	}
+
+	private static MetadataIndex read(DataInputStream in) throws IOException {
+		if (in.readInt() != MAGIC) {
+			throw new IOException("not a metadata index file");
+		}
+		int version = in.readInt();
+		if (version != VERSION) {
+			throw new IOException("unsupported metadata index version " + version);
+		}
+
+		int fileCount = readVarInt(in);
+		Path[] paths = new Path[fileCount];
+		long[] sizes = new long[fileCount];
+		long[] lastModified = new long[fileCount];
+		Integer[] ratings = new Integer[fileCount];
+		for (int i = 0; i < fileCount; i++) {
+			paths[i] = Path.of(in.readUTF());
+			sizes[i] = readVarLong(in);
+			lastModified[i] = readVarLong(in);
+			ratings[i] = in.readBoolean() ? in.readInt() : null;
+		}
+
+		List<List<String>> keywords = new ArrayList<>(fileCount);
+		for (int i = 0; i < fileCount; i++) {
+			keywords.add(new ArrayList<>());
+		}
+		int keywordCount = readVarInt(in);
+		for (int k = 0; k < keywordCount; k++) {
+			String keyword = in.readUTF();
+			int count = readVarInt(in);
+			int file = 0;
+			for (int i = 0; i < count; i++) {
+				file += readVarInt(in);
+				keywords.get(file).add(keyword);
+			}
+		}
+
+		MetadataIndex index = new MetadataIndex();
+		for (int i = 0; i < fileCount; i++) {
+			index.put(new IndexEntry(paths[i], sizes[i], lastModified[i], keywords.get(i), ratings[i]));
+		}
+		return index;
+	}
+
+	private static void writeVarInt(DataOutputStream out, int value) throws IOException {
+		writeVarLong(out, value & 0xFFFFFFFFL);
+	}
+
+	private static void writeVarLong(DataOutputStream out, long value) throws IOException {
+		while ((value & ~0x7FL) != 0) {
+			out.writeByte((int) ((value & 0x7F) | 0x80));
+			value >>>= 7;
+		}
+		out.writeByte((int) value);
+	}
+
+	private static int readVarInt(DataInputStream in) throws IOException {
+		return (int) readVarLong(in);
+	}
+
+	private static long readVarLong(DataInputStream in) throws IOException {
+		long value = 0;
+		for (int shift = 0; shift < 64; shift += 7) {
+			byte b = in.readByte();
+			value |= (long) (b & 0x7F) << shift;
+			if ((b & 0x80) == 0) {
+				return value;
+			}
+		}
+		throw new IOException("malformed varint");
+	}
+}
@@ -0,0 +1,168 @@
+package de.sk9.commons.imaging.index;
+
+import java.io.IOException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import de.sk9.commons.fswatchdog.core.FsWatchDog;
+import de.sk9.commons.fswatchdog.core.FsWatchDogFactory;
+import de.sk9.commons.fswatchdog.core.Subscriber;
+import de.sk9.commons.imaging.JpegXmpData;
+import de.sk9.commons.imaging.JpegXmpDataException;
+import de.sk9.commons.imaging.XmpFormats;
+
+/**
+ * Keeps a {@link MetadataIndex} in sync with a directory tree. {@link #start()}
+ * starts watching, then re-parses all files whose size or modification time
+ * differ from the index and drops entries of vanished files; file system
+ * events update the index incrementally. An overflow of the event queue triggers another
+ * full scan, which only re-parses changed files.
+ */
+public class MetadataIndexer implements Subscriber, AutoCloseable {
+	private static Logger log = LogManager.getLogger(MetadataIndexer.class);
+
+	private final Path root;
+	private final MetadataIndex index;
+	private FsWatchDog watchDog;
+
+	public MetadataIndexer(Path root, MetadataIndex index) {
+		this.root = root;
+		this.index = index;
+	}
+
+	public MetadataIndex getIndex() {
+		return index;
+	}
+
+	/**
+	 * The watcher is registered before the scan, so changes made while
+	 * scanning are not missed; their events are handled after the scan and only
+	 * re-parse files that still differ from the index.
+	 */
+	public void start() throws IOException {
+		watchDog = FsWatchDogFactory.getInstance().create(root, this);
+		scan();
+	}
+
+	@Override
+	public void close() throws IOException, InterruptedException {
+		if (watchDog != null) {
+			watchDog.close();
+		}
+	}
+
+	/**
+	 * @return the number of re-parsed files
+	 */
+	public synchronized int scan() throws IOException {
+		Set<Path> seen = new HashSet<>();
+		int[] parsed = { 0 };
+		Files.walkFileTree(root, new SimpleFileVisitor<Path>() {
+			@Override
+			public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+				if (attrs.isRegularFile() && XmpFormats.isSupported(file)) {
+					seen.add(file);
+					if (update(file, attrs)) {
+						parsed[0]++;
+					}
+				}
+				return FileVisitResult.CONTINUE;
+			}
+
+			@Override
+			public FileVisitResult visitFileFailed(Path file, IOException ex) {
+				log.warn(() -> "failed scanning " + file + ", cause: " + ex);
+				return FileVisitResult.CONTINUE;
+			}
+		});
+		Set<Path> vanished = new HashSet<>(index.paths());
+		vanished.removeAll(seen);
+		vanished.forEach(index::remove);
+		log.debug(() -> "scanned " + root + ": " + parsed[0] + " parsed, " + vanished.size() + " removed");
+		return parsed[0];
+	}
+
+	@Override
+	public void onCreate(Path path) {
+		reindex(path);
+	}
+
+	@Override
+	public void onModify(Path path) {
+		reindex(path);
+	}
+
+	@Override
+	public synchronized void onDelete(Path path) {
+		index.removeTree(path);
+	}
+
+	@Override
+	public void onOverflow() {
+		log.warn(() -> "event queue overflow, rescanning " + root);
+		try {
+			scan();
+		} catch (IOException ex) {
+			onError(ex);
+		}
+	}
+
+	@Override
+	public void onError(IOException ioe) {
+		log.warn(() -> "watching " + root + " failed, cause: " + ioe);
+	}
+
+	private synchronized void reindex(Path path) {
+		if (!XmpFormats.isSupported(path)) {
+			return;
+		}
+		try {
+			BasicFileAttributes attrs = Files.readAttributes(path, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+			if (attrs.isRegularFile()) {
+				update(path, attrs);
+			}
+		} catch (IOException ex) {
+			// gone again, a delete event follows
+			log.debug(() -> "cannot read attributes of " + path + ", cause: " + ex);
+		}
+	}
+
+	private boolean update(Path file, BasicFileAttributes attrs) {
+		long size = attrs.size();
+		long lastModified = attrs.lastModifiedTime().toMillis();
+		if (index.isCurrent(file, size, lastModified)) {
+			return false;
+		}
+		try {
+			JpegXmpData xmpData = JpegXmpData.fromFile(file.toFile());
+			index.put(new IndexEntry(file, size, lastModified, xmpData.getKeywords(), rating(file, xmpData)));
+		} catch (JpegXmpDataException ex) {
+			// keep an empty entry, the file is not parsed again until it changes
+			log.warn(() -> "failed reading metadata of " + file + ", cause: " + ex);
+			index.put(new IndexEntry(file, size, lastModified, Collections.emptyList(), null));
+		}
+		return true;
+	}
+
+	/**
+	 * A corrupt rating does not discard the keywords of the file.
+	 */
+	private static Integer rating(Path file, JpegXmpData xmpData) {
+		try {
+			return xmpData.getImageRating();
+		} catch (JpegXmpDataException | RuntimeException ex) {
+			log.warn(() -> "ignoring invalid rating of " + file + ", cause: " + ex);
+			return null;
+		}
+	}
+}
@@ -0,0 +1,102 @@
+package de.sk9.commons.imaging.index;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import org.hamcrest.Matchers;
+import org.junit.jupiter.api.Test;
+
+class MetadataIndexTest {
+
+	private static final Path DIR = Path.of("library");
+
+	@Test
+	void testFindByKeyword() {
+		MetadataIndex index = sampleIndex();
+
+		assertThat(index.findByKeyword("Holiday"), Matchers.containsInAnyOrder(DIR.resolve("a.jpg"), DIR.resolve("b.jpg")));
+		assertThat(index.findByKeywords("Holiday", "Beach"), Matchers.contains(DIR.resolve("b.jpg")));
+		assertThat(index.findByKeyword("Unknown"), Matchers.empty());
+		assertThat(index.keywords(), Matchers.containsInAnyOrder("Holiday", "Beach", "Family"));
+	}
+
+	@Test
+	void testReplaceAndRemove() {
+		MetadataIndex index = sampleIndex();
+
+		index.put(new IndexEntry(DIR.resolve("b.jpg"), 2, 2, List.of("Family"), null));
+		assertThat(index.findByKeyword("Beach"), Matchers.empty());
+		assertThat(index.findByKeyword("Holiday"), Matchers.contains(DIR.resolve("a.jpg")));
+
+		assertThat(index.remove(DIR.resolve("a.jpg")), Matchers.is(true));
+		assertThat(index.findByKeyword("Holiday"), Matchers.empty());
+		assertThat(index.size(), Matchers.is(2));
+
+		index.put(new IndexEntry(DIR.resolve("d.jpg"), 1, 1, List.of("Holiday"), 5));
+		assertThat(index.findByKeyword("Holiday"), Matchers.contains(DIR.resolve("d.jpg")));
+
+		assertThat(index.removeTree(DIR), Matchers.is(3));
+		assertThat(index.size(), Matchers.is(0));
+	}
+
+	@Test
+	void testRemoveTreeKeepsSiblingsWithSamePrefix() {
+		MetadataIndex index = new MetadataIndex();
+		Path sub = DIR.resolve("sub");
+		for (Path path : List.of(sub.resolve("a.jpg"), sub.resolve("deeper").resolve("b.jpg"), DIR.resolve("sub-2.jpg"),
+				DIR.resolve("sub.jpg"), DIR.resolve("sub-other").resolve("c.jpg"), DIR.resolve("subway.jpg"))) {
+			index.put(new IndexEntry(path, 1, 1, List.of("Holiday"), null));
+		}
+
+		assertThat(index.removeTree(sub), Matchers.is(2));
+		assertThat(index.paths(), Matchers.containsInAnyOrder(DIR.resolve("sub-2.jpg"), DIR.resolve("sub.jpg"),
+				DIR.resolve("sub-other").resolve("c.jpg"), DIR.resolve("subway.jpg")));
+		assertThat(index.removeTree(DIR.resolve("sub.jpg")), Matchers.is(1));
+		assertThat(index.findByKeyword("Holiday").size(), Matchers.is(3));
+	}
+
+	@Test
+	void testIsCurrent() {
+		MetadataIndex index = sampleIndex();
+
+		assertThat(index.isCurrent(DIR.resolve("a.jpg"), 100, 1000), Matchers.is(true));
+		assertThat(index.isCurrent(DIR.resolve("a.jpg"), 100, 1001), Matchers.is(false));
+		assertThat(index.isCurrent(DIR.resolve("x.jpg"), 100, 1000), Matchers.is(false));
+	}
+
+	@Test
+	void testSaveAndLoad() throws IOException {
+		MetadataIndex index = sampleIndex();
+		index.remove(DIR.resolve("a.jpg"));
+		Path file = Files.createTempFile(MetadataIndexTest.class.getSimpleName(), ".idx");
+
+		index.save(file);
+		MetadataIndex loaded = MetadataIndex.load(file);
+
+		assertThat(loaded.size(), Matchers.is(2));
+		assertThat(loaded.get(DIR.resolve("b.jpg")), Matchers.is(index.get(DIR.resolve("b.jpg"))));
+		assertThat(loaded.get(DIR.resolve("c.jpg")), Matchers.is(index.get(DIR.resolve("c.jpg"))));
+		assertThat(loaded.findByKeyword("Holiday"), Matchers.contains(DIR.resolve("b.jpg")));
+	}
+
+	@Test
+	void testLoadRejectsOtherFiles() throws IOException {
+		Path file = Files.createTempFile(MetadataIndexTest.class.getSimpleName(), ".idx");
+		Files.writeString(file, "something else");
+
+		assertThrows(IOException.class, () -> MetadataIndex.load(file));
+	}
+
+	private MetadataIndex sampleIndex() {
+		MetadataIndex index = new MetadataIndex();
+		index.put(new IndexEntry(DIR.resolve("a.jpg"), 100, 1000, List.of("Holiday"), 3));
+		index.put(new IndexEntry(DIR.resolve("b.jpg"), 200, 2000, List.of("Beach", "Holiday"), null));
+		index.put(new IndexEntry(DIR.resolve("c.jpg"), 300, 3000, List.of("Family"), 1));
+		return index;
+	}
+}
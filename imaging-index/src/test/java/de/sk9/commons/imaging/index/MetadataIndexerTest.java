@@ -0,0 +1,94 @@
+package de.sk9.commons.imaging.index;
+
+import static org.awaitility.Awaitility.await;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+
+import org.hamcrest.Matchers;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import de.sk9.commons.imaging.JpegXmpData;
+
+class MetadataIndexerTest {
+
+	private Path testDir;
+	private MetadataIndexer indexer;
+
+	@BeforeEach
+	void beforeEach() throws IOException {
+		testDir = Files.createTempDirectory(MetadataIndexerTest.class.getSimpleName());
+		copyResource("adobe_lightroom.jpg", testDir.resolve("lightroom.jpg"));
+		indexer = new MetadataIndexer(testDir, new MetadataIndex());
+		indexer.start();
+	}
+
+	@AfterEach
+	void afterEach() throws IOException, InterruptedException {
+		indexer.close();
+	}
+
+	@Test
+	void testInitialScan() throws IOException {
+		MetadataIndex index = indexer.getIndex();
+
+		assertThat(index.findByKeyword("Lightroom"), Matchers.contains(testDir.resolve("lightroom.jpg")));
+		assertThat(index.get(testDir.resolve("lightroom.jpg")).rating(), Matchers.is(3));
+		// nothing changed, nothing is parsed again
+		assertThat(indexer.scan(), Matchers.is(0));
+	}
+
+	@Test
+	void testLiveUpdates() throws Exception {
+		MetadataIndex index = indexer.getIndex();
+		Path subDir = Files.createDirectory(testDir.resolve("sub"));
+		Path synology = copyResource("synology_photos.jpg", subDir.resolve("synology.jpg"));
+		await().until(() -> index.findByKeyword("Synology").contains(synology));
+
+		JpegXmpData xmpData = JpegXmpData.fromFile(synology.toFile());
+		xmpData.addKeywords("Indexed");
+		xmpData.replaceInFile(synology.toFile());
+		await().until(() -> index.findByKeyword("Indexed").contains(synology));
+
+		assertThat(index.size(), Matchers.is(2));
+	}
+
+	@Test
+	void testChangesDuringScanAreIndexed() throws Exception {
+		indexer.close();
+		Path late = testDir.resolve("late.jpg");
+		indexer = new MetadataIndexer(testDir, new MetadataIndex()) {
+			@Override
+			public synchronized int scan() throws IOException {
+				int parsed = super.scan();
+				// created after the walk passed, only the watcher sees it
+				copyResource("synology_photos.jpg", late);
+				return parsed;
+			}
+		};
+		indexer.start();
+
+		await().until(() -> indexer.getIndex().findByKeyword("Synology").contains(late));
+	}
+
+	@Test
+	void testDelete() throws Exception {
+		MetadataIndex index = indexer.getIndex();
+
+		indexer.onDelete(testDir);
+
+		assertThat(index.size(), Matchers.is(0));
+		assertThat(index.findByKeyword("Lightroom"), Matchers.empty());
+	}
+
+	private Path copyResource(String resourceName, Path target) throws IOException {
+		File template = new File(getClass().getClassLoader().getResource(resourceName).getFile());
+		return Files.copy(template.toPath(), target, StandardCopyOption.REPLACE_EXISTING);
+	}
+}
@@ -0,0 +1,20 @@
+package de.sk9.commons.imaging.ingest;
+
+import java.nio.file.Path;
+
+import de.sk9.commons.imaging.JpegXmpData;
+
+/**
+ * Callbacks of an {@link IngestPipeline}, invoked on its worker threads.
+ */
+public interface IngestListener {
+
+	/**
+	 * @param xmpData the metadata after the keyword rules were applied
+	 * @param written whether the file had to be rewritten
+	 */
+	void onIngested(Path file, JpegXmpData xmpData, boolean written);
+
+	default void onFailed(Path file, Exception e) {
+	}
+}
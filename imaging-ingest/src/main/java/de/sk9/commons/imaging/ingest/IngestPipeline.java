@@ -0,0 +1,309 @@
+package de.sk9.commons.imaging.ingest;
+
+import java.io.IOException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import de.sk9.commons.fswatchdog.core.FsWatchDog;
+import de.sk9.commons.fswatchdog.core.FsWatchDogFactory;
+import de.sk9.commons.fswatchdog.core.Subscriber;
+import de.sk9.commons.imaging.JpegXmpData;
+import de.sk9.commons.imaging.JpegXmpDataException;
+import de.sk9.commons.imaging.XmpChangeset;
+import de.sk9.commons.imaging.XmpFormats;
+import de.sk9.commons.imaging.ingest.IngestStats.Stage;
+
+/**
+ * Applies {@link KeywordRule}s to images arriving in a drop folder. A file is
+ * processed once it has not changed for the quiet period, so files still being
+ * copied are not read half-written; further events during the quiet period
+ * only postpone it. Processing reads the metadata, collects the changes of all
+ * rules and rewrites the file only if they modify it, on at most
+ * {@code parallelism} worker threads. The size and modification time after
+ * processing are remembered, so the events caused by the pipeline's own
+ * rewrites, and repeated events of unchanged files, do not read the file
+ * again. At most {@link #MAX_REMEMBERED} files are remembered; a forgotten
+ * file is only read once more on its next event.
+ */
+public class IngestPipeline implements Subscriber, AutoCloseable {
+	private static Logger log = LogManager.getLogger(IngestPipeline.class);
+
+	public static final Duration DEFAULT_QUIET_PERIOD = Duration.ofSeconds(2);
+	public static final int MAX_REMEMBERED = 100_000;
+
+	private final Path root;
+	private final List<KeywordRule> rules;
+	private final long quietNanos;
+	private final IngestListener listener;
+	private final IngestStats stats = new IngestStats();
+
+	// sorted by path, so a deleted folder is a range
+	private final NavigableMap<Path, Pending> pending = new ConcurrentSkipListMap<>();
+	private final Set<Path> inProgress = ConcurrentHashMap.newKeySet();
+	private final NavigableMap<Path, Stamp> processed = new ConcurrentSkipListMap<>();
+	private final AtomicInteger remembered = new AtomicInteger();
+	private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+	private final ExecutorService workers;
+	private FsWatchDog watchDog;
+
+	private record Stamp(long size, long lastModified) {
+	}
+
+	private record Pending(long deadline, Stamp stamp) {
+	}
+
+	public IngestPipeline(Path root, List<KeywordRule> rules) {
+		this(root, rules, DEFAULT_QUIET_PERIOD, Runtime.getRuntime().availableProcessors(), null);
+	}
+
+	/**
+	 * @param listener notified about every processed file, may be {@code null}
+	 */
+	public IngestPipeline(Path root, List<KeywordRule> rules, Duration quietPeriod, int parallelism,
+			IngestListener listener) {
+		if (parallelism <= 0) {
+			throw new IllegalArgumentException("parallelism must be positive");
+		}
+		this.root = root;
+		this.rules = List.copyOf(rules);
+		this.quietNanos = quietPeriod.toNanos();
+		this.listener = listener;
+		this.workers = Executors.newFixedThreadPool(parallelism);
+	}
+
+	public IngestStats getStats() {
+		return stats;
+	}
+
+	/**
+	 * Starts watching and queues all files already in the folder.
+	 */
+	public void start() throws IOException {
+		watchDog = FsWatchDogFactory.getInstance().create(root, this);
+		enqueueTree(root);
+	}
+
+	@Override
+	public void close() throws IOException, InterruptedException {
+		if (watchDog != null) {
+			watchDog.close();
+		}
+		scheduler.shutdownNow();
+		workers.shutdown();
+		workers.awaitTermination(1, TimeUnit.MINUTES);
+	}
+
+	@Override
+	public void onCreate(Path path) {
+		stats.increment(Stage.EVENT);
+		if (Files.isDirectory(path, LinkOption.NOFOLLOW_LINKS)) {
+			// a folder moved in as a whole does not report its content
+			enqueueTree(path);
+		} else {
+			enqueue(path);
+		}
+	}
+
+	@Override
+	public void onModify(Path path) {
+		stats.increment(Stage.EVENT);
+		enqueue(path);
+	}
+
+	@Override
+	public void onDelete(Path path) {
+		stats.increment(Stage.EVENT);
+		removeTree(pending, path);
+		remembered.addAndGet(-removeTree(processed, path));
+	}
+
+	@Override
+	public void onOverflow() {
+		log.warn(() -> "event queue overflow, rescanning " + root);
+		enqueueTree(root);
+	}
+
+	@Override
+	public void onError(IOException ioe) {
+		log.warn(() -> "watching " + root + " failed, cause: " + ioe);
+	}
+
+	private void enqueueTree(Path dir) {
+		try {
+			Files.walkFileTree(dir, new SimpleFileVisitor<Path>() {
+				@Override
+				public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+					enqueue(file);
+					return FileVisitResult.CONTINUE;
+				}
+
+				@Override
+				public FileVisitResult visitFileFailed(Path file, IOException ex) {
+					log.debug(() -> "skipping " + file + ", cause: " + ex);
+					return FileVisitResult.CONTINUE;
+				}
+			});
+		} catch (IOException ex) {
+			onError(ex);
+		}
+	}
+
+	/**
+	 * (Re)starts the quiet period of the file. Only the first event of a burst
+	 * schedules a check, later ones just move the deadline.
+	 */
+	private void enqueue(Path file) {
+		if (!XmpFormats.isSupported(file)) {
+			return;
+		}
+		Pending next = new Pending(System.nanoTime() + quietNanos, stamp(file));
+		if (pending.put(file, next) == null) {
+			schedule(file, quietNanos);
+		}
+	}
+
+	private void schedule(Path file, long delayNanos) {
+		try {
+			scheduler.schedule(() -> settle(file), delayNanos, TimeUnit.NANOSECONDS);
+		} catch (RuntimeException e) {
+			// closed
+			pending.remove(file);
+		}
+	}
+
+	private void settle(Path file) {
+		Pending p = pending.get(file);
+		if (p == null) {
+			return;
+		}
+		long now = System.nanoTime();
+		if (now < p.deadline()) {
+			schedule(file, p.deadline() - now);
+			return;
+		}
+		Stamp current = stamp(file);
+		if (current == null) {
+			if (!pending.remove(file, p)) {
+				schedule(file, quietNanos);
+			}
+			return;
+		}
+		if (!current.equals(p.stamp()) || inProgress.contains(file)) {
+			// still growing without events (e.g. on network shares) or being processed
+			pending.replace(file, p, new Pending(now + quietNanos, current));
+			schedule(file, quietNanos);
+			return;
+		}
+		if (!pending.remove(file, p)) {
+			// a new event arrived meanwhile and moved the deadline
+			schedule(file, quietNanos);
+			return;
+		}
+		stats.increment(Stage.SETTLE);
+		if (current.equals(processed.get(file))) {
+			stats.unchanged();
+			return;
+		}
+		inProgress.add(file);
+		try {
+			workers.execute(() -> process(file));
+		} catch (RuntimeException e) {
+			inProgress.remove(file);
+		}
+	}
+
+	private void process(Path file) {
+		try {
+			long start = System.nanoTime();
+			JpegXmpData xmpData = JpegXmpData.fromFile(file.toFile());
+			stats.record(Stage.EXTRACT, start);
+
+			XmpChangeset changeset = new XmpChangeset();
+			Path relativePath = root.relativize(file);
+			rules.forEach(rule -> rule.contribute(relativePath, changeset));
+			boolean written = xmpData.apply(changeset);
+			if (written) {
+				start = System.nanoTime();
+				xmpData.replaceInFile(file.toFile());
+				stats.record(Stage.WRITE, start);
+			} else {
+				stats.upToDate();
+			}
+			remember(file);
+			if (listener != null) {
+				listener.onIngested(file, xmpData, written);
+			}
+		} catch (JpegXmpDataException | RuntimeException e) {
+			stats.failed();
+			log.warn(() -> "failed ingesting " + file + ", cause: " + e);
+			// not retried until the file changes
+			remember(file);
+			if (listener != null) {
+				listener.onFailed(file, e);
+			}
+		} finally {
+			inProgress.remove(file);
+		}
+	}
+
+	private void remember(Path file) {
+		Stamp stamp = stamp(file);
+		if (stamp != null && processed.put(file, stamp) == null
+				&& remembered.incrementAndGet() > MAX_REMEMBERED && processed.pollFirstEntry() != null) {
+			remembered.decrementAndGet();
+		}
+	}
+
+	/**
+	 * Removes the entries of the path and everything below it.
+	 *
+	 * @return the number of removed entries
+	 */
+	private static int removeTree(NavigableMap<Path, ?> map, Path path) {
+		Path name = path.getFileName();
+		NavigableMap<Path, ?> range;
+		if (name == null) {
+			range = map.tailMap(path, true);
+		} else {
+			char afterSeparator = (char) (path.getFileSystem().getSeparator().charAt(0) + 1);
+			range = map.subMap(path, true, path.resolveSibling(name.toString() + afterSeparator), false);
+		}
+		int removed = 0;
+		for (Iterator<Path> i = range.keySet().iterator(); i.hasNext();) {
+			// the range also holds siblings like "name-2" or "name.jpg"
+			if (i.next().startsWith(path)) {
+				i.remove();
+				removed++;
+			}
+		}
+		return removed;
+	}
+
+	private static Stamp stamp(Path file) {
+		try {
+			BasicFileAttributes attrs = Files.readAttributes(file, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+			return attrs.isRegularFile() ? new Stamp(attrs.size(), attrs.lastModifiedTime().toMillis()) : null;
+		} catch (IOException ex) {
+			return null;
+		}
+	}
+}
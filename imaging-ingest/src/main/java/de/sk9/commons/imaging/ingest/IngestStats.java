@@ -0,0 +1,107 @@
+package de.sk9.commons.imaging.ingest;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counters of an {@link IngestPipeline}. Every file passes the stages in
+ * order; files can leave after {@link Stage#SETTLE} (unchanged since the last
+ * run, e.g. the event of its own rewrite) or {@link Stage#EXTRACT} (metadata
+ * already up to date).
+ */
+public class IngestStats {
+
+	public enum Stage {
+		/** File system events received. */
+		EVENT,
+		/** Files that stayed unchanged for the quiet period. */
+		SETTLE,
+		/** Metadata reads, timed. */
+		EXTRACT,
+		/** Rewrites with the keyword rules applied, timed. */
+		WRITE
+	}
+
+	private record Counter(LongAdder count, LongAdder nanos) {
+	}
+
+	private final Map<Stage, Counter> counters = new EnumMap<>(Stage.class);
+	private final LongAdder unchanged = new LongAdder();
+	private final LongAdder upToDate = new LongAdder();
+	private final LongAdder failed = new LongAdder();
+	private final long startNanos = System.nanoTime();
+
+	IngestStats() {
+		for (Stage stage : Stage.values()) {
+			counters.put(stage, new Counter(new LongAdder(), new LongAdder()));
+		}
+	}
+
+	void increment(Stage stage) {
+		counters.get(stage).count().increment();
+	}
+
+	void record(Stage stage, long startNanos) {
+		Counter counter = counters.get(stage);
+		counter.count().increment();
+		counter.nanos().add(System.nanoTime() - startNanos);
+	}
+
+	void unchanged() {
+		unchanged.increment();
+	}
+
+	void upToDate() {
+		upToDate.increment();
+	}
+
+	void failed() {
+		failed.increment();
+	}
+
+	public long count(Stage stage) {
+		return counters.get(stage).count().sum();
+	}
+
+	/**
+	 * @return the time spent in a timed stage summed over all workers
+	 */
+	public long nanos(Stage stage) {
+		return counters.get(stage).nanos().sum();
+	}
+
+	/**
+	 * @return files per second of the stage since the pipeline was created
+	 */
+	public double throughput(Stage stage) {
+		long elapsed = System.nanoTime() - startNanos;
+		return elapsed <= 0 ? 0 : count(stage) * (double) TimeUnit.SECONDS.toNanos(1) / elapsed;
+	}
+
+	/** Settled files skipped because they did not change since they were processed. */
+	public long getUnchanged() {
+		return unchanged.sum();
+	}
+
+	/** Files read whose metadata already satisfied all rules. */
+	public long getUpToDate() {
+		return upToDate.sum();
+	}
+
+	public long getFailed() {
+		return failed.sum();
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder sb = new StringBuilder("IngestStats[");
+		for (Stage stage : Stage.values()) {
+			sb.append(stage).append('=').append(count(stage))
+					.append(String.format(" (%.1f/s), ", throughput(stage)));
+		}
+		return sb.append("unchanged=").append(getUnchanged()).append(", upToDate=").append(getUpToDate())
+				.append(", failed=").append(getFailed()).append(']').toString();
+	}
+}
@@ -0,0 +1,56 @@
+package de.sk9.commons.imaging.ingest;
+
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.util.ArrayList;
+import java.util.List;
+
+import de.sk9.commons.imaging.JpegXmpData;
+import de.sk9.commons.imaging.XmpChangeset;
+
+/**
+ * Contributes keyword changes for an ingested file. The rules of an
+ * {@link IngestPipeline} are collected into one {@link XmpChangeset}, so a
+ * file is rewritten at most once no matter how many rules match; rules listed
+ * later win over earlier ones for the same keyword.
+ */
+@FunctionalInterface
+public interface KeywordRule {
+
+	/**
+	 * @param relativePath path of the file relative to the watched root
+	 */
+	void contribute(Path relativePath, XmpChangeset changeset);
+
+	/**
+	 * Adds the keywords to files whose relative path matches the glob, e.g.
+	 * {@code "weddings/**.jpg"}.
+	 */
+	static KeywordRule matching(String glob, String... keywords) {
+		PathMatcher matcher = FileSystems.getDefault().getPathMatcher("glob:" + glob);
+		return (relativePath, changeset) -> {
+			if (matcher.matches(relativePath)) {
+				changeset.add(JpegXmpData.KEYWORD_QUALIFIER, keywords);
+			}
+		};
+	}
+
+	/**
+	 * Adds the names of all folders between the root and the file.
+	 */
+	static KeywordRule folderNames() {
+		return (relativePath, changeset) -> {
+			Path parent = relativePath.getParent();
+			if (parent != null) {
+				List<String> names = new ArrayList<>();
+				parent.forEach(name -> names.add(name.toString()));
+				changeset.add(JpegXmpData.KEYWORD_QUALIFIER, names);
+			}
+		};
+	}
+
+	static KeywordRule removing(String... keywords) {
+		return (relativePath, changeset) -> changeset.remove(JpegXmpData.KEYWORD_QUALIFIER, keywords);
+	}
+}
@@ -0,0 +1,140 @@
+package de.sk9.commons.imaging.ingest;
+
+import static org.awaitility.Awaitility.await;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.hamcrest.Matchers;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import de.sk9.commons.imaging.JpegXmpData;
+import de.sk9.commons.imaging.ingest.IngestStats.Stage;
+
+class IngestPipelineTest {
+
+	private Path testDir;
+	private IngestPipeline pipeline;
+	private final Map<Path, Boolean> ingested = new ConcurrentHashMap<>();
+
+	@BeforeEach
+	void beforeEach() throws IOException {
+		testDir = Files.createTempDirectory(IngestPipelineTest.class.getSimpleName());
+		copyResource("adobe_lightroom.jpg", testDir.resolve("existing.jpg"));
+		pipeline = new IngestPipeline(testDir,
+				List.of(KeywordRule.folderNames(), KeywordRule.matching("**.jpg", "Ingested"),
+						KeywordRule.removing("Lightroom")),
+				Duration.ofMillis(200), 2, (file, xmpData, written) -> ingested.put(file, written));
+		pipeline.start();
+	}
+
+	@AfterEach
+	void afterEach() throws IOException, InterruptedException {
+		pipeline.close();
+	}
+
+	@Test
+	void testExistingAndNewFiles() throws Exception {
+		Path existing = testDir.resolve("existing.jpg");
+		await().until(() -> ingested.containsKey(existing));
+		assertThat(keywords(existing), Matchers.containsInAnyOrder("Adobe", "Ingested"));
+
+		Path subDir = Files.createDirectories(testDir.resolve("2021").resolve("holiday"));
+		Path created = copyResource("synology_photos.jpg", subDir.resolve("beach.jpg"));
+		await().until(() -> ingested.containsKey(created));
+
+		assertThat(ingested.get(created), Matchers.is(true));
+		assertThat(keywords(created),
+				Matchers.containsInAnyOrder("Synology", "Photos", "2021", "holiday", "Ingested"));
+	}
+
+	@Test
+	void testOwnWritesAndUpToDateFilesAreSkipped() throws Exception {
+		Path existing = testDir.resolve("existing.jpg");
+		await().until(() -> ingested.containsKey(existing));
+		long lastModified = Files.getLastModifiedTime(existing).toMillis();
+
+		// the rewrite reported by the watcher settles without reading the file again
+		Thread.sleep(600);
+		assertThat(pipeline.getStats().count(Stage.EXTRACT), Matchers.is(1L));
+
+		// a changed file that already satisfies the rules is not rewritten
+		ingested.clear();
+		JpegXmpData xmpData = JpegXmpData.fromFile(existing.toFile());
+		xmpData.addKeywords("Manual");
+		xmpData.replaceInFile(existing.toFile());
+		await().until(() -> ingested.containsKey(existing));
+
+		assertThat(ingested.get(existing), Matchers.is(false));
+		assertThat(pipeline.getStats().getUpToDate(), Matchers.is(1L));
+		assertThat(pipeline.getStats().count(Stage.WRITE), Matchers.is(1L));
+		assertThat(Files.getLastModifiedTime(existing).toMillis(), Matchers.greaterThanOrEqualTo(lastModified));
+	}
+
+	@Test
+	void testWaitsForSlowCopies() throws Exception {
+		byte[] image = Files.readAllBytes(resource("affinity_photo.jpg").toPath());
+		Path slow = testDir.resolve("slow.jpg");
+		try (OutputStream out = Files.newOutputStream(slow)) {
+			for (int i = 0; i < image.length; i += 1024) {
+				out.write(image, i, Math.min(1024, image.length - i));
+				out.flush();
+				Thread.sleep(10);
+			}
+		}
+		await().until(() -> ingested.containsKey(slow));
+
+		assertThat(pipeline.getStats().getFailed(), Matchers.is(0L));
+		assertThat(keywords(slow), Matchers.containsInAnyOrder("Affinity", "Photo", "Ingested"));
+	}
+
+	@Test
+	void testUnsupportedFilesAreIgnored() throws Exception {
+		Files.writeString(testDir.resolve("notes.txt"), "not an image");
+		await().until(() -> ingested.size() == 1);
+
+		Thread.sleep(400);
+		assertThat(ingested.keySet(), Matchers.contains(testDir.resolve("existing.jpg")));
+	}
+
+	@Test
+	void testDeletedFolderDropsPendingFiles() throws Exception {
+		// outside of the watched folder, so only the events below are seen
+		Path outside = Files.createTempDirectory(IngestPipelineTest.class.getSimpleName());
+		Path deleted = copyResource("gimp_210.jpg",
+				Files.createDirectory(outside.resolve("drop")).resolve("a.jpg"));
+		Path sibling = copyResource("gimp_210.jpg",
+				Files.createDirectory(outside.resolve("drop-2")).resolve("b.jpg"));
+
+		pipeline.onModify(deleted);
+		pipeline.onModify(sibling);
+		pipeline.onDelete(outside.resolve("drop"));
+		await().until(() -> ingested.containsKey(sibling));
+
+		Thread.sleep(400);
+		assertThat(ingested.containsKey(deleted), Matchers.is(false));
+	}
+
+	private static List<String> keywords(Path file) throws Exception {
+		return JpegXmpData.fromFile(file.toFile()).getKeywords();
+	}
+
+	private File resource(String resourceName) {
+		return new File(getClass().getClassLoader().getResource(resourceName).getFile());
+	}
+
+	private Path copyResource(String resourceName, Path target) throws IOException {
+		return Files.copy(resource(resourceName).toPath(), target, StandardCopyOption.REPLACE_EXISTING);
+	}
+}
@@ -0,0 +1,38 @@
+package de.sk9.commons.imaging.ingest;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+
+import java.nio.file.Path;
+
+import org.hamcrest.Matchers;
+import org.junit.jupiter.api.Test;
+
+import de.sk9.commons.imaging.JpegXmpData;
+import de.sk9.commons.imaging.XmpChangeset;
+
+class KeywordRuleTest {
+
+	@Test
+	void testRulesCombineIntoOneChangeset() throws Exception {
+		XmpChangeset changeset = new XmpChangeset();
+		Path relativePath = Path.of("weddings", "smith", "IMG_0001.jpg");
+
+		KeywordRule.folderNames().contribute(relativePath, changeset);
+		KeywordRule.matching("weddings/**", "Wedding").contribute(relativePath, changeset);
+		KeywordRule.matching("*.png", "Png").contribute(relativePath, changeset);
+		KeywordRule.removing("smith").contribute(relativePath, changeset);
+		JpegXmpData xmpData = new JpegXmpData();
+		xmpData.apply(changeset);
+
+		assertThat(xmpData.getKeywords(), Matchers.contains("weddings", "Wedding"));
+	}
+
+	@Test
+	void testFileInRoot() throws Exception {
+		XmpChangeset changeset = new XmpChangeset();
+
+		KeywordRule.folderNames().contribute(Path.of("IMG_0001.jpg"), changeset);
+
+		assertThat(changeset.isEmpty(), Matchers.is(true));
+	}
+}
@@ -0,0 +1,79 @@
+package de.sk9.commons.imaging.jmh;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.Random;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import javax.imageio.ImageIO;
+
+import de.sk9.commons.imaging.JpegXmpData;
+import de.sk9.commons.imaging.JpegXmpDataException;
+
+/**
+ * The images the benchmarks run on: the test images of the imaging module plus
+ * generated ones, copied into a fresh directory per trial.
+ */
+final class BenchmarkFiles {
+	static final String GIMP = "gimp_210.jpg";
+	static final String LIGHTROOM = "adobe_lightroom.jpg";
+	static final String SYNOLOGY = "synology_photos.jpg";
+	static final String NO_XMP = "no_xmp.jpg";
+	/** 24 megapixel noise, the image data is much larger than the header */
+	static final String LARGE = "large.jpg";
+	/** XMP packet with 500 keywords */
+	static final String MANY_KEYWORDS = "many_keywords.jpg";
+
+	static final String[] KEYWORDS = IntStream.range(0, 500)
+			.mapToObj(i -> "Keyword " + i)
+			.toArray(String[]::new);
+
+	private static final String[] RESOURCES = { GIMP, LIGHTROOM, SYNOLOGY, NO_XMP };
+
+	private BenchmarkFiles() {
+	}
+
+	static Path prepare() throws IOException, JpegXmpDataException {
+		Path directory = Files.createTempDirectory("imaging-jmh");
+		for (String resource : RESOURCES) {
+			try (InputStream in = BenchmarkFiles.class.getClassLoader().getResourceAsStream(resource)) {
+				Files.copy(in, directory.resolve(resource));
+			}
+		}
+		generateLarge(directory.resolve(LARGE), directory.resolve(LIGHTROOM));
+		generateManyKeywords(directory.resolve(MANY_KEYWORDS), directory.resolve(LIGHTROOM));
+		return directory;
+	}
+
+	static void delete(Path directory) throws IOException {
+		try (Stream<Path> files = Files.walk(directory)) {
+			for (Path file : (Iterable<Path>) files.sorted(Comparator.reverseOrder())::iterator) {
+				Files.delete(file);
+			}
+		}
+	}
+
+	private static void generateLarge(Path file, Path xmpSource) throws IOException, JpegXmpDataException {
+		BufferedImage image = new BufferedImage(6000, 4000, BufferedImage.TYPE_INT_RGB);
+		Random random = new Random(42);
+		for (int y = 0; y < image.getHeight(); y++) {
+			for (int x = 0; x < image.getWidth(); x++) {
+				image.setRGB(x, y, random.nextInt());
+			}
+		}
+		ImageIO.write(image, "jpg", file.toFile());
+		JpegXmpData.fromFile(xmpSource.toFile()).replaceInFile(file.toFile());
+	}
+
+	private static void generateManyKeywords(Path file, Path template) throws IOException, JpegXmpDataException {
+		Files.copy(template, file);
+		JpegXmpData xmpData = JpegXmpData.fromFile(file.toFile());
+		xmpData.addKeywords(KEYWORDS);
+		xmpData.replaceInFile(file.toFile());
+	}
+}
@@ -0,0 +1,26 @@
+package de.sk9.commons.imaging.jmh;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs all imaging benchmarks with the GC profiler, which reports the bytes
+ * allocated per operation next to throughput and latency percentiles. Accepts
+ * the usual JMH command line, e.g. {@code -p image=large.jpg XmpRead}.
+ */
+public class ImagingBenchmarks {
+
+	public static void main(String[] args) throws Exception {
+		CommandLineOptions commandLine = new CommandLineOptions(args);
+		ChainedOptionsBuilder options = new OptionsBuilder()
+				.parent(commandLine)
+				.addProfiler(GCProfiler.class);
+		if (commandLine.getIncludes().isEmpty()) {
+			options.include(ImagingBenchmarks.class.getPackageName() + ".*Benchmark");
+		}
+		new Runner(options.build()).run();
+	}
+}
@@ -0,0 +1,78 @@
+package de.sk9.commons.imaging.jmh;
+
+import java.io.File;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import de.sk9.commons.imaging.JpegXmpData;
+import de.sk9.commons.imaging.XmpProjection;
+import de.sk9.commons.imaging.XmpValues;
+
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class XmpReadBenchmark {
+	private static final XmpProjection PROJECTION = new XmpProjection()
+			.array(JpegXmpData.KEYWORD_QUALIFIER)
+			.value(JpegXmpData.IMAGE_RATING_QUALIFIER)
+			.value(JpegXmpData.LABEL_QUALIFIER)
+			.value(JpegXmpData.TITLE_QUALIFIER)
+			.array(JpegXmpData.HIERARCHICAL_SUBJECT_QUALIFIER)
+			.value(JpegXmpData.CREATE_DATE_QUALIFIER);
+
+	@Param({ BenchmarkFiles.GIMP, BenchmarkFiles.LIGHTROOM, BenchmarkFiles.SYNOLOGY, BenchmarkFiles.NO_XMP,
+			BenchmarkFiles.LARGE, BenchmarkFiles.MANY_KEYWORDS })
+	public String image;
+
+	private Path directory;
+	private File file;
+
+	@Setup(Level.Trial)
+	public void setup() throws Exception {
+		directory = BenchmarkFiles.prepare();
+		file = directory.resolve(image).toFile();
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() throws Exception {
+		BenchmarkFiles.delete(directory);
+	}
+
+	@Benchmark
+	public JpegXmpData fromFile() throws Exception {
+		return JpegXmpData.fromFile(file);
+	}
+
+	@Benchmark
+	public List<String> getKeywords() throws Exception {
+		return JpegXmpData.fromFile(file).getKeywords();
+	}
+
+	@Benchmark
+	public Integer getImageRating() throws Exception {
+		return JpegXmpData.fromFile(file).getImageRating();
+	}
+
+	@Benchmark
+	public XmpValues project() throws Exception {
+		return JpegXmpData.fromFile(file).project(PROJECTION);
+	}
+}
@@ -0,0 +1,87 @@
+package de.sk9.commons.imaging.jmh;
+
+import java.io.File;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import de.sk9.commons.imaging.JpegXmpData;
+
+/**
+ * Write paths. {@code replaceInPlace} alternates between two keyword sets that
+ * both fit into the padding of the packet; {@code replaceRewrite} alternates
+ * between removing and restoring the XMP segment, so every call copies the
+ * whole file. Both include the fsync of the commit.
+ */
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class XmpWriteBenchmark {
+
+	@Param({ BenchmarkFiles.GIMP, BenchmarkFiles.LIGHTROOM, BenchmarkFiles.SYNOLOGY, BenchmarkFiles.LARGE,
+			BenchmarkFiles.MANY_KEYWORDS })
+	public String image;
+
+	private Path directory;
+	private File file;
+	private JpegXmpData original;
+	private long invocations;
+
+	@Setup(Level.Trial)
+	public void setup() throws Exception {
+		directory = BenchmarkFiles.prepare();
+		file = directory.resolve(image).toFile();
+		original = JpegXmpData.fromFile(file);
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() throws Exception {
+		BenchmarkFiles.delete(directory);
+	}
+
+	@Benchmark
+	public JpegXmpData addKeywords() throws Exception {
+		JpegXmpData xmpData = JpegXmpData.fromFile(file);
+		xmpData.addKeywords("Benchmark", "Keyword " + (invocations++ & 0xFF));
+		return xmpData;
+	}
+
+	@Benchmark
+	public JpegXmpData addManyKeywords() throws Exception {
+		JpegXmpData xmpData = JpegXmpData.fromFile(file);
+		xmpData.addKeywords(BenchmarkFiles.KEYWORDS);
+		return xmpData;
+	}
+
+	@Benchmark
+	public void replaceInPlace() throws Exception {
+		JpegXmpData xmpData = JpegXmpData.fromFile(file);
+		xmpData.replaceKeywords((invocations++ & 1) == 0 ? "Benchmark A" : "Benchmark B");
+		xmpData.replaceInFile(file);
+	}
+
+	@Benchmark
+	public void replaceRewrite() throws Exception {
+		if ((invocations++ & 1) == 0) {
+			new JpegXmpData().replaceInFile(file);
+		} else {
+			original.replaceInFile(file);
+		}
+	}
+}
@@ -0,0 +1,133 @@
+package de.sk9.commons.imaging;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * The few Exif values needed next to the XMP data. {@code width} and
+ * {@code height} come from the JPEG frame header and fall back to the Exif
+ * pixel dimensions; all fields are {@code null} if the file does not carry
+ * them.
+ */
+public record ExifBasics(LocalDateTime dateTimeOriginal, Integer orientation, Integer width, Integer height) {
+	private static Logger LOG = LogManager.getLogger(ExifBasics.class);
+
+	public static final ExifBasics EMPTY = new ExifBasics(null, null, null, null);
+
+	static final int ORIENTATION = 0x0112;
+	static final int EXIF_IFD_POINTER = 0x8769;
+	static final int DATE_TIME_ORIGINAL = 0x9003;
+	static final int PIXEL_X_DIMENSION = 0xA002;
+	static final int PIXEL_Y_DIMENSION = 0xA003;
+
+	private static final int TYPE_ASCII = 2;
+	private static final int TYPE_SHORT = 3;
+	private static final int TYPE_LONG = 4;
+	private static final DateTimeFormatter EXIF_DATE_TIME = DateTimeFormatter.ofPattern("yyyy:MM:dd HH:mm:ss");
+
+	/**
+	 * Extracts the values from a scanned header. Broken Exif data is ignored
+	 * rather than failing the whole read.
+	 */
+	static ExifBasics of(JpegHeader header) {
+		ExifBasics exif = EMPTY;
+		if (header.exif() != null) {
+			try {
+				exif = parse(ByteBuffer.wrap(header.exif()));
+			} catch (IOException | RuntimeException e) {
+				LOG.debug(() -> "ignoring invalid Exif data, cause: " + e);
+			}
+		}
+		if (header.width() > 0 && header.height() > 0) {
+			exif = new ExifBasics(exif.dateTimeOriginal(), exif.orientation(), header.width(), header.height());
+		}
+		return exif;
+	}
+
+	/**
+	 * Reads IFD0 and the Exif IFD of a TIFF structure.
+	 */
+	static ExifBasics parse(ByteBuffer tiff) throws IOException {
+		if (tiff.remaining() < 8) {
+			throw new IOException("truncated TIFF header");
+		}
+		if (tiff.get(0) == 'I' && tiff.get(1) == 'I') {
+			tiff.order(ByteOrder.LITTLE_ENDIAN);
+		} else if (tiff.get(0) == 'M' && tiff.get(1) == 'M') {
+			tiff.order(ByteOrder.BIG_ENDIAN);
+		} else {
+			throw new IOException("invalid TIFF byte order");
+		}
+		int ifd0 = tiff.getInt(4);
+		Integer orientation = (Integer) value(tiff, ifd0, ORIENTATION);
+		Integer exifIfd = (Integer) value(tiff, ifd0, EXIF_IFD_POINTER);
+		if (exifIfd == null) {
+			return new ExifBasics(null, orientation, null, null);
+		}
+		return new ExifBasics(
+				parseDateTime((String) value(tiff, exifIfd, DATE_TIME_ORIGINAL)),
+				orientation,
+				(Integer) value(tiff, exifIfd, PIXEL_X_DIMENSION),
+				(Integer) value(tiff, exifIfd, PIXEL_Y_DIMENSION));
+	}
+
+	/**
+	 * @return the value of the first matching entry as {@code Integer} or
+	 *         {@code String}, {@code null} if the IFD has no such tag
+	 */
+	private static Object value(ByteBuffer tiff, int ifd, int tag) throws IOException {
+		if (ifd < 8 || ifd + 2 > tiff.limit()) {
+			throw new IOException("invalid IFD offset " + ifd);
+		}
+		int count = tiff.getShort(ifd) & 0xFFFF;
+		for (int i = 0; i < count; i++) {
+			int entry = ifd + 2 + i * 12;
+			if (entry + 12 > tiff.limit()) {
+				throw new IOException("truncated IFD at offset " + ifd);
+			}
+			if ((tiff.getShort(entry) & 0xFFFF) != tag) {
+				continue;
+			}
+			int type = tiff.getShort(entry + 2) & 0xFFFF;
+			int valueCount = tiff.getInt(entry + 4);
+			switch (type) {
+			case TYPE_SHORT:
+				return tiff.getShort(entry + 8) & 0xFFFF;
+			case TYPE_LONG:
+				return tiff.getInt(entry + 8);
+			case TYPE_ASCII:
+				int offset = valueCount <= 4 ? entry + 8 : tiff.getInt(entry + 8);
+				if (valueCount < 0 || offset < 0 || offset + valueCount > tiff.limit()) {
+					throw new IOException("invalid value offset for tag " + tag);
+				}
+				byte[] bytes = new byte[valueCount];
+				tiff.get(offset, bytes);
+				return new String(bytes, StandardCharsets.US_ASCII).replace("\0", "").trim();
+			default:
+				throw new IOException("unexpected type " + type + " for tag " + tag);
+			}
+		}
+		return null;
+	}
+
+	private static LocalDateTime parseDateTime(String value) {
+		if (value == null || value.isEmpty()) {
+			return null;
+		}
+		try {
+			return LocalDateTime.parse(value, EXIF_DATE_TIME);
+		} catch (DateTimeParseException e) {
+			// cameras write blanks or zeros for an unknown date
+			LOG.debug(() -> "ignoring DateTimeOriginal '" + value + "'");
+			return null;
+		}
+	}
+}
@@ -0,0 +1,185 @@
+package de.sk9.commons.imaging;
+
+import java.lang.management.ManagementFactory;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Process wide counters of the XMP read and write paths: time spent per
+ * {@link Stage}, bytes read and written, in-place updates vs. full rewrites
+ * and failures by exception type. Recording is a {@link System#nanoTime()}
+ * call and a few {@link LongAdder} increments, so it is always on.
+ */
+public final class ImagingMetrics implements ImagingMetricsMXBean {
+	public static final String OBJECT_NAME = "de.sk9.commons.imaging:type=ImagingMetrics";
+
+	private static final ImagingMetrics INSTANCE = new ImagingMetrics();
+
+	public enum Stage {
+		/** Walking the container structure up to the XMP packet. */
+		SCAN,
+		/** Streaming property scan and DOM parsing of packets. */
+		PARSE,
+		SERIALIZE,
+		WRITE_IN_PLACE,
+		/** Copying the file into a temp file with the new packet. */
+		REWRITE,
+		/** Forcing written data to disk. */
+		SYNC
+	}
+
+	private record Timer(LongAdder count, LongAdder nanos) {
+	}
+
+	private final Map<Stage, Timer> timers = new EnumMap<>(Stage.class);
+	private final LongAdder bytesRead = new LongAdder();
+	private final LongAdder bytesWrittenInPlace = new LongAdder();
+	private final LongAdder bytesRewritten = new LongAdder();
+	private final LongAdder inPlaceWrites = new LongAdder();
+	private final LongAdder rewrites = new LongAdder();
+	private final Map<String, LongAdder> errors = new ConcurrentHashMap<>();
+
+	private ImagingMetrics() {
+		for (Stage stage : Stage.values()) {
+			timers.put(stage, new Timer(new LongAdder(), new LongAdder()));
+		}
+	}
+
+	public static ImagingMetrics get() {
+		return INSTANCE;
+	}
+
+	/**
+	 * Registers the metrics with the platform MBean server under
+	 * {@link #OBJECT_NAME}; does nothing if already registered.
+	 */
+	public static void registerMBean() throws JMException {
+		MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+		ObjectName name = new ObjectName(OBJECT_NAME);
+		if (!server.isRegistered(name)) {
+			server.registerMBean(INSTANCE, name);
+		}
+	}
+
+	/**
+	 * @param startNanos {@link System#nanoTime()} at the start of the stage
+	 */
+	void record(Stage stage, long startNanos) {
+		Timer timer = timers.get(stage);
+		timer.count().increment();
+		timer.nanos().add(System.nanoTime() - startNanos);
+	}
+
+	void read(long bytes) {
+		bytesRead.add(bytes);
+	}
+
+	void writtenInPlace(long bytes) {
+		inPlaceWrites.increment();
+		bytesWrittenInPlace.add(bytes);
+	}
+
+	void rewritten(long bytes) {
+		rewrites.increment();
+		bytesRewritten.add(bytes);
+	}
+
+	/**
+	 * Counts a failed operation; called once per operation where it is
+	 * reported to the caller. A {@link JpegXmpDataException} is counted by the
+	 * type of its cause.
+	 */
+	void error(Throwable e) {
+		Throwable cause = e instanceof JpegXmpDataException && e.getCause() != null ? e.getCause() : e;
+		errors.computeIfAbsent(cause.getClass().getName(), k -> new LongAdder()).increment();
+	}
+
+	public long count(Stage stage) {
+		return timers.get(stage).count().sum();
+	}
+
+	public long nanos(Stage stage) {
+		return timers.get(stage).nanos().sum();
+	}
+
+	@Override
+	public Map<String, Long> getStageCounts() {
+		Map<String, Long> counts = new LinkedHashMap<>();
+		for (Stage stage : Stage.values()) {
+			counts.put(stage.name(), count(stage));
+		}
+		return counts;
+	}
+
+	@Override
+	public Map<String, Long> getStageMillis() {
+		Map<String, Long> millis = new LinkedHashMap<>();
+		for (Stage stage : Stage.values()) {
+			millis.put(stage.name(), TimeUnit.NANOSECONDS.toMillis(nanos(stage)));
+		}
+		return millis;
+	}
+
+	@Override
+	public long getBytesRead() {
+		return bytesRead.sum();
+	}
+
+	@Override
+	public long getBytesWrittenInPlace() {
+		return bytesWrittenInPlace.sum();
+	}
+
+	@Override
+	public long getBytesRewritten() {
+		return bytesRewritten.sum();
+	}
+
+	@Override
+	public long getInPlaceWrites() {
+		return inPlaceWrites.sum();
+	}
+
+	@Override
+	public long getRewrites() {
+		return rewrites.sum();
+	}
+
+	@Override
+	public Map<String, Long> getErrors() {
+		Map<String, Long> counts = new TreeMap<>();
+		errors.forEach((type, count) -> counts.put(type, count.sum()));
+		return counts;
+	}
+
+	@Override
+	public long getErrorCount() {
+		return errors.values().stream().mapToLong(LongAdder::sum).sum();
+	}
+
+	/**
+	 * Resets all counters. Updates running concurrently may be partially lost.
+	 */
+	@Override
+	public void reset() {
+		timers.values().forEach(t -> {
+			t.count().reset();
+			t.nanos().reset();
+		});
+		bytesRead.reset();
+		bytesWrittenInPlace.reset();
+		bytesRewritten.reset();
+		inPlaceWrites.reset();
+		rewrites.reset();
+		errors.clear();
+	}
+}
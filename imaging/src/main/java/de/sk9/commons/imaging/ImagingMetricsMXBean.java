@@ -0,0 +1,32 @@
+package de.sk9.commons.imaging;
+
+import java.util.Map;
+
+/**
+ * JMX view of {@link ImagingMetrics}. Stage maps are keyed by
+ * {@link ImagingMetrics.Stage} name, errors by exception class name.
+ */
+public interface ImagingMetricsMXBean {
+
+	Map<String, Long> getStageCounts();
+
+	Map<String, Long> getStageMillis();
+
+	/** Bytes of XMP packets read from files. */
+	long getBytesRead();
+
+	long getBytesWrittenInPlace();
+
+	/** Size of the files written by full rewrites. */
+	long getBytesRewritten();
+
+	long getInPlaceWrites();
+
+	long getRewrites();
+
+	Map<String, Long> getErrors();
+
+	long getErrorCount();
+
+	void reset();
+}
@@ -0,0 +1,39 @@
+package de.sk9.commons.imaging;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.util.List;
+
+/**
+ * Result of a {@link JpegSegmentScanner} run: all marker segments up to and
+ * including SOS, the standard XMP packet and the Exif data if there are any,
+ * and the dimensions from the SOF segment. {@code xmpSegment} and
+ * {@code xmpPacket} are {@code null} for files without XMP, {@code exif} (the
+ * TIFF structure following the Exif identifier) is {@code null} without an
+ * Exif segment, {@code width} and {@code height} are 0 without a frame header.
+ * {@code scanOffset} is the offset of the SOS marker or the file size if there
+ * is none.
+ */
+public record JpegHeader(List<JpegSegment> segments, long scanOffset, JpegSegment xmpSegment, byte[] xmpPacket,
+		byte[] exif, int width, int height) implements XmpContainer {
+
+	@Override
+	public boolean hasXmp() {
+		return xmpSegment != null;
+	}
+
+	@Override
+	public long xmpPacketOffset() {
+		return xmpSegment.payloadOffset() + JpegSegmentScanner.XMP_IDENTIFIER.length;
+	}
+
+	@Override
+	public int maxPacketLength() {
+		return JpegXmpFormat.MAX_PACKET_LENGTH;
+	}
+
+	@Override
+	public void rewrite(FileChannel source, byte[] packet, FileChannel target) throws IOException {
+		JpegXmpFormat.rewrite(source, this, packet, target);
+	}
+}
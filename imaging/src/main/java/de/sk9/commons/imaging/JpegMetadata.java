@@ -0,0 +1,24 @@
+package de.sk9.commons.imaging;
+
+import java.io.File;
+
+import de.sk9.commons.imaging.ImagingMetrics.Stage;
+
+/**
+ * Exif basics and XMP data of a JPEG file, read from a single scan of its
+ * marker segments. No image data is decoded.
+ */
+public record JpegMetadata(ExifBasics exif, JpegXmpData xmp) {
+
+	public static JpegMetadata fromFile(File jpegFile) throws JpegXmpDataException {
+		try {
+			long start = System.nanoTime();
+			JpegHeader header = JpegSegmentScanner.scan(jpegFile.toPath());
+			ImagingMetrics.get().record(Stage.SCAN, start);
+			return new JpegMetadata(ExifBasics.of(header), JpegXmpData.fromPacket(header.xmpPacket()));
+		} catch (Exception e) {
+			ImagingMetrics.get().error(e);
+			throw new JpegXmpDataException(e);
+		}
+	}
+}
@@ -0,0 +1,21 @@
+package de.sk9.commons.imaging;
+
+/**
+ * A marker segment of a JPEG file. {@code offset} points to the 0xFF of the
+ * marker, {@code length} is the value of the length field, which includes the
+ * two length bytes but not the marker.
+ */
+public record JpegSegment(int marker, long offset, int length) {
+
+	public long payloadOffset() {
+		return offset + 4;
+	}
+
+	public int payloadLength() {
+		return length - 2;
+	}
+
+	public long end() {
+		return offset + 2 + length;
+	}
+}
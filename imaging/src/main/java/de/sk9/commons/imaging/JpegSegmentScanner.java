@@ -0,0 +1,238 @@
+package de.sk9.commons.imaging;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Walks the marker segments of a JPEG file without touching the entropy coded
+ * image data. Only a window at the start of the file is read into a heap
+ * buffer; it is moved forward if the header is larger than the window. Nothing
+ * is memory mapped, so the file can be replaced right after the scan on every
+ * platform. The walk stops at SOS.
+ */
+public class JpegSegmentScanner {
+	public static final int SOI = 0xD8;
+	public static final int EOI = 0xD9;
+	public static final int SOS = 0xDA;
+	public static final int APP1 = 0xE1;
+	public static final int TEM = 0x01;
+	public static final int RST0 = 0xD0;
+	public static final int RST7 = 0xD7;
+	public static final int SOF0 = 0xC0;
+	public static final int SOF15 = 0xCF;
+	public static final int DHT = 0xC4;
+	public static final int JPG = 0xC8;
+	public static final int DAC = 0xCC;
+
+	static final byte[] XMP_IDENTIFIER = "http://ns.adobe.com/xap/1.0/\0".getBytes(StandardCharsets.US_ASCII);
+	static final byte[] EXIF_IDENTIFIER = "Exif\0\0".getBytes(StandardCharsets.US_ASCII);
+
+	private static final int WINDOW_SIZE = 64 * 1024;
+
+	private JpegSegmentScanner() {
+	}
+
+	public static JpegHeader scan(Path file) throws IOException {
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			return scan(channel);
+		}
+	}
+
+	public static JpegHeader scan(FileChannel channel) throws IOException {
+		return scan(new Window(channel));
+	}
+
+	/**
+	 * Scans the leading bytes of a file that were read elsewhere, e.g.
+	 * asynchronously.
+	 *
+	 * @throws PrefixTooShortException if the header extends beyond the prefix
+	 */
+	static JpegHeader scan(ByteBuffer prefix, long fileSize) throws IOException {
+		return scan(new Prefix(prefix, fileSize));
+	}
+
+	private static JpegHeader scan(Bytes window) throws IOException {
+		if (window.size() < 4 || window.get(0) != (byte) 0xFF || window.get(1) != (byte) SOI) {
+			throw new IOException("not a JPEG file");
+		}
+
+		List<JpegSegment> segments = new ArrayList<>();
+		JpegSegment xmpSegment = null;
+		byte[] xmpPacket = null;
+		byte[] exif = null;
+		int width = 0;
+		int height = 0;
+		long scanOffset = window.size();
+		long pos = 2;
+		while (pos + 2 <= window.size()) {
+			if (window.get(pos) != (byte) 0xFF) {
+				throw new IOException("invalid JPEG marker at offset " + pos);
+			}
+			int marker = window.get(pos + 1) & 0xFF;
+			if (marker == 0xFF) {
+				// fill byte
+				pos++;
+				continue;
+			}
+			if (marker == TEM || (marker >= RST0 && marker <= RST7)) {
+				pos += 2;
+				continue;
+			}
+			if (marker == EOI) {
+				break;
+			}
+			if (pos + 4 > window.size()) {
+				throw new IOException("truncated JPEG segment at offset " + pos);
+			}
+			int length = ((window.get(pos + 2) & 0xFF) << 8) | (window.get(pos + 3) & 0xFF);
+			JpegSegment segment = new JpegSegment(marker, pos, length);
+			if (length < 2 || segment.end() > window.size()) {
+				throw new IOException("invalid JPEG segment length at offset " + pos);
+			}
+			segments.add(segment);
+			if (marker == SOS) {
+				scanOffset = pos;
+				break;
+			}
+			if (marker == APP1 && xmpSegment == null && startsWith(window, segment, XMP_IDENTIFIER)) {
+				xmpSegment = segment;
+				xmpPacket = window.bytes(segment.payloadOffset() + XMP_IDENTIFIER.length,
+						segment.payloadLength() - XMP_IDENTIFIER.length);
+			} else if (marker == APP1 && exif == null && startsWith(window, segment, EXIF_IDENTIFIER)) {
+				exif = window.bytes(segment.payloadOffset() + EXIF_IDENTIFIER.length,
+						segment.payloadLength() - EXIF_IDENTIFIER.length);
+			} else if (isStartOfFrame(marker) && width == 0 && segment.payloadLength() >= 5) {
+				// precision, height, width
+				byte[] frame = window.bytes(segment.payloadOffset() + 1, 4);
+				height = ((frame[0] & 0xFF) << 8) | (frame[1] & 0xFF);
+				width = ((frame[2] & 0xFF) << 8) | (frame[3] & 0xFF);
+			}
+			pos = segment.end();
+		}
+		return new JpegHeader(segments, scanOffset, xmpSegment, xmpPacket, exif, width, height);
+	}
+
+	private static boolean startsWith(Bytes window, JpegSegment segment, byte[] identifier) throws IOException {
+		if (segment.payloadLength() < identifier.length) {
+			return false;
+		}
+		return Arrays.equals(window.bytes(segment.payloadOffset(), identifier.length), identifier);
+	}
+
+	/**
+	 * SOF0 to SOF15 without DHT, JPG and DAC, which share the range.
+	 */
+	private static boolean isStartOfFrame(int marker) {
+		return marker >= SOF0 && marker <= SOF15 && marker != DHT && marker != JPG && marker != DAC;
+	}
+
+	/**
+	 * Thrown by {@link #scan(ByteBuffer, long)} when more bytes of the file are
+	 * needed.
+	 */
+	@SuppressWarnings("serial")
+	static class PrefixTooShortException extends IOException {
+		private final long required;
+
+		PrefixTooShortException(long required) {
+			super("JPEG header needs the first " + required + " bytes");
+			this.required = required;
+		}
+
+		long required() {
+			return required;
+		}
+	}
+
+	private interface Bytes {
+		long size();
+
+		byte get(long position) throws IOException;
+
+		byte[] bytes(long position, int length) throws IOException;
+	}
+
+	private record Prefix(ByteBuffer buffer, long size) implements Bytes {
+
+		@Override
+		public byte get(long position) throws IOException {
+			ensure(position, 1);
+			return buffer.get((int) position);
+		}
+
+		@Override
+		public byte[] bytes(long position, int length) throws IOException {
+			ensure(position, length);
+			byte[] bytes = new byte[length];
+			buffer.get((int) position, bytes);
+			return bytes;
+		}
+
+		private void ensure(long position, int length) throws PrefixTooShortException {
+			if (position + length > buffer.limit()) {
+				throw new PrefixTooShortException(position + length);
+			}
+		}
+	}
+
+	private static class Window implements Bytes {
+		private final FileChannel channel;
+		private final long size;
+		private ByteBuffer buffer = ByteBuffer.allocate(0);
+		private long start;
+
+		Window(FileChannel channel) throws IOException {
+			this.channel = channel;
+			this.size = channel.size();
+			read(0, 0);
+		}
+
+		@Override
+		public long size() {
+			return size;
+		}
+
+		@Override
+		public byte get(long position) throws IOException {
+			ensure(position, 1);
+			return buffer.get((int) (position - start));
+		}
+
+		@Override
+		public byte[] bytes(long position, int length) throws IOException {
+			ensure(position, length);
+			byte[] bytes = new byte[length];
+			buffer.get((int) (position - start), bytes);
+			return bytes;
+		}
+
+		private void ensure(long position, int length) throws IOException {
+			if (position < start || position + length > start + buffer.limit()) {
+				read(position, length);
+			}
+		}
+
+		private void read(long position, int length) throws IOException {
+			int window = (int) Math.max(0, Math.min(size - position, Math.max(WINDOW_SIZE, length)));
+			if (buffer.capacity() < window) {
+				buffer = ByteBuffer.allocate(window);
+			}
+			buffer.clear().limit(window);
+			while (buffer.hasRemaining()) {
+				if (channel.read(buffer, position + buffer.position()) < 0) {
+					break;
+				}
+			}
+			buffer.flip();
+			start = position;
+		}
+	}
+}
@@ -0,0 +1,130 @@
+package de.sk9.commons.imaging;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Writes XMP updates of many files and makes them durable together. Each
+ * {@link #add} prepares the new data without touching the file: rewritten
+ * copies go into temp files next to the images, in-place updates are only
+ * serialized. {@link #commit()} syncs the temp files, then writes and syncs
+ * the in-place updates, moves the rewritten copies over their originals and
+ * syncs every affected directory once. Closing an uncommitted batch deletes
+ * pending temp files and leaves all files unchanged. A commit that fails
+ * midway cannot undo the in-place updates and moves it has already done;
+ * writes not yet moved into place stay in the batch.
+ * <p>
+ * Every file can be added once per batch.
+ */
+public class JpegXmpBatch implements AutoCloseable {
+
+	private final Map<Path, PendingXmpWrite> pending = new LinkedHashMap<>();
+
+	/**
+	 * @throws IllegalArgumentException if the file has already been added
+	 */
+	public void add(File file, JpegXmpData xmpData) throws JpegXmpDataException {
+		Path key = checkNotAdded(file.toPath());
+		try {
+			pending.put(key, xmpData.prepareDeferredReplace(file));
+		} catch (JpegXmpDataException | RuntimeException e) {
+			ImagingMetrics.get().error(e);
+			throw e;
+		}
+	}
+
+	/**
+	 * Writes the data into the sidecar of the image instead of the image.
+	 *
+	 * @throws IllegalArgumentException if the sidecar has already been added
+	 */
+	public void addSidecar(File image, JpegXmpData xmpData) throws JpegXmpDataException {
+		Path key = checkNotAdded(XmpSidecar.sidecarOf(image.toPath()));
+		try {
+			pending.put(key, XmpSidecar.prepare(image, xmpData));
+		} catch (JpegXmpDataException | RuntimeException e) {
+			ImagingMetrics.get().error(e);
+			throw e;
+		}
+	}
+
+	/**
+	 * Reads the file and adds it if the changeset modifies its metadata.
+	 *
+	 * @return whether the file was added
+	 * @throws IllegalArgumentException if the file has already been added
+	 */
+	public boolean add(File file, XmpChangeset changeset) throws JpegXmpDataException {
+		checkNotAdded(file.toPath());
+		JpegXmpData xmpData = JpegXmpData.fromFile(file);
+		try {
+			if (!xmpData.apply(changeset)) {
+				return false;
+			}
+		} catch (JpegXmpDataException | RuntimeException e) {
+			ImagingMetrics.get().error(e);
+			throw e;
+		}
+		add(file, xmpData);
+		return true;
+	}
+
+	public int size() {
+		return pending.size();
+	}
+
+	public void commit() throws JpegXmpDataException {
+		List<PendingXmpWrite> writes = new ArrayList<>(pending.values());
+		try {
+			// rewrites first, they are not visible before the move
+			for (PendingXmpWrite write : writes) {
+				if (write.isRewrite()) {
+					write.force();
+				}
+			}
+			for (PendingXmpWrite write : writes) {
+				if (!write.isRewrite()) {
+					write.force();
+				}
+			}
+			Set<Path> directories = new LinkedHashSet<>();
+			for (Iterator<PendingXmpWrite> i = pending.values().iterator(); i.hasNext();) {
+				PendingXmpWrite write = i.next();
+				write.moveIntoPlace();
+				if (write.isRewrite()) {
+					directories.add(write.directory());
+				}
+				i.remove();
+			}
+			directories.forEach(PendingXmpWrite::syncDirectory);
+		} catch (RuntimeException e) {
+			ImagingMetrics.get().error(e);
+			throw e;
+		} catch (IOException e) {
+			ImagingMetrics.get().error(e);
+			throw new JpegXmpDataException(e);
+		}
+	}
+
+	@Override
+	public void close() {
+		pending.values().forEach(PendingXmpWrite::discard);
+		pending.clear();
+	}
+
+	private Path checkNotAdded(Path file) {
+		Path key = file.toAbsolutePath().normalize();
+		if (pending.containsKey(key)) {
+			throw new IllegalArgumentException(file + " has already been added to the batch");
+		}
+		return key;
+	}
+}
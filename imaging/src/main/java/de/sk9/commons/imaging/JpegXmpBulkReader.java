@@ -0,0 +1,273 @@
+package de.sk9.commons.imaging;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.DirectoryIteratorException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Reads the XMP data of many files concurrently. At most
+ * {@code maxConcurrency} files are read at the same time; results are
+ * streamed back in completion order while the source is consumed lazily.
+ * Failures are reported per file in the {@link XmpReadResult}.
+ */
+public class JpegXmpBulkReader implements AutoCloseable {
+
+	private final ExecutorService executor;
+	private final boolean ownsExecutor;
+	private final int maxConcurrency;
+
+	public JpegXmpBulkReader() {
+		this(2 * Runtime.getRuntime().availableProcessors());
+	}
+
+	public JpegXmpBulkReader(int maxConcurrency) {
+		this(Executors.newFixedThreadPool(maxConcurrency, r -> {
+			Thread thread = new Thread(r, "xmp-bulk-reader");
+			thread.setDaemon(true);
+			return thread;
+		}), maxConcurrency, true);
+	}
+
+	public JpegXmpBulkReader(ExecutorService executor, int maxConcurrency) {
+		this(executor, maxConcurrency, false);
+	}
+
+	private JpegXmpBulkReader(ExecutorService executor, int maxConcurrency, boolean ownsExecutor) {
+		if (maxConcurrency <= 0) {
+			throw new IllegalArgumentException("maxConcurrency must be positive");
+		}
+		this.executor = executor;
+		this.maxConcurrency = maxConcurrency;
+		this.ownsExecutor = ownsExecutor;
+	}
+
+	/**
+	 * Reads all files of a supported {@link XmpFormats format} below the
+	 * directory. The tree is listed lazily as results are consumed, and the
+	 * format of a file is checked by its read task; files and directories that
+	 * cannot be visited are reported as failed results. The returned stream
+	 * must be closed.
+	 *
+	 * @throws IOException if the directory itself cannot be listed
+	 */
+	public Stream<XmpReadResult> read(Path directory) throws IOException {
+		TreeTasks tasks = new TreeTasks(directory);
+		ResultSpliterator spliterator = new ResultSpliterator(tasks);
+		return StreamSupport.stream(spliterator, false)
+				.onClose(spliterator::cancel)
+				.onClose(tasks::close);
+	}
+
+	/**
+	 * The returned stream must be closed, this closes the given stream of files
+	 * as well and cancels reads in flight.
+	 */
+	public Stream<XmpReadResult> read(Stream<Path> files) {
+		Iterator<Path> paths = files.iterator();
+		ResultSpliterator spliterator = new ResultSpliterator(new Iterator<Callable<XmpReadResult>>() {
+			@Override
+			public boolean hasNext() {
+				return paths.hasNext();
+			}
+
+			@Override
+			public Callable<XmpReadResult> next() {
+				Path path = paths.next();
+				return () -> readFile(path);
+			}
+		});
+		return StreamSupport.stream(spliterator, false)
+				.onClose(spliterator::cancel)
+				.onClose(files::close);
+	}
+
+	public void forEach(Stream<Path> files, Consumer<XmpReadResult> consumer) {
+		try (Stream<XmpReadResult> results = read(files)) {
+			results.forEach(consumer);
+		}
+	}
+
+	@Override
+	public void close() {
+		if (ownsExecutor) {
+			executor.shutdownNow();
+		}
+	}
+
+	/**
+	 * @return {@code null} for a file of an unsupported format
+	 */
+	private static XmpReadResult readSupported(Path path) {
+		return XmpFormats.isSupported(path) ? readFile(path) : null;
+	}
+
+	private static XmpReadResult readFile(Path path) {
+		try {
+			return new XmpReadResult(path, JpegXmpData.fromFile(path.toFile()), null);
+		} catch (JpegXmpDataException e) {
+			return new XmpReadResult(path, null, e);
+		} catch (RuntimeException e) {
+			ImagingMetrics.get().error(e);
+			return new XmpReadResult(path, null, new JpegXmpDataException(e));
+		}
+	}
+
+	/**
+	 * Lists the tree depth-first, one open directory per level, and yields a
+	 * read task per regular file.
+	 */
+	private static class TreeTasks implements Iterator<Callable<XmpReadResult>>, Closeable {
+		private final Deque<Listing> listings = new ArrayDeque<>();
+		private Callable<XmpReadResult> next;
+
+		private record Listing(Path dir, DirectoryStream<Path> stream, Iterator<Path> entries) {
+		}
+
+		TreeTasks(Path directory) throws IOException {
+			open(directory);
+		}
+
+		@Override
+		public boolean hasNext() {
+			while (next == null && !listings.isEmpty()) {
+				Listing listing = listings.peek();
+				Path entry;
+				try {
+					if (!listing.entries().hasNext()) {
+						close(listings.pop());
+						continue;
+					}
+					entry = listing.entries().next();
+				} catch (DirectoryIteratorException e) {
+					// listing failed midway
+					close(listings.pop());
+					next = failed(listing.dir(), e.getCause());
+					continue;
+				}
+				try {
+					BasicFileAttributes attrs = Files.readAttributes(entry, BasicFileAttributes.class,
+							LinkOption.NOFOLLOW_LINKS);
+					if (attrs.isDirectory()) {
+						open(entry);
+					} else if (attrs.isRegularFile()) {
+						next = () -> readSupported(entry);
+					}
+				} catch (IOException e) {
+					next = failed(entry, e);
+				}
+			}
+			return next != null;
+		}
+
+		@Override
+		public Callable<XmpReadResult> next() {
+			if (!hasNext()) {
+				throw new NoSuchElementException();
+			}
+			Callable<XmpReadResult> task = next;
+			next = null;
+			return task;
+		}
+
+		@Override
+		public void close() {
+			while (!listings.isEmpty()) {
+				close(listings.pop());
+			}
+		}
+
+		private void open(Path dir) throws IOException {
+			DirectoryStream<Path> stream = Files.newDirectoryStream(dir);
+			listings.push(new Listing(dir, stream, stream.iterator()));
+		}
+
+		private static void close(Listing listing) {
+			try {
+				listing.stream().close();
+			} catch (IOException e) {
+				// the listing is complete or abandoned
+			}
+		}
+
+		private static Callable<XmpReadResult> failed(Path path, IOException ex) {
+			ImagingMetrics.get().error(ex);
+			XmpReadResult failed = new XmpReadResult(path, null, new JpegXmpDataException(ex));
+			return () -> failed;
+		}
+	}
+
+	private class ResultSpliterator extends Spliterators.AbstractSpliterator<XmpReadResult> {
+		private final Iterator<Callable<XmpReadResult>> source;
+		private final CompletionService<XmpReadResult> completionService;
+		private final List<Future<XmpReadResult>> inFlight = new ArrayList<>();
+
+		ResultSpliterator(Iterator<Callable<XmpReadResult>> source) {
+			super(Long.MAX_VALUE, Spliterator.NONNULL);
+			this.source = source;
+			this.completionService = new ExecutorCompletionService<>(executor);
+		}
+
+		/**
+		 * @throws CancellationException if the thread was interrupted while
+		 *                               waiting, the reads in flight are
+		 *                               cancelled
+		 */
+		@Override
+		public boolean tryAdvance(Consumer<? super XmpReadResult> action) {
+			try {
+				while (true) {
+					while (inFlight.size() < maxConcurrency && source.hasNext()) {
+						inFlight.add(completionService.submit(source.next()));
+					}
+					if (inFlight.isEmpty()) {
+						return false;
+					}
+					Future<XmpReadResult> done = completionService.take();
+					inFlight.remove(done);
+					XmpReadResult result = done.get();
+					// skipped files have no result
+					if (result != null) {
+						action.accept(result);
+						return true;
+					}
+				}
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				cancel();
+				throw new CancellationException("interrupted while reading");
+			} catch (ExecutionException e) {
+				// readFile catches everything, only errors end up here
+				throw new IllegalStateException(e.getCause());
+			}
+		}
+
+		void cancel() {
+			inFlight.forEach(future -> future.cancel(true));
+			inFlight.clear();
+		}
+	}
+}
@@ -2,67 +2,117 @@ package de.sk9.commons.imaging;
 
 import java.io.ByteArrayOutputStream;
 import java.io.File;
-import java.io.FileOutputStream;
 import java.io.IOException;
 import java.nio.charset.StandardCharsets;
-import java.nio.file.Files;
-import java.nio.file.StandardCopyOption;
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+
+import javax.xml.stream.XMLStreamException;
 
-import org.apache.commons.imaging.ImageReadException;
-import org.apache.commons.imaging.ImageWriteException;
-import org.apache.commons.imaging.common.bytesource.ByteSource;
-import org.apache.commons.imaging.common.bytesource.ByteSourceFile;
-import org.apache.commons.imaging.formats.jpeg.JpegImageParser;
-import org.apache.commons.imaging.formats.jpeg.JpegImagingParameters;
-import org.apache.commons.imaging.formats.jpeg.xmp.JpegXmpRewriter;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
+import com.adobe.internal.xmp.XMPDateTime;
 import com.adobe.internal.xmp.XMPException;
 import com.adobe.internal.xmp.XMPIterator;
 import com.adobe.internal.xmp.XMPMeta;
 import com.adobe.internal.xmp.XMPMetaFactory;
 import com.adobe.internal.xmp.options.IteratorOptions;
-import com.adobe.internal.xmp.options.PropertyOptions;
+import com.adobe.internal.xmp.options.SerializeOptions;
 import com.adobe.internal.xmp.properties.XMPProperty;
 import com.adobe.internal.xmp.properties.XMPPropertyInfo;
 
+import de.sk9.commons.imaging.ImagingMetrics.Stage;
+
 public class JpegXmpData {
 	private static Logger LOG = LogManager.getLogger(JpegXmpData.class);
 
-	private static final PropertyQualifier<String> KEYWORD_QUALIFIER = new PropertyQualifier<>(
+	public static final PropertyQualifier<String> KEYWORD_QUALIFIER = new PropertyQualifier<>(
 			"http://purl.org/dc/elements/1.1/", "dc:subject",
 			String.class, s -> s, s -> s);
-	private static final PropertyQualifier<Integer> IMAGE_RATING_QUALIFIER = new PropertyQualifier<Integer>(
+	public static final PropertyQualifier<Integer> IMAGE_RATING_QUALIFIER = new PropertyQualifier<Integer>(
 			"http://ns.adobe.com/xap/1.0/", "xmp:Rating",
-			Integer.class, s -> Integer.valueOf(s), v -> v.toString());
+			Integer.class, s -> Integer.valueOf(s.trim()), v -> v.toString(), false);
+	public static final PropertyQualifier<String> TITLE_QUALIFIER = new PropertyQualifier<>(
+			"http://purl.org/dc/elements/1.1/", "dc:title",
+			String.class, s -> s, s -> s);
+	public static final PropertyQualifier<String> LABEL_QUALIFIER = new PropertyQualifier<>(
+			"http://ns.adobe.com/xap/1.0/", "xmp:Label",
+			String.class, s -> s, s -> s, false);
+	public static final PropertyQualifier<String> HIERARCHICAL_SUBJECT_QUALIFIER = new PropertyQualifier<>(
+			"http://ns.adobe.com/lightroom/1.0/", "lr:hierarchicalSubject",
+			String.class, s -> s, s -> s);
+	public static final PropertyQualifier<XMPDateTime> CREATE_DATE_QUALIFIER = new PropertyQualifier<>(
+			"http://ns.adobe.com/xap/1.0/", "xmp:CreateDate",
+			XMPDateTime.class, XmpProjection::parseDate, XMPDateTime::getISO8601String, false);
+
+	private static final List<PropertyQualifier<?>> SCANNED_QUALIFIERS = List.of(KEYWORD_QUALIFIER,
+			IMAGE_RATING_QUALIFIER);
 
 	private XMPMeta xmpMeta;
+	// raw packet and its streamed values as long as no DOM has been built
+	private byte[] packet;
+	private Map<PropertyQualifier<?>, List<String>> scanned;
 
-	private JpegXmpData(XMPMeta xmpMeta) {
+	JpegXmpData(byte[] packet, Map<PropertyQualifier<?>, List<String>> scanned) {
+		this.packet = packet;
+		this.scanned = scanned;
+	}
+
+	JpegXmpData(XMPMeta xmpMeta) {
 		this.xmpMeta = xmpMeta;
 	}
 
 	public JpegXmpData() {
 	}
 
+	/**
+	 * Reads the packet and checks that it is well-formed XML. The xmpcore data
+	 * model is only built on the first access that needs it; a packet that is no
+	 * valid XMP is reported there.
+	 */
 	public static JpegXmpData fromFile(File jpegFile) throws JpegXmpDataException {
 		try {
-			ByteSource byteSource = new ByteSourceFile(jpegFile);
-			JpegImagingParameters params = new JpegImagingParameters();
-			String xmpXml = new JpegImageParser().getXmpXml(byteSource, params);
+			XmpContainer header = XmpFormats.scan(jpegFile.toPath());
+			return fromPacket(header.xmpPacket());
+		} catch (Exception e) {
+			ImagingMetrics.get().error(e);
+			throw new JpegXmpDataException(e);
+		}
+	}
 
-			if (xmpXml != null) {
-				XMPMeta xmpMeta = XMPMetaFactory.parseFromBuffer(xmpXml.getBytes());
-				return new JpegXmpData(xmpMeta);
+	/**
+	 * @param packet the XMP packet or {@code null} for none
+	 */
+	static JpegXmpData fromPacket(byte[] packet) throws XMLStreamException {
+		if (packet == null) {
+			return new JpegXmpData();
+		}
+		long start = System.nanoTime();
+		Map<PropertyQualifier<?>, List<String>> scanned = XmpPropertyScanner.scan(packet, SCANNED_QUALIFIERS);
+		ImagingMetrics.get().record(Stage.PARSE, start);
+		ImagingMetrics.get().read(packet.length);
+		return new JpegXmpData(packet, scanned);
+	}
+
+	/**
+	 * @return an immutable copy of the current state
+	 */
+	public XmpSnapshot snapshot() throws JpegXmpDataException {
+		try {
+			if (packet != null) {
+				return new XmpSnapshot(packet, scanned);
+			} else if (xmpMeta != null) {
+				byte[] serialized = XMPMetaFactory.serializeToBuffer(xmpMeta, new SerializeOptions().setPadding(0));
+				return new XmpSnapshot(serialized, XmpPropertyScanner.scan(serialized, SCANNED_QUALIFIERS));
 			} else {
-				return new JpegXmpData(null);
+				return XmpSnapshot.EMPTY;
 			}
-		} catch (Exception e) {
+		} catch (XMPException e) {
+			throw new JpegXmpDataException(xmpMeta, e);
+		} catch (XMLStreamException e) {
 			throw new JpegXmpDataException(e);
 		}
 	}
@@ -76,7 +126,7 @@ public class JpegXmpData {
 	}
 
 	public void addKeywords(String... keywords) throws JpegXmpDataException {
-		addXmpArrayValues(KEYWORD_QUALIFIER, keywords);
+		apply(new XmpChangeset().add(KEYWORD_QUALIFIER, keywords));
 	}
 
 	public void replaceKeywords(List<String> keywordList) throws JpegXmpDataException {
@@ -84,7 +134,7 @@ public class JpegXmpData {
 	}
 
 	public void replaceKeywords(String... keywords) throws JpegXmpDataException {
-		replaceXmpArrayValues(KEYWORD_QUALIFIER, keywords);
+		apply(new XmpChangeset().replace(KEYWORD_QUALIFIER, keywords));
 	}
 
 	public void removeKeywords(List<String> keywordList) throws JpegXmpDataException {
@@ -92,49 +142,100 @@ public class JpegXmpData {
 	}
 
 	public void removeKeywords(String... keywords) throws JpegXmpDataException {
-		removeXmpArrayValue(KEYWORD_QUALIFIER, keywords);
+		apply(new XmpChangeset().remove(KEYWORD_QUALIFIER, keywords));
 	}
 
+	/**
+	 * @throws IllegalStateException if the packet read from the file is well-formed
+	 *                               XML but no valid XMP
+	 */
 	public void removeAllKeywords() {
 		removeAllXmpArrayValues(KEYWORD_QUALIFIER);
 	}
 
+	/**
+	 * @return whether the metadata was modified
+	 */
+	public boolean apply(XmpChangeset changeset) throws JpegXmpDataException {
+		if (changeset.addsValues()) {
+			garanteeXmpMeta();
+		} else if (meta() == null) {
+			return false;
+		}
+		try {
+			return changeset.applyTo(xmpMeta);
+		} catch (XMPException e) {
+			throw new JpegXmpDataException(xmpMeta, e);
+		}
+	}
+
 	public Integer getImageRating() throws JpegXmpDataException {
 		return getXmpValue(IMAGE_RATING_QUALIFIER);
 	}
 
-	public void replaceInFile(File inFile) throws JpegXmpDataException {
+	/**
+	 * Reads all properties of the projection, from the raw packet as long as
+	 * the data was not modified.
+	 */
+	public XmpValues project(XmpProjection projection) throws JpegXmpDataException {
 		try {
-			JpegXmpRewriter rewriter = new JpegXmpRewriter();
-			ByteSource byteSource = new ByteSourceFile(inFile);
-			File outFile = File.createTempFile("JpegXmpData", ".jpg");
-			FileOutputStream fos = new FileOutputStream(outFile);
-			outFile.deleteOnExit();
-
-			if (xmpMeta == null) {
-				rewriter.removeXmpXml(byteSource, fos);
+			if (packet != null) {
+				return projection.fromScan(XmpPropertyScanner.scan(packet, projection.qualifiers()));
+			} else if (xmpMeta != null) {
+				return projection.fromMeta(xmpMeta);
 			} else {
-				ByteArrayOutputStream bos = new ByteArrayOutputStream();
-				XMPMetaFactory.serialize(xmpMeta, bos);
-				rewriter.updateXmpXml(byteSource, fos, bos.toString(StandardCharsets.UTF_8));
-
-				Files.move(outFile.toPath(), inFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
-				outFile.delete();
+				return projection.empty();
 			}
+		} catch (XMLStreamException | IllegalArgumentException e) {
+			throw new JpegXmpDataException(e);
+		} catch (XMPException e) {
+			throw new JpegXmpDataException(xmpMeta, e);
+		}
+	}
+
+	public void replaceInFile(File inFile) throws JpegXmpDataException {
+		try {
+			prepareReplace(inFile).commit();
+		} catch (JpegXmpDataException | RuntimeException e) {
+			ImagingMetrics.get().error(e);
+			throw e;
+		} catch (IOException e) {
+			ImagingMetrics.get().error(e);
+			throw new JpegXmpDataException(e);
+		}
+	}
+
+	PendingXmpWrite prepareReplace(File inFile) throws JpegXmpDataException {
+		try {
+			return XmpWriter.prepare(inFile.toPath(), meta());
+		} catch (XMPException e) {
+			throw new JpegXmpDataException(xmpMeta, e);
+		} catch (IOException e) {
+			throw new JpegXmpDataException(e);
+		}
+	}
+
+	/**
+	 * Like {@link #prepareReplace(File)}, but an in-place update is only written
+	 * when the returned write is forced.
+	 */
+	PendingXmpWrite prepareDeferredReplace(File inFile) throws JpegXmpDataException {
+		try {
+			return XmpWriter.prepareDeferred(inFile.toPath(), meta());
 		} catch (XMPException e) {
 			throw new JpegXmpDataException(xmpMeta, e);
-		} catch (ImageReadException | ImageWriteException | IOException e) {
+		} catch (IOException e) {
 			throw new JpegXmpDataException(e);
 		}
 	}
 
 	@Override
 	public String toString() {
-		if (xmpMeta != null) {
+		if (packet != null || xmpMeta != null) {
 			ByteArrayOutputStream bos = new ByteArrayOutputStream();
 			try {
-				XMPMetaFactory.serialize(xmpMeta, bos);
-			} catch (XMPException e) {
+				XMPMetaFactory.serialize(meta(), bos);
+			} catch (XMPException | JpegXmpDataException e) {
 				e.printStackTrace();
 			}
 			return bos.toString(StandardCharsets.UTF_8);
@@ -143,20 +244,41 @@ public class JpegXmpData {
 		}
 	}
 
-	private void garanteeXmpMeta() {
-		if (xmpMeta == null) {
+	/**
+	 * Builds the xmpcore tree from the packet read on first use.
+	 */
+	XMPMeta meta() throws JpegXmpDataException {
+		if (packet != null) {
+			try {
+				long start = System.nanoTime();
+				xmpMeta = XMPMetaFactory.parseFromBuffer(packet);
+				ImagingMetrics.get().record(Stage.PARSE, start);
+			} catch (XMPException e) {
+				throw new JpegXmpDataException(e);
+			}
+			packet = null;
+			scanned = null;
+		}
+		return xmpMeta;
+	}
+
+	private void garanteeXmpMeta() throws JpegXmpDataException {
+		if (meta() == null) {
 			LOG.debug("xmpMeta not present - creating struct");
 			xmpMeta = XMPMetaFactory.create();
 		}
 	}
 
 	private <T> T getXmpValue(PropertyQualifier<T> qualifier) throws JpegXmpDataException {
-		if (xmpMeta == null) {
+		if (scanned != null && SCANNED_QUALIFIERS.contains(qualifier)) {
+			List<String> values = scanned.get(qualifier);
+			return values == null || values.isEmpty() ? null : qualifier.stringToValue().apply(values.get(0));
+		} else if (meta() == null) {
 			return null;
 		} else {
 			try {
-				String stringValue = xmpMeta.getProperty(qualifier.namespace(), qualifier.propertyName()).getValue();
-				return qualifier.stringToValue().apply(stringValue);
+				XMPProperty property = xmpMeta.getProperty(qualifier.namespace(), qualifier.propertyName());
+				return property == null ? null : qualifier.stringToValue().apply(property.getValue());
 			} catch (XMPException e) {
 				throw new JpegXmpDataException(xmpMeta, e);
 			}
@@ -164,9 +286,16 @@ public class JpegXmpData {
 	}
 
 	private <T> List<T> getXmpArrayValues(PropertyQualifier<T> qualifier) throws JpegXmpDataException {
+		if (scanned != null && SCANNED_QUALIFIERS.contains(qualifier)) {
+			List<T> result = new ArrayList<>();
+			for (String value : scanned.getOrDefault(qualifier, Collections.emptyList())) {
+				result.add(qualifier.stringToValue().apply(value));
+			}
+			return result.isEmpty() ? Collections.emptyList() : result;
+		}
 		try {
 			List<T> result = Collections.emptyList();
-			if (xmpMeta != null) {
+			if (meta() != null) {
 				IteratorOptions iteratorOptions = new IteratorOptions();
 				iteratorOptions.setOptions(IteratorOptions.JUST_CHILDREN);
 				XMPIterator iterator = xmpMeta.iterator(qualifier.namespace(), qualifier.propertyName(),
@@ -185,66 +314,19 @@ public class JpegXmpData {
 		}
 	}
 
-	@SafeVarargs
-	private <T> void addXmpArrayValues(PropertyQualifier<T> qualifier, T... values) throws JpegXmpDataException {
-		garanteeXmpMeta();
-		try {
-			List<String> existingKeywords = getKeywords();
-			for (T value : values) {
-				if (!existingKeywords.contains(value)) {
-					xmpMeta.appendArrayItem(qualifier.namespace(), qualifier.propertyName(),
-							new PropertyOptions(PropertyOptions.ARRAY),
-							qualifier.valueToString().apply(value),
-							new PropertyOptions(PropertyOptions.NO_OPTIONS));
-				}
-			}
-		} catch (XMPException e) {
-			throw new JpegXmpDataException(xmpMeta, e);
-		}
-	}
-
-	@SafeVarargs
-	private <T> void replaceXmpArrayValues(PropertyQualifier<T> qualifier, T... values)
-			throws JpegXmpDataException {
-		garanteeXmpMeta();
-		try {
-			removeAllXmpArrayValues(qualifier);
-			for (T value : values) {
-				xmpMeta.appendArrayItem(qualifier.namespace(), qualifier.propertyName(),
-						new PropertyOptions(PropertyOptions.ARRAY),
-						qualifier.valueToString().apply(value),
-						new PropertyOptions(PropertyOptions.NO_OPTIONS));
-			}
-		} catch (XMPException e) {
-			throw new JpegXmpDataException(xmpMeta, e);
-		}
-	}
-
+	/**
+	 * @throws IllegalStateException if the packet read from the file is well-formed
+	 *                               XML but no valid XMP
+	 */
 	public <T> void removeAllXmpArrayValues(PropertyQualifier<T> qualifier) {
-		if (xmpMeta == null) {
-			return;
-		} else {
-			xmpMeta.deleteProperty(qualifier.namespace(), qualifier.propertyName());
+		XMPMeta meta;
+		try {
+			meta = meta();
+		} catch (JpegXmpDataException e) {
+			throw new IllegalStateException("XMP packet cannot be parsed", e);
 		}
-	}
-
-	@SafeVarargs
-	private <T> void removeXmpArrayValue(PropertyQualifier<T> qualifier, T... values) throws JpegXmpDataException {
-		if (xmpMeta == null) {
-			return;
-		} else {
-			List<T> keywordList = Arrays.asList(values);
-			try {
-				int keywordCount = xmpMeta.countArrayItems(qualifier.namespace(), qualifier.propertyName());
-				for (int i = keywordCount; i > 0; i--) {
-					XMPProperty keyword = xmpMeta.getArrayItem(qualifier.namespace(), qualifier.propertyName(), i);
-					if (keywordList.contains(keyword.getValue())) {
-						xmpMeta.deleteArrayItem(qualifier.namespace(), qualifier.propertyName(), i);
-					}
-				}
-			} catch (XMPException e) {
-				throw new JpegXmpDataException(xmpMeta, e);
-			}
+		if (meta != null) {
+			meta.deleteProperty(qualifier.namespace(), qualifier.propertyName());
 		}
 	}
 }
@@ -6,8 +6,12 @@ import com.adobe.internal.xmp.XMPMeta;
 @SuppressWarnings("serial")
 public class JpegXmpDataException extends Exception {
 
+	/**
+	 * @param xmpMeta the metadata the failed operation worked on, may be
+	 *                {@code null}
+	 */
 	public JpegXmpDataException(XMPMeta xmpMeta, XMPException e) {
-		super(xmpMeta.toString(), e);
+		super(xmpMeta != null ? xmpMeta.toString() : e.getMessage(), e);
 	}
 
 	public JpegXmpDataException(Exception e) {
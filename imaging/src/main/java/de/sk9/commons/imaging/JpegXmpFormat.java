@@ -0,0 +1,76 @@
+package de.sk9.commons.imaging;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.List;
+
+/**
+ * XMP in a JPEG APP1 segment, located with {@link JpegSegmentScanner}.
+ */
+class JpegXmpFormat implements XmpFormat {
+	static final int APP0 = 0xE0;
+	static final int MAX_PACKET_LENGTH = 0xFFFF - 2 - JpegSegmentScanner.XMP_IDENTIFIER.length;
+
+	@Override
+	public String name() {
+		return "JPEG";
+	}
+
+	@Override
+	public List<String> extensions() {
+		return List.of("jpg", "jpeg");
+	}
+
+	@Override
+	public boolean matches(byte[] head) {
+		return head.length >= 2 && head[0] == (byte) 0xFF && head[1] == (byte) JpegSegmentScanner.SOI;
+	}
+
+	@Override
+	public XmpContainer scan(FileChannel channel) throws IOException {
+		return JpegSegmentScanner.scan(channel);
+	}
+
+	/**
+	 * Writes a copy of the JPEG with the XMP segment replaced by the given packet.
+	 * If the source has no XMP segment, the new one is inserted after the leading
+	 * APP0/APP1 segments. Only the new segment passes through the heap, all other
+	 * bytes are copied with {@link FileChannel#transferTo}. A {@code null} packet
+	 * removes the XMP segment.
+	 */
+	static void rewrite(FileChannel source, JpegHeader header, byte[] packet, WritableByteChannel target)
+			throws IOException {
+		long cut;
+		long resume;
+		if (header.hasXmp()) {
+			cut = header.xmpSegment().offset();
+			resume = header.xmpSegment().end();
+		} else {
+			cut = 2;
+			for (JpegSegment segment : header.segments()) {
+				if (segment.marker() != APP0 && segment.marker() != JpegSegmentScanner.APP1) {
+					break;
+				}
+				cut = segment.end();
+			}
+			resume = cut;
+		}
+
+		XmpWriter.transferFully(source, 0, cut, target);
+		if (packet != null) {
+			XmpWriter.writeFully(xmpSegment(packet), target);
+		}
+		XmpWriter.transferFully(source, resume, source.size() - resume, target);
+	}
+
+	private static ByteBuffer xmpSegment(byte[] packet) {
+		byte[] identifier = JpegSegmentScanner.XMP_IDENTIFIER;
+		ByteBuffer segment = ByteBuffer.allocate(4 + identifier.length + packet.length);
+		segment.put((byte) 0xFF).put((byte) JpegSegmentScanner.APP1);
+		segment.putShort((short) (2 + identifier.length + packet.length));
+		segment.put(identifier).put(packet);
+		return segment.flip();
+	}
+}
@@ -0,0 +1,150 @@
+package de.sk9.commons.imaging;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import de.sk9.commons.imaging.ImagingMetrics.Stage;
+
+/**
+ * An XMP update that has been written but not yet made durable. Either the
+ * target has been changed in place, or a rewritten copy waits in a temp file
+ * next to the target until it is moved over it. A deferred in-place update
+ * keeps the packet and writes it only in {@link #force()}.
+ */
+class PendingXmpWrite {
+	private static Logger LOG = LogManager.getLogger(PendingXmpWrite.class);
+
+	private final Path target;
+	private final Path temp;
+	private final boolean written;
+	private XmpContainer container;
+	private byte[] packet;
+
+	private PendingXmpWrite(Path target, Path temp, boolean written) {
+		this.target = target;
+		this.temp = temp;
+		this.written = written;
+	}
+
+	static PendingXmpWrite inPlace(Path target) {
+		return new PendingXmpWrite(target, null, true);
+	}
+
+	static PendingXmpWrite deferredInPlace(Path target, XmpContainer container, byte[] packet) {
+		PendingXmpWrite write = new PendingXmpWrite(target, null, true);
+		write.container = container;
+		write.packet = packet;
+		return write;
+	}
+
+	static PendingXmpWrite replace(Path target, Path temp) {
+		return new PendingXmpWrite(target, temp, true);
+	}
+
+	static PendingXmpWrite unchanged(Path target) {
+		return new PendingXmpWrite(target, null, false);
+	}
+
+	Path target() {
+		return target;
+	}
+
+	Path directory() {
+		return target.toAbsolutePath().getParent();
+	}
+
+	boolean isRewrite() {
+		return temp != null;
+	}
+
+	boolean isWritten() {
+		return written;
+	}
+
+	void commit() throws IOException {
+		force();
+		moveIntoPlace();
+		if (isRewrite()) {
+			syncDirectory(directory());
+		}
+	}
+
+	void force() throws IOException {
+		if (written) {
+			try (FileChannel channel = isRewrite() ? FileChannel.open(temp, StandardOpenOption.WRITE)
+					: FileChannel.open(target, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+				if (packet != null) {
+					writeDeferred(channel);
+				}
+				long start = System.nanoTime();
+				channel.force(true);
+				ImagingMetrics.get().record(Stage.SYNC, start);
+			} catch (IOException e) {
+				discard();
+				throw e;
+			}
+		}
+	}
+
+	/**
+	 * Writes the packet unless the file was changed since it was scanned.
+	 */
+	private void writeDeferred(FileChannel channel) throws IOException {
+		byte[] scanned = container.xmpPacket();
+		ByteBuffer current = ByteBuffer.allocate(scanned.length);
+		XmpWriter.readFully(channel, current, container.xmpPacketOffset());
+		if (!current.equals(ByteBuffer.wrap(scanned))) {
+			throw new IOException(target + " was modified after the XMP update was prepared");
+		}
+		XmpWriter.writePacket(target, channel, container, packet);
+		packet = null;
+	}
+
+	void moveIntoPlace() throws IOException {
+		if (isRewrite()) {
+			try {
+				try {
+					Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE);
+				} catch (AtomicMoveNotSupportedException e) {
+					LOG.debug(() -> "atomic move not supported for " + target);
+					Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+				}
+				XmpSnapshotCache.written(target);
+			} catch (IOException e) {
+				discard();
+				throw e;
+			}
+		}
+	}
+
+	void discard() {
+		if (isRewrite()) {
+			try {
+				Files.deleteIfExists(temp);
+			} catch (IOException e) {
+				LOG.warn(() -> "could not delete temp file " + temp + ", cause: " + e);
+			}
+		}
+	}
+
+	/**
+	 * Makes renames in the directory durable. Not every platform allows opening
+	 * a directory, failures are ignored.
+	 */
+	static void syncDirectory(Path directory) {
+		try (FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+			channel.force(true);
+		} catch (IOException e) {
+			LOG.debug(() -> "could not sync directory " + directory + ", cause: " + e);
+		}
+	}
+}
@@ -0,0 +1,170 @@
+package de.sk9.commons.imaging;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * XMP in a PNG {@code iTXt} chunk with the keyword {@code XML:com.adobe.xmp}.
+ * The scan only reads chunk headers, chunk data is skipped except for the XMP
+ * chunk. New chunks are inserted right after {@code IHDR}; the CRC of a chunk
+ * updated in place is recomputed.
+ */
+class PngXmpFormat implements XmpFormat {
+	static final byte[] SIGNATURE = { (byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n' };
+	static final byte[] XMP_KEYWORD = "XML:com.adobe.xmp\0".getBytes(StandardCharsets.US_ASCII);
+
+	private static final int ITXT = type("iTXt");
+	private static final int IHDR = type("IHDR");
+	private static final int IEND = type("IEND");
+
+	@Override
+	public String name() {
+		return "PNG";
+	}
+
+	@Override
+	public List<String> extensions() {
+		return List.of("png");
+	}
+
+	@Override
+	public boolean matches(byte[] head) {
+		return head.length >= SIGNATURE.length && Arrays.equals(head, 0, SIGNATURE.length, SIGNATURE, 0,
+				SIGNATURE.length);
+	}
+
+	@Override
+	public XmpContainer scan(FileChannel channel) throws IOException {
+		long size = channel.size();
+		long pos = SIGNATURE.length;
+		long ihdrEnd = -1;
+		ByteBuffer header = ByteBuffer.allocate(8 + XMP_KEYWORD.length);
+		while (pos + 12 <= size) {
+			header.clear().limit((int) Math.min(header.capacity(), size - pos));
+			XmpWriter.readFully(channel, header, pos);
+			long length = Integer.toUnsignedLong(header.getInt(0));
+			int type = header.getInt(4);
+			long end = pos + 12 + length;
+			if (end > size) {
+				throw new IOException("truncated PNG chunk at offset " + pos);
+			}
+			if (type == IHDR) {
+				ihdrEnd = end;
+			} else if (type == ITXT && length >= XMP_KEYWORD.length && header.limit() == header.capacity()
+					&& Arrays.equals(header.array(), 8, header.capacity(), XMP_KEYWORD, 0, XMP_KEYWORD.length)) {
+				return readXmpChunk(channel, pos, (int) length, ihdrEnd);
+			} else if (type == IEND) {
+				break;
+			}
+			pos = end;
+		}
+		if (ihdrEnd < 0) {
+			throw new IOException("PNG file without IHDR chunk");
+		}
+		return new Container(-1, -1, -1, null, false, ihdrEnd);
+	}
+
+	private static XmpContainer readXmpChunk(FileChannel channel, long offset, int length, long ihdrEnd)
+			throws IOException {
+		ByteBuffer data = ByteBuffer.allocate(length);
+		XmpWriter.readFully(channel, data, offset + 8);
+		byte[] bytes = data.array();
+		int pos = XMP_KEYWORD.length;
+		boolean compressed = bytes[pos] != 0;
+		pos += 2;
+		// language tag and translated keyword
+		for (int i = 0; i < 2; i++) {
+			while (pos < length && bytes[pos] != 0) {
+				pos++;
+			}
+			pos++;
+		}
+		if (pos > length) {
+			throw new IOException("invalid XMP iTXt chunk at offset " + offset);
+		}
+		byte[] text = Arrays.copyOfRange(bytes, pos, length);
+		byte[] packet = compressed ? inflate(text) : text;
+		return new Container(offset, offset + 12 + length, offset + 8 + pos, packet, compressed, ihdrEnd);
+	}
+
+	private static byte[] inflate(byte[] compressed) throws IOException {
+		Inflater inflater = new Inflater();
+		try {
+			inflater.setInput(compressed);
+			byte[] buffer = new byte[Math.max(1024, compressed.length * 4)];
+			int length = 0;
+			while (!inflater.finished()) {
+				if (length == buffer.length) {
+					buffer = Arrays.copyOf(buffer, buffer.length * 2);
+				}
+				int inflated = inflater.inflate(buffer, length, buffer.length - length);
+				if (inflated == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+					throw new IOException("truncated compressed XMP packet");
+				}
+				length += inflated;
+			}
+			return Arrays.copyOf(buffer, length);
+		} catch (DataFormatException e) {
+			throw new IOException("invalid compressed XMP packet", e);
+		} finally {
+			inflater.end();
+		}
+	}
+
+	private static ByteBuffer xmpChunk(byte[] packet) {
+		int length = XMP_KEYWORD.length + 4 + packet.length;
+		ByteBuffer chunk = ByteBuffer.allocate(12 + length);
+		chunk.putInt(length).putInt(ITXT);
+		// uncompressed, no language tag, no translated keyword
+		chunk.put(XMP_KEYWORD).put(new byte[4]).put(packet);
+		CRC32 crc = new CRC32();
+		crc.update(chunk.array(), 4, 4 + length);
+		chunk.putInt((int) crc.getValue());
+		return chunk.flip();
+	}
+
+	private static int type(String type) {
+		return ByteBuffer.wrap(type.getBytes(StandardCharsets.US_ASCII)).getInt();
+	}
+
+	private record Container(long chunkOffset, long chunkEnd, long xmpPacketOffset, byte[] xmpPacket,
+			boolean compressed, long ihdrEnd) implements XmpContainer {
+
+		@Override
+		public boolean hasXmp() {
+			return xmpPacket != null;
+		}
+
+		@Override
+		public boolean isPacketWritableInPlace() {
+			return hasXmp() && !compressed;
+		}
+
+		@Override
+		public void packetUpdated(FileChannel channel) throws IOException {
+			ByteBuffer chunk = ByteBuffer.allocate((int) (chunkEnd - chunkOffset - 8));
+			XmpWriter.readFully(channel, chunk, chunkOffset + 4);
+			CRC32 crc = new CRC32();
+			crc.update(chunk);
+			XmpWriter.writeFully(ByteBuffer.allocate(4).putInt(0, (int) crc.getValue()), channel, chunkEnd - 4);
+		}
+
+		@Override
+		public void rewrite(FileChannel source, byte[] packet, FileChannel target) throws IOException {
+			long cut = hasXmp() ? chunkOffset : ihdrEnd;
+			long resume = hasXmp() ? chunkEnd : ihdrEnd;
+			XmpWriter.transferFully(source, 0, cut, target);
+			if (packet != null) {
+				XmpWriter.writeFully(xmpChunk(packet), target);
+			}
+			XmpWriter.transferFully(source, resume, source.size() - resume, target);
+		}
+	}
+}
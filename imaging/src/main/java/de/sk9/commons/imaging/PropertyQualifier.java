@@ -2,6 +2,15 @@ package de.sk9.commons.imaging;
 
 import java.util.function.Function;
 
+/**
+ * @param array whether the property is an array; {@link XmpChangeset} only
+ *              accepts array properties
+ */
 public record PropertyQualifier<T> (String namespace, String propertyName, Class<T> propertyType,
-		Function<String, T> stringToValue, Function<T, String> valueToString) {
+		Function<String, T> stringToValue, Function<T, String> valueToString, boolean array) {
+
+	public PropertyQualifier(String namespace, String propertyName, Class<T> propertyType,
+			Function<String, T> stringToValue, Function<T, String> valueToString) {
+		this(namespace, propertyName, propertyType, stringToValue, valueToString, true);
+	}
 }
@@ -0,0 +1,153 @@
+package de.sk9.commons.imaging;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.util.List;
+
+/**
+ * XMP in tag 700 of the first IFD of a TIFF file (also DNG and other TIFF
+ * based raw formats). Only the IFD is read. A rewrite copies the file
+ * unchanged, appends the new packet and a copy of the first IFD with the
+ * updated XMP entry, and points the header to that IFD; all other offsets stay
+ * valid. If the old first IFD, optionally preceded by the old packet, is at the
+ * end of the file, as after an earlier rewrite, it is dropped from the copy,
+ * so repeated rewrites do not grow the file. BigTIFF is not supported.
+ */
+class TiffXmpFormat implements XmpFormat {
+	static final int XMP_TAG = 700;
+
+	private static final short TYPE_BYTE = 1;
+	private static final int ENTRY_LENGTH = 12;
+
+	@Override
+	public String name() {
+		return "TIFF";
+	}
+
+	@Override
+	public List<String> extensions() {
+		return List.of("tif", "tiff", "dng");
+	}
+
+	@Override
+	public boolean matches(byte[] head) {
+		return head.length >= 4 && ((head[0] == 'I' && head[1] == 'I' && head[2] == 42 && head[3] == 0)
+				|| (head[0] == 'M' && head[1] == 'M' && head[2] == 0 && head[3] == 42));
+	}
+
+	@Override
+	public XmpContainer scan(FileChannel channel) throws IOException {
+		ByteBuffer header = ByteBuffer.allocate(8);
+		XmpWriter.readFully(channel, header, 0);
+		ByteOrder order = header.get(0) == 'I' ? ByteOrder.LITTLE_ENDIAN : ByteOrder.BIG_ENDIAN;
+		header.order(order);
+		long ifdOffset = Integer.toUnsignedLong(header.getInt(4));
+
+		ByteBuffer count = ByteBuffer.allocate(2).order(order);
+		XmpWriter.readFully(channel, count, ifdOffset);
+		int entryCount = Short.toUnsignedInt(count.getShort(0));
+		ByteBuffer ifd = ByteBuffer.allocate(entryCount * ENTRY_LENGTH + 4).order(order);
+		XmpWriter.readFully(channel, ifd, ifdOffset + 2);
+
+		for (int i = 0; i < entryCount; i++) {
+			int entry = i * ENTRY_LENGTH;
+			if (Short.toUnsignedInt(ifd.getShort(entry)) == XMP_TAG) {
+				long length = Integer.toUnsignedLong(ifd.getInt(entry + 4));
+				if (length > Integer.MAX_VALUE) {
+					throw new IOException("invalid XMP tag length " + length);
+				}
+				long packetOffset = length <= 4 ? ifdOffset + 2 + entry + 8
+						: Integer.toUnsignedLong(ifd.getInt(entry + 8));
+				ByteBuffer packet = ByteBuffer.allocate((int) length);
+				XmpWriter.readFully(channel, packet, packetOffset);
+				return new Container(order, ifdOffset, ifd, entryCount, packetOffset, packet.array());
+			}
+		}
+		return new Container(order, ifdOffset, ifd, entryCount, -1, null);
+	}
+
+	private record Container(ByteOrder order, long ifdOffset, ByteBuffer ifd, int entryCount, long xmpPacketOffset,
+			byte[] xmpPacket) implements XmpContainer {
+
+		@Override
+		public boolean hasXmp() {
+			return xmpPacket != null;
+		}
+
+		@Override
+		public void rewrite(FileChannel source, byte[] packet, FileChannel target) throws IOException {
+			long size = reusableEnd(source.size());
+			XmpWriter.transferFully(source, 0, size, target);
+			long pos = size;
+			long packetOffset = 0;
+			if (packet != null && packet.length > 4) {
+				// TIFF offsets must be word aligned
+				pos += pos & 1;
+				packetOffset = pos;
+				XmpWriter.writeFully(ByteBuffer.wrap(packet), target, pos);
+				pos += packet.length;
+			}
+
+			int newCount = entryCount + (hasXmp() ? 0 : 1) - (packet == null ? 1 : 0);
+			ByteBuffer newIfd = ByteBuffer.allocate(2 + newCount * ENTRY_LENGTH + 4).order(order);
+			newIfd.putShort((short) newCount);
+			boolean written = packet == null;
+			for (int i = 0; i < entryCount; i++) {
+				int entry = i * ENTRY_LENGTH;
+				int tag = Short.toUnsignedInt(ifd.getShort(entry));
+				if (!written && tag >= XMP_TAG) {
+					putXmpEntry(newIfd, packet, packetOffset);
+					written = true;
+				}
+				if (tag != XMP_TAG) {
+					newIfd.put(ifd.array(), entry, ENTRY_LENGTH);
+				}
+			}
+			if (!written) {
+				putXmpEntry(newIfd, packet, packetOffset);
+			}
+			newIfd.putInt(ifd.getInt(entryCount * ENTRY_LENGTH));
+			newIfd.flip();
+
+			pos += pos & 1;
+			long newIfdOffset = pos;
+			if (newIfdOffset + newIfd.limit() > 0xFFFFFFFFL) {
+				throw new IOException("TIFF file would exceed 4 GB");
+			}
+			XmpWriter.writeFully(newIfd, target, newIfdOffset);
+			XmpWriter.writeFully(ByteBuffer.allocate(4).order(order).putInt(0, (int) newIfdOffset), target, 4);
+		}
+
+		/**
+		 * @return the length of the file without the old first IFD and the old
+		 *         packet if nothing follows them
+		 */
+		private long reusableEnd(long size) {
+			long end = size;
+			if (ifdOffset + 2 + entryCount * ENTRY_LENGTH + 4 == end) {
+				end = ifdOffset;
+				if (hasXmp() && xmpPacket.length > 4) {
+					long packetEnd = xmpPacketOffset + xmpPacket.length;
+					// a pad byte may align the IFD
+					if (packetEnd == end || packetEnd + 1 == end) {
+						end = xmpPacketOffset;
+					}
+				}
+			}
+			return end;
+		}
+
+		private void putXmpEntry(ByteBuffer newIfd, byte[] packet, long packetOffset) {
+			newIfd.putShort((short) XMP_TAG).putShort(TYPE_BYTE).putInt(packet.length);
+			if (packet.length <= 4) {
+				byte[] inline = new byte[4];
+				System.arraycopy(packet, 0, inline, 0, packet.length);
+				newIfd.put(inline);
+			} else {
+				newIfd.putInt((int) packetOffset);
+			}
+		}
+	}
+}
@@ -0,0 +1,194 @@
+package de.sk9.commons.imaging;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * XMP in the {@code XMP } chunk of a WebP file. The scan only reads chunk
+ * headers and the first bytes of the image chunk. A rewrite sets the XMP flag
+ * of the {@code VP8X} chunk, creating the chunk for simple lossy/lossless
+ * files, and places the new {@code XMP } chunk last.
+ */
+class WebpXmpFormat implements XmpFormat {
+	private static final int XMP_FLAG = 0x04;
+	private static final int ALPHA_FLAG = 0x10;
+
+	@Override
+	public String name() {
+		return "WebP";
+	}
+
+	@Override
+	public List<String> extensions() {
+		return List.of("webp");
+	}
+
+	@Override
+	public boolean matches(byte[] head) {
+		return head.length >= 12 && fourCc(head, 0).equals("RIFF") && fourCc(head, 8).equals("WEBP");
+	}
+
+	@Override
+	public XmpContainer scan(FileChannel channel) throws IOException {
+		long size = channel.size();
+		List<Chunk> chunks = new ArrayList<>();
+		Chunk xmp = null;
+		byte[] imageHeader = null;
+		ByteBuffer header = ByteBuffer.allocate(8).order(ByteOrder.LITTLE_ENDIAN);
+		long pos = 12;
+		while (pos + 8 <= size) {
+			header.clear();
+			XmpWriter.readFully(channel, header, pos);
+			Chunk chunk = new Chunk(fourCc(header.array(), 0), pos, Integer.toUnsignedLong(header.getInt(4)));
+			if (chunk.end() > size + 1) {
+				throw new IOException("truncated WebP chunk at offset " + pos);
+			}
+			chunks.add(chunk);
+			if (chunk.fourCc().equals("XMP ") && xmp == null) {
+				xmp = chunk;
+			} else if (imageHeader == null && (chunk.fourCc().equals("VP8 ") || chunk.fourCc().equals("VP8L"))) {
+				ByteBuffer image = ByteBuffer.allocate((int) Math.min(10, chunk.size()));
+				XmpWriter.readFully(channel, image, pos + 8);
+				imageHeader = image.array();
+			}
+			pos = chunk.end();
+		}
+		byte[] packet = null;
+		if (xmp != null) {
+			ByteBuffer data = ByteBuffer.allocate((int) xmp.size());
+			XmpWriter.readFully(channel, data, xmp.offset() + 8);
+			packet = data.array();
+		}
+		return new Container(chunks, xmp, packet, imageHeader);
+	}
+
+	private static String fourCc(byte[] bytes, int offset) {
+		return new String(bytes, offset, 4, StandardCharsets.US_ASCII);
+	}
+
+	private record Chunk(String fourCc, long offset, long size) {
+		/**
+		 * Chunks are padded to an even size.
+		 */
+		long end() {
+			return offset + 8 + size + (size & 1);
+		}
+	}
+
+	private record Container(List<Chunk> chunks, Chunk xmp, byte[] xmpPacket, byte[] imageHeader)
+			implements XmpContainer {
+
+		@Override
+		public boolean hasXmp() {
+			return xmp != null;
+		}
+
+		@Override
+		public long xmpPacketOffset() {
+			return xmp.offset() + 8;
+		}
+
+		@Override
+		public void rewrite(FileChannel source, byte[] packet, FileChannel target) throws IOException {
+			Chunk vp8x = chunks.stream().filter(c -> c.fourCc().equals("VP8X")).findFirst().orElse(null);
+			ByteBuffer extended;
+			if (vp8x != null) {
+				extended = ByteBuffer.allocate(18).order(ByteOrder.LITTLE_ENDIAN);
+				XmpWriter.readFully(source, extended, vp8x.offset());
+			} else if (packet != null) {
+				extended = createExtendedHeader();
+			} else {
+				extended = null;
+			}
+			if (extended != null) {
+				int flags = extended.get(8) & ~XMP_FLAG;
+				extended.put(8, (byte) (packet != null ? flags | XMP_FLAG : flags));
+			}
+
+			long riffSize = 4 + (extended != null ? extended.limit() : 0);
+			for (Chunk chunk : chunks) {
+				if (chunk != xmp && chunk != vp8x) {
+					riffSize += chunk.end() - chunk.offset();
+				}
+			}
+			ByteBuffer xmpChunk = null;
+			if (packet != null) {
+				xmpChunk = ByteBuffer.allocate(8 + packet.length + (packet.length & 1)).order(ByteOrder.LITTLE_ENDIAN);
+				xmpChunk.put("XMP ".getBytes(StandardCharsets.US_ASCII)).putInt(packet.length).put(packet);
+				xmpChunk.position(xmpChunk.capacity()).flip();
+				riffSize += xmpChunk.limit();
+			}
+			if (riffSize > 0xFFFFFFFFL) {
+				throw new IOException("WebP file would exceed 4 GB");
+			}
+
+			ByteBuffer riff = ByteBuffer.allocate(12).order(ByteOrder.LITTLE_ENDIAN);
+			riff.put("RIFF".getBytes(StandardCharsets.US_ASCII)).putInt((int) riffSize)
+					.put("WEBP".getBytes(StandardCharsets.US_ASCII)).flip();
+			XmpWriter.writeFully(riff, target);
+			if (extended != null) {
+				XmpWriter.writeFully(extended, target);
+			}
+			for (Chunk chunk : chunks) {
+				if (chunk != xmp && chunk != vp8x) {
+					long end = Math.min(chunk.end(), source.size());
+					XmpWriter.transferFully(source, chunk.offset(), end - chunk.offset(), target);
+					if (end < chunk.end()) {
+						// missing pad byte of the last chunk
+						XmpWriter.writeFully(ByteBuffer.allocate(1), target);
+					}
+				}
+			}
+			if (xmpChunk != null) {
+				XmpWriter.writeFully(xmpChunk, target);
+			}
+		}
+
+		/**
+		 * VP8X chunk for a simple file, with the canvas size taken from the
+		 * VP8/VP8L bitstream header.
+		 */
+		private ByteBuffer createExtendedHeader() throws IOException {
+			Chunk image = chunks.stream()
+					.filter(c -> c.fourCc().equals("VP8 ") || c.fourCc().equals("VP8L"))
+					.findFirst()
+					.orElseThrow(() -> new IOException("WebP file without image data"));
+			ByteBuffer bitstream = ByteBuffer.wrap(imageHeader).order(ByteOrder.LITTLE_ENDIAN);
+			int width;
+			int height;
+			int flags = 0;
+			if (image.fourCc().equals("VP8L")) {
+				if (imageHeader.length < 5 || imageHeader[0] != 0x2F) {
+					throw new IOException("invalid VP8L header");
+				}
+				int bits = bitstream.getInt(1);
+				width = (bits & 0x3FFF) + 1;
+				height = ((bits >>> 14) & 0x3FFF) + 1;
+				if ((bits & (1 << 28)) != 0) {
+					flags |= ALPHA_FLAG;
+				}
+			} else {
+				if (imageHeader.length < 10 || imageHeader[3] != (byte) 0x9D || imageHeader[4] != 0x01
+						|| imageHeader[5] != 0x2A) {
+					throw new IOException("invalid VP8 header");
+				}
+				width = bitstream.getShort(6) & 0x3FFF;
+				height = bitstream.getShort(8) & 0x3FFF;
+			}
+			ByteBuffer extended = ByteBuffer.allocate(18).order(ByteOrder.LITTLE_ENDIAN);
+			extended.put("VP8X".getBytes(StandardCharsets.US_ASCII)).putInt(10).put((byte) flags).put(new byte[3]);
+			putUInt24(extended, width - 1);
+			putUInt24(extended, height - 1);
+			return extended.flip();
+		}
+
+		private static void putUInt24(ByteBuffer buffer, int value) {
+			buffer.put((byte) value).put((byte) (value >>> 8)).put((byte) (value >>> 16));
+		}
+	}
+}
@@ -0,0 +1,249 @@
+package de.sk9.commons.imaging;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.AsynchronousFileChannel;
+import java.nio.channels.CompletionHandler;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+
+import com.adobe.internal.xmp.XMPMeta;
+
+import de.sk9.commons.imaging.ImagingMetrics.Stage;
+
+/**
+ * Non-blocking variants of {@link JpegXmpData#fromFile} and
+ * {@link JpegXmpData#replaceInFile}. The JPEG header is read with an
+ * {@link AsynchronousFileChannel}, growing the read until all segments up to
+ * SOS are in memory; parsing and serializing run on the given executor. Steps
+ * without an asynchronous file API - scanning other formats, rewriting a file
+ * and fsync - are handed to the executor as well. Futures fail with a
+ * {@link JpegXmpDataException}.
+ */
+public final class XmpAsync {
+	private static final int INITIAL_READ = 64 * 1024;
+
+	private XmpAsync() {
+	}
+
+	public static CompletableFuture<JpegXmpData> read(Path file, Executor executor) {
+		return counted(withChannel(file, channel -> header(file, channel, executor)
+				.thenApplyAsync(header -> {
+					try {
+						return JpegXmpData.fromPacket(header.xmpPacket());
+					} catch (Exception e) {
+						throw new CompletionException(new JpegXmpDataException(e));
+					}
+				}, executor), StandardOpenOption.READ));
+	}
+
+	/**
+	 * Writes in place through the asynchronous channel if the new packet fits
+	 * into the existing one, otherwise rewrites the file on the executor. The
+	 * rewrite starts after the channel is closed and reuses the scanned header.
+	 */
+	public static CompletableFuture<Void> write(Path file, JpegXmpData xmpData, Executor executor) {
+		return counted(withChannel(file, channel -> header(file, channel, executor)
+				.thenComposeAsync(header -> {
+					try {
+						XMPMeta xmpMeta = xmpData.meta();
+						byte[] packet = null;
+						if (xmpMeta != null && header instanceof JpegHeader && header.hasXmp()
+								&& XmpWriter.isWritableUtf8Packet(header.xmpPacket())) {
+							packet = XmpWriter.serializeExact(xmpMeta, header.xmpPacket().length);
+						}
+						if (packet == null) {
+							return CompletableFuture.completedFuture(new Rewrite(header, xmpMeta));
+						}
+						int length = packet.length;
+						long start = System.nanoTime();
+						return writeFully(channel, ByteBuffer.wrap(packet), header.xmpPacketOffset())
+								.thenRun(() -> {
+									ImagingMetrics.get().record(Stage.WRITE_IN_PLACE, start);
+									ImagingMetrics.get().writtenInPlace(length);
+									XmpSnapshotCache.written(file);
+								})
+								.thenRunAsync(() -> force(channel), executor)
+								.thenApply(v -> (Rewrite) null);
+					} catch (Exception e) {
+						throw new CompletionException(wrap(e));
+					}
+				}, executor), StandardOpenOption.READ, StandardOpenOption.WRITE)
+				.thenAcceptAsync(rewrite -> {
+					if (rewrite != null) {
+						rewrite(file, rewrite);
+					}
+				}, executor));
+	}
+
+	/**
+	 * A packet that does not fit in place, with the header it was checked
+	 * against.
+	 */
+	private record Rewrite(XmpContainer header, XMPMeta xmpMeta) {
+	}
+
+	private static void rewrite(Path file, Rewrite rewrite) {
+		try (FileChannel source = FileChannel.open(file, StandardOpenOption.READ)) {
+			XmpWriter.prepareRewrite(file, source, rewrite.header(), rewrite.xmpMeta()).commit();
+		} catch (Exception e) {
+			throw new CompletionException(wrap(e));
+		}
+	}
+
+	private static CompletableFuture<XmpContainer> header(Path file, AsynchronousFileChannel channel,
+			Executor executor) {
+		return read(channel, 0, INITIAL_READ).thenCompose(prefix -> {
+			try {
+				if (!new JpegXmpFormat().matches(head(prefix))) {
+					return CompletableFuture.supplyAsync(() -> {
+						try {
+							return XmpFormats.scan(file);
+						} catch (IOException e) {
+							throw new CompletionException(new JpegXmpDataException(e));
+						}
+					}, executor);
+				}
+				return jpegHeader(channel, prefix);
+			} catch (IOException e) {
+				throw new CompletionException(new JpegXmpDataException(e));
+			}
+		});
+	}
+
+	private static CompletableFuture<XmpContainer> jpegHeader(AsynchronousFileChannel channel, ByteBuffer prefix)
+			throws IOException {
+		try {
+			long start = System.nanoTime();
+			JpegHeader header = JpegSegmentScanner.scan(prefix, channel.size());
+			ImagingMetrics.get().record(Stage.SCAN, start);
+			return CompletableFuture.completedFuture(header);
+		} catch (JpegSegmentScanner.PrefixTooShortException e) {
+			int length = (int) Math.min(Integer.MAX_VALUE, Math.max(e.required(), 2L * prefix.limit()));
+			return read(channel, 0, length).thenCompose(larger -> {
+				try {
+					return jpegHeader(channel, larger);
+				} catch (IOException ex) {
+					throw new CompletionException(new JpegXmpDataException(ex));
+				}
+			});
+		}
+	}
+
+	private static byte[] head(ByteBuffer prefix) {
+		byte[] head = new byte[Math.min(XmpFormats.HEAD_LENGTH, prefix.limit())];
+		prefix.get(0, head);
+		return head;
+	}
+
+	/**
+	 * Reads up to {@code length} bytes, less at the end of the file.
+	 */
+	private static CompletableFuture<ByteBuffer> read(AsynchronousFileChannel channel, long position, int length) {
+		CompletableFuture<ByteBuffer> result = new CompletableFuture<>();
+		ByteBuffer buffer = ByteBuffer.allocate(length);
+		channel.read(buffer, position, buffer, new CompletionHandler<Integer, ByteBuffer>() {
+			@Override
+			public void completed(Integer read, ByteBuffer attachment) {
+				if (read < 0 || !attachment.hasRemaining()) {
+					result.complete(attachment.flip());
+				} else {
+					channel.read(attachment, position + attachment.position(), attachment, this);
+				}
+			}
+
+			@Override
+			public void failed(Throwable exc, ByteBuffer attachment) {
+				result.completeExceptionally(wrap(exc));
+			}
+		});
+		return result;
+	}
+
+	private static CompletableFuture<Void> writeFully(AsynchronousFileChannel channel, ByteBuffer buffer,
+			long position) {
+		CompletableFuture<Void> result = new CompletableFuture<>();
+		channel.write(buffer, position, buffer, new CompletionHandler<Integer, ByteBuffer>() {
+			@Override
+			public void completed(Integer written, ByteBuffer attachment) {
+				if (attachment.hasRemaining()) {
+					channel.write(attachment, position + attachment.position(), attachment, this);
+				} else {
+					result.complete(null);
+				}
+			}
+
+			@Override
+			public void failed(Throwable exc, ByteBuffer attachment) {
+				result.completeExceptionally(wrap(exc));
+			}
+		});
+		return result;
+	}
+
+	private static void force(AsynchronousFileChannel channel) {
+		try {
+			long start = System.nanoTime();
+			channel.force(true);
+			ImagingMetrics.get().record(Stage.SYNC, start);
+		} catch (IOException e) {
+			throw new CompletionException(new JpegXmpDataException(e));
+		}
+	}
+
+	private interface ChannelFunction<T> {
+		CompletableFuture<T> apply(AsynchronousFileChannel channel);
+	}
+
+	private static <T> CompletableFuture<T> withChannel(Path file, ChannelFunction<T> function,
+			StandardOpenOption... options) {
+		AsynchronousFileChannel channel;
+		try {
+			channel = AsynchronousFileChannel.open(file, options);
+		} catch (IOException e) {
+			return CompletableFuture.failedFuture(new JpegXmpDataException(e));
+		}
+		CompletableFuture<T> result;
+		try {
+			result = function.apply(channel);
+		} catch (RuntimeException e) {
+			result = CompletableFuture.failedFuture(e);
+		}
+		return result.whenComplete((value, error) -> {
+			try {
+				channel.close();
+			} catch (IOException e) {
+				// nothing was lost, the result is complete
+			}
+		}).exceptionallyCompose(error -> CompletableFuture.failedFuture(unwrap(error)));
+	}
+
+	/**
+	 * Counts the failure of a public operation once, with the unwrapped cause.
+	 */
+	private static <T> CompletableFuture<T> counted(CompletableFuture<T> future) {
+		return future.exceptionallyCompose(error -> {
+			Throwable cause = unwrap(error);
+			ImagingMetrics.get().error(cause);
+			return CompletableFuture.failedFuture(cause);
+		});
+	}
+
+	private static Throwable unwrap(Throwable error) {
+		return error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+	}
+
+	private static Throwable wrap(Throwable error) {
+		if (error instanceof JpegXmpDataException || error instanceof CompletionException) {
+			return error;
+		}
+		if (error instanceof Exception e) {
+			return new JpegXmpDataException(e);
+		}
+		return error;
+	}
+}
@@ -0,0 +1,204 @@
+package de.sk9.commons.imaging;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import com.adobe.internal.xmp.XMPException;
+import com.adobe.internal.xmp.XMPIterator;
+import com.adobe.internal.xmp.XMPMeta;
+import com.adobe.internal.xmp.options.IteratorOptions;
+import com.adobe.internal.xmp.options.PropertyOptions;
+import com.adobe.internal.xmp.properties.XMPProperty;
+import com.adobe.internal.xmp.properties.XMPPropertyInfo;
+
+/**
+ * Add/remove/replace operations on array properties, collected first and then
+ * applied with a single pass over each array. Later operations on the same
+ * value win, e.g. adding a value that was removed before re-adds it. A
+ * changeset can be applied to any number of {@link JpegXmpData} instances or
+ * files. Only {@link PropertyQualifier#array() array} properties can be
+ * changed.
+ */
+public class XmpChangeset {
+
+	private final Map<PropertyQualifier<?>, ArrayChange> changes = new LinkedHashMap<>();
+
+	private static class ArrayChange {
+		boolean replace;
+		final Set<String> add = new LinkedHashSet<>();
+		final Set<String> remove = new HashSet<>();
+	}
+
+	@SafeVarargs
+	public final <T> XmpChangeset add(PropertyQualifier<T> qualifier, T... values) {
+		return add(qualifier, Arrays.asList(values));
+	}
+
+	public <T> XmpChangeset add(PropertyQualifier<T> qualifier, Collection<T> values) {
+		ArrayChange change = change(qualifier);
+		for (T value : values) {
+			String string = qualifier.valueToString().apply(value);
+			change.remove.remove(string);
+			change.add.add(string);
+		}
+		return this;
+	}
+
+	@SafeVarargs
+	public final <T> XmpChangeset remove(PropertyQualifier<T> qualifier, T... values) {
+		return remove(qualifier, Arrays.asList(values));
+	}
+
+	public <T> XmpChangeset remove(PropertyQualifier<T> qualifier, Collection<T> values) {
+		ArrayChange change = change(qualifier);
+		for (T value : values) {
+			String string = qualifier.valueToString().apply(value);
+			change.add.remove(string);
+			change.remove.add(string);
+		}
+		return this;
+	}
+
+	@SafeVarargs
+	public final <T> XmpChangeset replace(PropertyQualifier<T> qualifier, T... values) {
+		return replace(qualifier, Arrays.asList(values));
+	}
+
+	public <T> XmpChangeset replace(PropertyQualifier<T> qualifier, Collection<T> values) {
+		ArrayChange change = change(qualifier);
+		change.replace = true;
+		change.add.clear();
+		change.remove.clear();
+		return add(qualifier, values);
+	}
+
+	public boolean isEmpty() {
+		return changes.isEmpty();
+	}
+
+	/**
+	 * Outcome of {@link XmpChangeset#applyTo(Collection)}.
+	 *
+	 * @param changed the files that were rewritten
+	 * @param failed  the files that could not be read or changed, they are left
+	 *                untouched
+	 */
+	public record Result(List<File> changed, Map<File, JpegXmpDataException> failed) {
+	}
+
+	/**
+	 * Reads, changes and rewrites all given files in one {@link JpegXmpBatch}.
+	 * Files that fail are collected in the result and skipped; the others are
+	 * still written.
+	 *
+	 * @throws JpegXmpDataException if committing the batch fails
+	 */
+	public Result applyTo(Collection<File> files) throws JpegXmpDataException {
+		List<File> changed = new ArrayList<>();
+		Map<File, JpegXmpDataException> failed = new LinkedHashMap<>();
+		try (JpegXmpBatch batch = new JpegXmpBatch()) {
+			for (File file : files) {
+				try {
+					if (batch.add(file, this)) {
+						changed.add(file);
+					}
+				} catch (JpegXmpDataException e) {
+					failed.put(file, e);
+				} catch (RuntimeException e) {
+					failed.put(file, new JpegXmpDataException(e));
+				}
+			}
+			batch.commit();
+		}
+		return new Result(List.copyOf(changed), Collections.unmodifiableMap(failed));
+	}
+
+	boolean addsValues() {
+		return changes.values().stream().anyMatch(c -> c.replace || !c.add.isEmpty());
+	}
+
+	/**
+	 * @return whether the metadata was modified
+	 */
+	boolean applyTo(XMPMeta xmpMeta) throws XMPException {
+		boolean modified = false;
+		PropertyOptions arrayOptions = new PropertyOptions(PropertyOptions.ARRAY);
+		PropertyOptions itemOptions = new PropertyOptions(PropertyOptions.NO_OPTIONS);
+		for (Map.Entry<PropertyQualifier<?>, ArrayChange> entry : changes.entrySet()) {
+			String namespace = entry.getKey().namespace();
+			String propertyName = entry.getKey().propertyName();
+			ArrayChange change = entry.getValue();
+			Set<String> existing = new HashSet<>();
+			if (change.replace) {
+				if (xmpMeta.doesPropertyExist(namespace, propertyName)) {
+					if (hasValues(xmpMeta, namespace, propertyName, change.add)) {
+						continue;
+					}
+					xmpMeta.deleteProperty(namespace, propertyName);
+					modified = true;
+				}
+			} else if (xmpMeta.doesPropertyExist(namespace, propertyName)) {
+				List<Integer> removed = new ArrayList<>();
+				XMPIterator iterator = xmpMeta.iterator(namespace, propertyName,
+						new IteratorOptions().setJustChildren(true).setOmitQualifiers(true));
+				for (int index = 1; iterator.hasNext(); index++) {
+					String value = ((XMPPropertyInfo) iterator.next()).getValue();
+					if (change.remove.contains(value)) {
+						removed.add(index);
+					} else {
+						existing.add(value);
+					}
+				}
+				for (int i = removed.size() - 1; i >= 0; i--) {
+					xmpMeta.deleteArrayItem(namespace, propertyName, removed.get(i));
+				}
+				modified |= !removed.isEmpty();
+			}
+			for (String value : change.add) {
+				if (!existing.contains(value)) {
+					xmpMeta.appendArrayItem(namespace, propertyName, arrayOptions, value, itemOptions);
+					modified = true;
+				}
+			}
+		}
+		return modified;
+	}
+
+	/**
+	 * @return whether the array holds exactly the values, in the same order if
+	 *         the array is ordered
+	 */
+	private static boolean hasValues(XMPMeta xmpMeta, String namespace, String propertyName, Set<String> values)
+			throws XMPException {
+		XMPProperty property = xmpMeta.getProperty(namespace, propertyName);
+		if (property == null || !property.getOptions().isArray()) {
+			return false;
+		}
+		List<String> existing = new ArrayList<>();
+		XMPIterator iterator = xmpMeta.iterator(namespace, propertyName,
+				new IteratorOptions().setJustChildren(true).setOmitQualifiers(true));
+		while (iterator.hasNext()) {
+			existing.add(((XMPPropertyInfo) iterator.next()).getValue());
+		}
+		if (property.getOptions().isArrayOrdered()) {
+			return existing.equals(new ArrayList<>(values));
+		}
+		return existing.size() == values.size() && new HashSet<>(existing).equals(values);
+	}
+
+	private ArrayChange change(PropertyQualifier<?> qualifier) {
+		if (!qualifier.array()) {
+			throw new IllegalArgumentException(qualifier.propertyName() + " is not an array property");
+		}
+		return changes.computeIfAbsent(qualifier, q -> new ArrayChange());
+	}
+}
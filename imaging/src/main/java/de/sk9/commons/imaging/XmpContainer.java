@@ -0,0 +1,45 @@
+package de.sk9.commons.imaging;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+
+/**
+ * The XMP packet of an image file as found by an {@link XmpFormat}, and the
+ * format specific part of writing a new one.
+ */
+public interface XmpContainer {
+
+	boolean hasXmp();
+
+	/**
+	 * @return the packet or {@code null} if the file has none
+	 */
+	byte[] xmpPacket();
+
+	long xmpPacketOffset();
+
+	default int maxPacketLength() {
+		return Integer.MAX_VALUE;
+	}
+
+	/**
+	 * @return whether the packet is stored verbatim at {@link #xmpPacketOffset()}
+	 *         and may be overwritten with one of the same length
+	 */
+	default boolean isPacketWritableInPlace() {
+		return hasXmp();
+	}
+
+	/**
+	 * Called after the packet was overwritten in place, e.g. to update a
+	 * checksum.
+	 */
+	default void packetUpdated(FileChannel channel) throws IOException {
+	}
+
+	/**
+	 * Writes a copy of the source with the packet replaced. A {@code null}
+	 * packet removes the XMP data.
+	 */
+	void rewrite(FileChannel source, byte[] packet, FileChannel target) throws IOException;
+}
@@ -0,0 +1,27 @@
+package de.sk9.commons.imaging;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.util.List;
+
+/**
+ * Locates the XMP packet in one image file format without decoding image
+ * data. Implementations are registered with {@link XmpFormats}.
+ */
+public interface XmpFormat {
+
+	String name();
+
+	/**
+	 * @return lower case file name extensions without dot
+	 */
+	List<String> extensions();
+
+	/**
+	 * @param head the first bytes of the file, at most
+	 *             {@link XmpFormats#HEAD_LENGTH}
+	 */
+	boolean matches(byte[] head);
+
+	XmpContainer scan(FileChannel channel) throws IOException;
+}
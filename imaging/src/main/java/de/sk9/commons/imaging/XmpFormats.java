@@ -0,0 +1,83 @@
+package de.sk9.commons.imaging;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import de.sk9.commons.imaging.ImagingMetrics.Stage;
+
+/**
+ * Registry of the supported {@link XmpFormat}s. The format of a file is
+ * detected from its first bytes; formats registered later take precedence.
+ */
+public final class XmpFormats {
+	public static final int HEAD_LENGTH = 16;
+
+	private static final List<XmpFormat> FORMATS = new CopyOnWriteArrayList<>(
+			List.of(new JpegXmpFormat(), new PngXmpFormat(), new TiffXmpFormat(), new WebpXmpFormat()));
+
+	private XmpFormats() {
+	}
+
+	public static void register(XmpFormat format) {
+		FORMATS.add(0, format);
+	}
+
+	public static List<XmpFormat> formats() {
+		return List.copyOf(FORMATS);
+	}
+
+	/**
+	 * A file is supported if it has the extension of a format or, failing that,
+	 * its first bytes are recognized like in {@link #scan(Path)}; so a misnamed
+	 * image is accepted, and only files of unknown type are opened.
+	 */
+	public static boolean isSupported(Path file) {
+		Path fileName = file.getFileName();
+		if (fileName == null) {
+			return false;
+		}
+		String name = fileName.toString().toLowerCase(Locale.ROOT);
+		String extension = name.substring(name.lastIndexOf('.') + 1);
+		if (FORMATS.stream().anyMatch(f -> f.extensions().contains(extension))) {
+			return true;
+		}
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			formatOf(channel);
+			return true;
+		} catch (IOException e) {
+			return false;
+		}
+	}
+
+	public static XmpContainer scan(Path file) throws IOException {
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			return scan(channel);
+		}
+	}
+
+	public static XmpContainer scan(FileChannel channel) throws IOException {
+		long start = System.nanoTime();
+		XmpContainer container = formatOf(channel).scan(channel);
+		ImagingMetrics.get().record(Stage.SCAN, start);
+		return container;
+	}
+
+	public static XmpFormat formatOf(FileChannel channel) throws IOException {
+		ByteBuffer buffer = ByteBuffer.allocate((int) Math.min(HEAD_LENGTH, channel.size()));
+		XmpWriter.readFully(channel, buffer, 0);
+		byte[] head = Arrays.copyOf(buffer.array(), buffer.limit());
+		for (XmpFormat format : FORMATS) {
+			if (format.matches(head)) {
+				return format;
+			}
+		}
+		throw new IOException("unsupported image format");
+	}
+}
@@ -0,0 +1,210 @@
+package de.sk9.commons.imaging;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.xml.namespace.QName;
+
+import com.adobe.internal.xmp.XMPDateTime;
+import com.adobe.internal.xmp.XMPDateTimeFactory;
+import com.adobe.internal.xmp.XMPException;
+import com.adobe.internal.xmp.XMPIterator;
+import com.adobe.internal.xmp.XMPMeta;
+import com.adobe.internal.xmp.XMPMetaFactory;
+import com.adobe.internal.xmp.options.IteratorOptions;
+import com.adobe.internal.xmp.properties.XMPProperty;
+import com.adobe.internal.xmp.properties.XMPPropertyInfo;
+
+/**
+ * A set of properties read together with
+ * {@link JpegXmpData#project(XmpProjection)}. Properties are declared as
+ * single values or arrays; a struct field is declared as a value whose
+ * property name is a path {@code ns:struct/ns:field}. The decoder for each
+ * property is chosen once when it is declared: strings are taken as they are,
+ * {@link Integer} values are trimmed and parsed like
+ * {@link JpegXmpData#IMAGE_RATING_QUALIFIER}, {@link XMPDateTime} values are
+ * parsed directly, other types go through
+ * {@link PropertyQualifier#stringToValue()}.
+ * <p>
+ * xmpcore only resolves registered prefixes, so declaring a property registers
+ * its namespace; if the prefix of the qualifier is already bound to another
+ * namespace, the prefix assigned by the registry is used instead.
+ */
+public class XmpProjection {
+
+	private final List<PropertyQualifier<?>> qualifiers = new ArrayList<>();
+	private final List<Slot> slots = new ArrayList<>();
+	private final Map<PropertyQualifier<?>, Integer> index = new HashMap<>();
+
+	private enum Codec {
+		STRING, INTEGER, DATE, QUALIFIER
+	}
+
+	/**
+	 * @param path  the property name with the registered prefix
+	 * @param field the struct field with the registered prefix, {@code null}
+	 *              for plain properties
+	 */
+	private record Slot(PropertyQualifier<?> qualifier, boolean array, Codec codec, String path, QName field) {
+	}
+
+	public XmpProjection value(PropertyQualifier<?> qualifier) {
+		return declare(qualifier, false);
+	}
+
+	public XmpProjection array(PropertyQualifier<?> qualifier) {
+		return declare(qualifier, true);
+	}
+
+	public List<PropertyQualifier<?>> qualifiers() {
+		return Collections.unmodifiableList(qualifiers);
+	}
+
+	int slot(PropertyQualifier<?> qualifier) {
+		Integer slot = index.get(qualifier);
+		if (slot == null) {
+			throw new IllegalArgumentException(qualifier.propertyName() + " is not part of the projection");
+		}
+		return slot;
+	}
+
+	XmpValues empty() {
+		return new XmpValues(this, new Object[slots.size()]);
+	}
+
+	XmpValues fromScan(Map<PropertyQualifier<?>, List<String>> scanned) {
+		Object[] values = new Object[slots.size()];
+		for (int i = 0; i < values.length; i++) {
+			Slot slot = slots.get(i);
+			List<String> strings = scanned.get(slot.qualifier());
+			if (strings != null) {
+				values[i] = decode(slot, strings);
+			}
+		}
+		return new XmpValues(this, values);
+	}
+
+	XmpValues fromMeta(XMPMeta xmpMeta) throws XMPException {
+		Object[] values = new Object[slots.size()];
+		for (int i = 0; i < values.length; i++) {
+			Slot slot = slots.get(i);
+			List<String> strings = read(xmpMeta, slot);
+			if (strings != null) {
+				values[i] = decode(slot, strings);
+			}
+		}
+		return new XmpValues(this, values);
+	}
+
+	private XmpProjection declare(PropertyQualifier<?> qualifier, boolean array) {
+		if (!index.containsKey(qualifier)) {
+			index.put(qualifier, slots.size());
+			qualifiers.add(qualifier);
+			slots.add(slot(qualifier, array));
+		}
+		return this;
+	}
+
+	private static Object decode(Slot slot, List<String> strings) {
+		if (!slot.array()) {
+			return strings.isEmpty() ? null : decode(slot, strings.get(0));
+		}
+		List<Object> decoded = new ArrayList<>(strings.size());
+		for (String string : strings) {
+			decoded.add(decode(slot, string));
+		}
+		return decoded;
+	}
+
+	private static Object decode(Slot slot, String string) {
+		return switch (slot.codec()) {
+		case STRING -> string;
+		case INTEGER -> Integer.valueOf(string.trim());
+		case DATE -> parseDate(string);
+		case QUALIFIER -> slot.qualifier().stringToValue().apply(string);
+		};
+	}
+
+	private static List<String> read(XMPMeta xmpMeta, Slot slot) throws XMPException {
+		String namespace = slot.qualifier().namespace();
+		String name = slot.path();
+		if (slot.field() != null) {
+			XMPProperty property = xmpMeta.getStructField(namespace, name, slot.field().getNamespaceURI(),
+					slot.field().getPrefix() + slot.field().getLocalPart());
+			return property == null ? null : List.of(property.getValue());
+		}
+		XMPProperty property = xmpMeta.getProperty(namespace, name);
+		if (property == null) {
+			return null;
+		} else if (property.getOptions().isArray()) {
+			List<String> items = new ArrayList<>();
+			XMPIterator iterator = xmpMeta.iterator(namespace, name,
+					new IteratorOptions().setJustChildren(true).setOmitQualifiers(true));
+			while (iterator.hasNext()) {
+				XMPPropertyInfo item = (XMPPropertyInfo) iterator.next();
+				if (item.getOptions().isSimple()) {
+					items.add(item.getValue());
+				}
+			}
+			return items;
+		} else if (property.getOptions().isStruct()) {
+			return Collections.emptyList();
+		} else {
+			return List.of(property.getValue());
+		}
+	}
+
+	private static Codec codec(PropertyQualifier<?> qualifier) {
+		if (qualifier.propertyType() == String.class) {
+			return Codec.STRING;
+		} else if (qualifier.propertyType() == Integer.class) {
+			return Codec.INTEGER;
+		} else if (qualifier.propertyType() == XMPDateTime.class) {
+			return Codec.DATE;
+		} else {
+			return Codec.QUALIFIER;
+		}
+	}
+
+	static XMPDateTime parseDate(String value) {
+		try {
+			return XMPDateTimeFactory.createFromISO8601(value);
+		} catch (XMPException e) {
+			throw new IllegalArgumentException("invalid date: " + value, e);
+		}
+	}
+
+	private static Slot slot(PropertyQualifier<?> qualifier, boolean array) {
+		String name = qualifier.propertyName();
+		int slash = name.indexOf('/');
+		String property = slash < 0 ? name : name.substring(0, slash);
+		String path = register(qualifier.namespace(), property) + localName(property);
+		QName field = XmpPropertyScanner.fieldName(qualifier);
+		if (field != null) {
+			String fieldPrefix = register(field.getNamespaceURI(), name.substring(slash + 1));
+			field = new QName(field.getNamespaceURI(), field.getLocalPart(), fieldPrefix);
+		}
+		return new Slot(qualifier, array, codec(qualifier), path, field);
+	}
+
+	/**
+	 * @return the prefix, including the colon, under which the namespace is
+	 *         registered
+	 */
+	private static String register(String namespace, String prefixedName) {
+		int colon = prefixedName.indexOf(':');
+		String suggested = colon > 0 ? prefixedName.substring(0, colon) : "ns";
+		try {
+			return XMPMetaFactory.getSchemaRegistry().registerNamespace(namespace, suggested);
+		} catch (XMPException e) {
+			throw new IllegalArgumentException("cannot register namespace " + namespace, e);
+		}
+	}
+
+	private static String localName(String prefixedName) {
+		return prefixedName.substring(prefixedName.indexOf(':') + 1);
+	}
+}
@@ -0,0 +1,265 @@
+package de.sk9.commons.imaging;
+
+import java.io.ByteArrayInputStream;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.xml.XMLConstants;
+import javax.xml.namespace.QName;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import com.adobe.internal.xmp.XMPMetaFactory;
+
+/**
+ * Pulls single properties out of a serialized XMP packet with a streaming
+ * parser instead of building the xmpcore tree. Understands the RDF forms XMP
+ * writers produce: properties as attributes of {@code rdf:Description},
+ * simple property elements, {@code rdf:resource} values and
+ * {@code rdf:Bag}/{@code rdf:Seq}/{@code rdf:Alt} arrays. Struct fields are
+ * addressed as {@code ns:struct/ns:field}; structs in arrays are skipped.
+ */
+final class XmpPropertyScanner {
+	static final String RDF_NS = "http://www.w3.org/1999/02/22-rdf-syntax-ns#";
+
+	// factories are not guaranteed to be thread-safe
+	private static final ThreadLocal<XMLInputFactory> FACTORY = ThreadLocal.withInitial(XmpPropertyScanner::createFactory);
+
+	private XmpPropertyScanner() {
+	}
+
+	/**
+	 * @return the values of all found properties, a single element list for
+	 *         simple properties; missing properties have no entry
+	 */
+	static Map<PropertyQualifier<?>, List<String>> scan(byte[] packet,
+			Collection<? extends PropertyQualifier<?>> qualifiers) throws XMLStreamException {
+		Map<QName, List<PropertyQualifier<?>>> wanted = new HashMap<>();
+		for (PropertyQualifier<?> qualifier : qualifiers) {
+			wanted.computeIfAbsent(qName(qualifier), q -> new ArrayList<>()).add(qualifier);
+		}
+		Map<PropertyQualifier<?>, List<String>> result = new HashMap<>();
+		XMLStreamReader reader = FACTORY.get().createXMLStreamReader(new ByteArrayInputStream(packet));
+		try {
+			while (reader.hasNext() && result.size() < qualifiers.size()) {
+				if (reader.next() == XMLStreamConstants.START_ELEMENT && isRdf(reader, "Description")) {
+					readDescription(reader, wanted, result);
+				}
+			}
+		} finally {
+			reader.close();
+		}
+		return result;
+	}
+
+	/**
+	 * @return the name of the top level property, for struct fields the name of
+	 *         the struct
+	 */
+	static QName qName(PropertyQualifier<?> qualifier) {
+		String name = qualifier.propertyName();
+		int slash = name.indexOf('/');
+		String property = slash < 0 ? name : name.substring(0, slash);
+		return new QName(qualifier.namespace(), property.substring(property.indexOf(':') + 1));
+	}
+
+	/**
+	 * @return the name of the struct field or {@code null} for plain properties
+	 */
+	static QName fieldName(PropertyQualifier<?> qualifier) {
+		String name = qualifier.propertyName();
+		int slash = name.indexOf('/');
+		if (slash < 0) {
+			return null;
+		}
+		String field = name.substring(slash + 1);
+		int colon = field.indexOf(':');
+		String namespace = colon < 0 ? null
+				: XMPMetaFactory.getSchemaRegistry().getNamespaceURI(field.substring(0, colon));
+		return new QName(namespace != null ? namespace : qualifier.namespace(), field.substring(colon + 1));
+	}
+
+	private static void readDescription(XMLStreamReader reader, Map<QName, List<PropertyQualifier<?>>> wanted,
+			Map<PropertyQualifier<?>, List<String>> result) throws XMLStreamException {
+		for (int i = 0; i < reader.getAttributeCount(); i++) {
+			List<PropertyQualifier<?>> matching = wanted.get(reader.getAttributeName(i));
+			if (matching != null) {
+				collect(new Value(List.of(reader.getAttributeValue(i)), Collections.emptyMap()), matching, result);
+			}
+		}
+		while (reader.hasNext()) {
+			int event = reader.next();
+			if (event == XMLStreamConstants.START_ELEMENT) {
+				List<PropertyQualifier<?>> matching = wanted.get(reader.getName());
+				if (matching != null) {
+					collect(readProperty(reader), matching, result);
+				} else {
+					skipElement(reader);
+				}
+			} else if (event == XMLStreamConstants.END_ELEMENT) {
+				return;
+			}
+		}
+	}
+
+	private static void collect(Value value, List<PropertyQualifier<?>> matching,
+			Map<PropertyQualifier<?>, List<String>> result) {
+		for (PropertyQualifier<?> qualifier : matching) {
+			QName field = fieldName(qualifier);
+			if (field == null) {
+				result.put(qualifier, value.items());
+			} else if (value.fields().containsKey(field)) {
+				result.put(qualifier, List.of(value.fields().get(field)));
+			}
+		}
+	}
+
+	private record Value(List<String> items, Map<QName, String> fields) {
+	}
+
+	private static Value readProperty(XMLStreamReader reader) throws XMLStreamException {
+		Map<QName, String> fields = new HashMap<>();
+		String resource = null;
+		for (int i = 0; i < reader.getAttributeCount(); i++) {
+			QName name = reader.getAttributeName(i);
+			if (RDF_NS.equals(name.getNamespaceURI())) {
+				if ("resource".equals(name.getLocalPart())) {
+					resource = reader.getAttributeValue(i);
+				} else if ("parseType".equals(name.getLocalPart())
+						&& "Resource".equals(reader.getAttributeValue(i))) {
+					readFields(reader, fields);
+					return new Value(Collections.emptyList(), fields);
+				}
+			} else if (!XMLConstants.XML_NS_URI.equals(name.getNamespaceURI())) {
+				fields.put(name, reader.getAttributeValue(i));
+			}
+		}
+		if (resource != null) {
+			skipElement(reader);
+			return new Value(List.of(resource), fields);
+		}
+		StringBuilder text = new StringBuilder();
+		List<String> items = null;
+		while (reader.hasNext()) {
+			int event = reader.next();
+			if (event == XMLStreamConstants.CHARACTERS || event == XMLStreamConstants.CDATA) {
+				text.append(reader.getText());
+			} else if (event == XMLStreamConstants.START_ELEMENT) {
+				if (isRdf(reader, "Bag") || isRdf(reader, "Seq") || isRdf(reader, "Alt")) {
+					items = readArray(reader);
+				} else if (isRdf(reader, "Description")) {
+					for (int i = 0; i < reader.getAttributeCount(); i++) {
+						if (!RDF_NS.equals(reader.getAttributeNamespace(i))) {
+							fields.put(reader.getAttributeName(i), reader.getAttributeValue(i));
+						}
+					}
+					readFields(reader, fields);
+				} else {
+					skipElement(reader);
+				}
+			} else if (event == XMLStreamConstants.END_ELEMENT) {
+				break;
+			}
+		}
+		if (items != null) {
+			return new Value(items, fields);
+		}
+		return new Value(fields.isEmpty() ? List.of(text.toString()) : Collections.emptyList(), fields);
+	}
+
+	private static void readFields(XMLStreamReader reader, Map<QName, String> fields) throws XMLStreamException {
+		while (reader.hasNext()) {
+			int event = reader.next();
+			if (event == XMLStreamConstants.START_ELEMENT) {
+				QName name = reader.getName();
+				String resource = reader.getAttributeValue(RDF_NS, "resource");
+				String text = readText(reader);
+				if (resource != null || text != null) {
+					fields.put(name, resource != null ? resource : text);
+				}
+			} else if (event == XMLStreamConstants.END_ELEMENT) {
+				return;
+			}
+		}
+	}
+
+	/**
+	 * @return the text content of the current element, {@code null} if it has
+	 *         child elements
+	 */
+	private static String readText(XMLStreamReader reader) throws XMLStreamException {
+		StringBuilder text = new StringBuilder();
+		boolean nested = false;
+		while (reader.hasNext()) {
+			int event = reader.next();
+			if (event == XMLStreamConstants.CHARACTERS || event == XMLStreamConstants.CDATA) {
+				text.append(reader.getText());
+			} else if (event == XMLStreamConstants.START_ELEMENT) {
+				nested = true;
+				skipElement(reader);
+			} else if (event == XMLStreamConstants.END_ELEMENT) {
+				break;
+			}
+		}
+		return nested ? null : text.toString();
+	}
+
+	private static List<String> readArray(XMLStreamReader reader) throws XMLStreamException {
+		List<String> items = new ArrayList<>();
+		while (reader.hasNext()) {
+			int event = reader.next();
+			if (event == XMLStreamConstants.START_ELEMENT) {
+				if (isRdf(reader, "li")) {
+					String item = readItem(reader);
+					if (item != null) {
+						items.add(item);
+					}
+				} else {
+					skipElement(reader);
+				}
+			} else if (event == XMLStreamConstants.END_ELEMENT) {
+				return items;
+			}
+		}
+		return items;
+	}
+
+	/**
+	 * @return the text of a simple item, {@code null} for struct items
+	 */
+	private static String readItem(XMLStreamReader reader) throws XMLStreamException {
+		String resource = reader.getAttributeValue(RDF_NS, "resource");
+		String text = readText(reader);
+		return resource != null ? resource : text;
+	}
+
+	private static void skipElement(XMLStreamReader reader) throws XMLStreamException {
+		int depth = 1;
+		while (depth > 0 && reader.hasNext()) {
+			int event = reader.next();
+			if (event == XMLStreamConstants.START_ELEMENT) {
+				depth++;
+			} else if (event == XMLStreamConstants.END_ELEMENT) {
+				depth--;
+			}
+		}
+	}
+
+	private static boolean isRdf(XMLStreamReader reader, String localName) {
+		return RDF_NS.equals(reader.getNamespaceURI()) && localName.equals(reader.getLocalName());
+	}
+
+	private static XMLInputFactory createFactory() {
+		XMLInputFactory factory = XMLInputFactory.newFactory();
+		factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+		factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+		factory.setProperty(XMLInputFactory.IS_COALESCING, true);
+		return factory;
+	}
+}
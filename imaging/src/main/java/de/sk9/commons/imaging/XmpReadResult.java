@@ -0,0 +1,14 @@
+package de.sk9.commons.imaging;
+
+import java.nio.file.Path;
+
+/**
+ * Outcome of reading one file in a bulk read. Exactly one of
+ * {@code xmpData} and {@code error} is set.
+ */
+public record XmpReadResult(Path path, JpegXmpData xmpData, JpegXmpDataException error) {
+
+	public boolean isSuccess() {
+		return error == null;
+	}
+}
@@ -0,0 +1,133 @@
+package de.sk9.commons.imaging;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import com.adobe.internal.xmp.XMPException;
+import com.adobe.internal.xmp.XMPIterator;
+import com.adobe.internal.xmp.XMPMeta;
+import com.adobe.internal.xmp.XMPMetaFactory;
+import com.adobe.internal.xmp.XMPUtils;
+import com.adobe.internal.xmp.options.PropertyOptions;
+import com.adobe.internal.xmp.options.SerializeOptions;
+import com.adobe.internal.xmp.properties.XMPPropertyInfo;
+
+/**
+ * Keeps XMP data in a {@code <image name>.xmp} file next to the image, e.g.
+ * {@code IMG_1.jpg.xmp}, so updates only write a small text file and leave the
+ * image untouched. Reading merges the packet embedded in the image with the
+ * sidecar, so a sidecar written by another tool with only some properties
+ * does not hide the embedded ones: top-level properties of the sidecar replace
+ * embedded ones, empty sidecar values delete them. Writing stores embedded
+ * properties that were removed as empty values, so deletions stick.
+ */
+public final class XmpSidecar {
+
+	private XmpSidecar() {
+	}
+
+	/**
+	 * The full image name is kept, so images differing only in the extension,
+	 * e.g. a JPEG and a PNG, get different sidecars.
+	 */
+	public static Path sidecarOf(Path image) {
+		return image.resolveSibling(image.getFileName() + ".xmp");
+	}
+
+	public static JpegXmpData read(File image) throws JpegXmpDataException {
+		JpegXmpData embedded = JpegXmpData.fromFile(image);
+		Path sidecar = sidecarOf(image.toPath());
+		if (!Files.isRegularFile(sidecar)) {
+			return embedded;
+		}
+		try {
+			XMPMeta sidecarMeta = XMPMetaFactory.parseFromBuffer(Files.readAllBytes(sidecar));
+			XMPMeta merged = embedded.meta();
+			if (merged == null) {
+				merged = XMPMetaFactory.create();
+			}
+			XMPUtils.appendProperties(sidecarMeta, merged, true, true, true);
+			return new JpegXmpData(merged);
+		} catch (JpegXmpDataException e) {
+			ImagingMetrics.get().error(e);
+			throw e;
+		} catch (XMPException | IOException | RuntimeException e) {
+			ImagingMetrics.get().error(e);
+			throw new JpegXmpDataException(e);
+		}
+	}
+
+	public static void write(File image, JpegXmpData xmpData) throws JpegXmpDataException {
+		try {
+			prepare(image, xmpData).commit();
+		} catch (JpegXmpDataException | RuntimeException e) {
+			ImagingMetrics.get().error(e);
+			throw e;
+		} catch (IOException e) {
+			ImagingMetrics.get().error(e);
+			throw new JpegXmpDataException(e);
+		}
+	}
+
+	/**
+	 * Writes the sidecar into a temp file that replaces the existing sidecar on
+	 * commit.
+	 */
+	static PendingXmpWrite prepare(File image, JpegXmpData xmpData) throws JpegXmpDataException {
+		Path sidecar = sidecarOf(image.toPath());
+		try {
+			XMPMeta xmpMeta = xmpData.meta();
+			XMPMeta written = xmpMeta != null ? (XMPMeta) xmpMeta.clone() : XMPMetaFactory.create();
+			XMPMeta embedded = JpegXmpData.fromFile(image).meta();
+			if (embedded != null) {
+				markRemoved(embedded, written);
+			}
+			byte[] packet = XMPMetaFactory.serializeToBuffer(written,
+					new SerializeOptions().setOmitPacketWrapper(true));
+			Path temp = XmpWriter.createSiblingTempFile(sidecar,
+					Files.exists(sidecar) ? sidecar : image.toPath());
+			try {
+				Files.write(temp, packet, StandardOpenOption.TRUNCATE_EXISTING);
+			} catch (IOException | RuntimeException e) {
+				Files.deleteIfExists(temp);
+				throw e;
+			}
+			return PendingXmpWrite.replace(sidecar, temp);
+		} catch (XMPException | IOException e) {
+			throw new JpegXmpDataException(e);
+		}
+	}
+
+	/**
+	 * Adds an empty value for every top-level embedded property missing in the
+	 * data to write, which deletes the embedded property when merging on read.
+	 */
+	private static void markRemoved(XMPMeta embedded, XMPMeta written) throws XMPException {
+		XMPIterator iterator = embedded.iterator();
+		while (iterator.hasNext()) {
+			XMPPropertyInfo property = (XMPPropertyInfo) iterator.next();
+			String path = property.getPath();
+			if (path == null || path.contains("/") || path.contains("[")) {
+				// schema node, field, item or qualifier
+				continue;
+			}
+			String namespace = property.getNamespace();
+			if (written.doesPropertyExist(namespace, path)) {
+				continue;
+			}
+			PropertyOptions options = property.getOptions();
+			if (options.isArray()) {
+				written.setProperty(namespace, path, null,
+						new PropertyOptions().setArray(true).setArrayOrdered(options.isArrayOrdered())
+								.setArrayAlternate(options.isArrayAlternate()).setArrayAltText(options.isArrayAltText()));
+			} else if (options.isStruct()) {
+				written.setProperty(namespace, path, null, new PropertyOptions().setStruct(true));
+			} else {
+				written.setProperty(namespace, path, "");
+			}
+		}
+	}
+}
@@ -0,0 +1,79 @@
+package de.sk9.commons.imaging;
+
+import java.io.File;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.xml.stream.XMLStreamException;
+
+/**
+ * Immutable XMP data of an image, safe to share between threads and to cache.
+ * Only the serialized packet and the pre-scanned keywords and rating are kept;
+ * {@link #edit()} hands out a new {@link JpegXmpData} that parses its own
+ * copy of the tree on the first change.
+ */
+public final class XmpSnapshot {
+	static final XmpSnapshot EMPTY = new XmpSnapshot(null, Collections.emptyMap());
+
+	private final byte[] packet;
+	private final Map<PropertyQualifier<?>, List<String>> scanned;
+
+	XmpSnapshot(byte[] packet, Map<PropertyQualifier<?>, List<String>> scanned) {
+		this.packet = packet;
+		Map<PropertyQualifier<?>, List<String>> copy = new HashMap<>();
+		scanned.forEach((qualifier, values) -> copy.put(qualifier, List.copyOf(values)));
+		this.scanned = Map.copyOf(copy);
+	}
+
+	public static XmpSnapshot fromFile(File file) throws JpegXmpDataException {
+		return JpegXmpData.fromFile(file).snapshot();
+	}
+
+	public boolean hasXmp() {
+		return packet != null;
+	}
+
+	public List<String> getKeywords() {
+		return scanned.getOrDefault(JpegXmpData.KEYWORD_QUALIFIER, Collections.emptyList());
+	}
+
+	public Integer getImageRating() {
+		List<String> values = scanned.get(JpegXmpData.IMAGE_RATING_QUALIFIER);
+		return values == null || values.isEmpty() ? null
+				: JpegXmpData.IMAGE_RATING_QUALIFIER.stringToValue().apply(values.get(0));
+	}
+
+	public XmpValues project(XmpProjection projection) throws JpegXmpDataException {
+		if (packet == null) {
+			return projection.empty();
+		}
+		try {
+			return projection.fromScan(XmpPropertyScanner.scan(packet, projection.qualifiers()));
+		} catch (XMLStreamException | IllegalArgumentException e) {
+			throw new JpegXmpDataException(e);
+		}
+	}
+
+	/**
+	 * @return mutable data starting from this snapshot, changes do not affect
+	 *         the snapshot
+	 */
+	public JpegXmpData edit() {
+		return packet == null ? new JpegXmpData() : new JpegXmpData(packet, scanned);
+	}
+
+	/**
+	 * @return a new snapshot with the changes applied
+	 */
+	public XmpSnapshot apply(XmpChangeset changeset) throws JpegXmpDataException {
+		JpegXmpData xmpData = edit();
+		return xmpData.apply(changeset) ? xmpData.snapshot() : this;
+	}
+
+	@Override
+	public String toString() {
+		return edit().toString();
+	}
+}
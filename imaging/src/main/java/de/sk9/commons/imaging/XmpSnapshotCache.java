@@ -0,0 +1,119 @@
+package de.sk9.commons.imaging;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bounded LRU cache of {@link XmpSnapshot}s. An entry is valid as long as the
+ * last-modified time, at the resolution of the file system, the size and the
+ * file key of the file are unchanged, so changed and replaced files are parsed
+ * again on the next access. Writes through this library invalidate the file in
+ * all caches, so in-place updates that keep the size are noticed even if the
+ * file system has a coarse timestamp resolution. Concurrent misses on the same
+ * file may parse it more than once; the last result wins.
+ */
+public class XmpSnapshotCache {
+	// guarded by itself
+	private static final Set<XmpSnapshotCache> CACHES = Collections.newSetFromMap(new WeakHashMap<>());
+
+	private final Map<Path, Entry> entries;
+	private final LongAdder hits = new LongAdder();
+	private final LongAdder misses = new LongAdder();
+
+	private record Entry(FileTime lastModified, long size, Object fileKey, XmpSnapshot snapshot) {
+
+		boolean isValid(BasicFileAttributes attrs) {
+			return lastModified.equals(attrs.lastModifiedTime()) && size == attrs.size()
+					&& Objects.equals(fileKey, attrs.fileKey());
+		}
+	}
+
+	@SuppressWarnings("serial")
+	public XmpSnapshotCache(int maxEntries) {
+		if (maxEntries <= 0) {
+			throw new IllegalArgumentException("maxEntries must be positive");
+		}
+		entries = new LinkedHashMap<>(16, 0.75f, true) {
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<Path, Entry> eldest) {
+				return size() > maxEntries;
+			}
+		};
+		synchronized (CACHES) {
+			CACHES.add(this);
+		}
+	}
+
+	/**
+	 * Invalidates the file in all caches, called after it was written.
+	 */
+	static void written(Path file) {
+		List<XmpSnapshotCache> caches;
+		synchronized (CACHES) {
+			caches = List.copyOf(CACHES);
+		}
+		caches.forEach(cache -> cache.invalidate(file));
+	}
+
+	public XmpSnapshot get(Path file) throws JpegXmpDataException {
+		file = file.toAbsolutePath().normalize();
+		BasicFileAttributes attrs;
+		try {
+			attrs = Files.readAttributes(file, BasicFileAttributes.class);
+		} catch (IOException e) {
+			invalidate(file);
+			ImagingMetrics.get().error(e);
+			throw new JpegXmpDataException(e);
+		}
+		synchronized (entries) {
+			Entry entry = entries.get(file);
+			if (entry != null && entry.isValid(attrs)) {
+				hits.increment();
+				return entry.snapshot();
+			}
+		}
+		misses.increment();
+		XmpSnapshot snapshot = XmpSnapshot.fromFile(file.toFile());
+		synchronized (entries) {
+			entries.put(file, new Entry(attrs.lastModifiedTime(), attrs.size(), attrs.fileKey(), snapshot));
+		}
+		return snapshot;
+	}
+
+	public void invalidate(Path file) {
+		synchronized (entries) {
+			entries.remove(file.toAbsolutePath().normalize());
+		}
+	}
+
+	public void clear() {
+		synchronized (entries) {
+			entries.clear();
+		}
+	}
+
+	public int size() {
+		synchronized (entries) {
+			return entries.size();
+		}
+	}
+
+	public long hits() {
+		return hits.sum();
+	}
+
+	public long misses() {
+		return misses.sum();
+	}
+}
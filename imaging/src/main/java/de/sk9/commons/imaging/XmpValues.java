@@ -0,0 +1,47 @@
+package de.sk9.commons.imaging;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Decoded values of an {@link XmpProjection}, one slot per declared property.
+ */
+public final class XmpValues {
+
+	private final XmpProjection projection;
+	private final Object[] values;
+
+	XmpValues(XmpProjection projection, Object[] values) {
+		this.projection = projection;
+		this.values = values;
+	}
+
+	public boolean contains(PropertyQualifier<?> qualifier) {
+		return values[projection.slot(qualifier)] != null;
+	}
+
+	/**
+	 * @return the value, for arrays the first item; {@code null} if missing
+	 */
+	public <T> T get(PropertyQualifier<T> qualifier) {
+		Object value = values[projection.slot(qualifier)];
+		if (value instanceof List<?> items) {
+			return items.isEmpty() ? null : qualifier.propertyType().cast(items.get(0));
+		}
+		return qualifier.propertyType().cast(value);
+	}
+
+	/**
+	 * @return the array items, a single element list for simple values
+	 */
+	@SuppressWarnings("unchecked")
+	public <T> List<T> getAll(PropertyQualifier<T> qualifier) {
+		Object value = values[projection.slot(qualifier)];
+		if (value == null) {
+			return Collections.emptyList();
+		} else if (value instanceof List<?> items) {
+			return (List<T>) items;
+		}
+		return List.of(qualifier.propertyType().cast(value));
+	}
+}
@@ -0,0 +1,252 @@
+package de.sk9.commons.imaging;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.PosixFileAttributeView;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import com.adobe.internal.xmp.XMPError;
+import com.adobe.internal.xmp.XMPException;
+import com.adobe.internal.xmp.XMPMeta;
+import com.adobe.internal.xmp.XMPMetaFactory;
+import com.adobe.internal.xmp.options.SerializeOptions;
+
+import de.sk9.commons.imaging.ImagingMetrics.Stage;
+
+/**
+ * Format independent part of XMP updates; where the packet lives and how a
+ * file is rewritten is up to the {@link XmpContainer} of the file.
+ */
+class XmpWriter {
+	private static Logger LOG = LogManager.getLogger(XmpWriter.class);
+
+	private static final byte[] READ_ONLY_TRAILER = "end=\"r\"".getBytes(StandardCharsets.US_ASCII);
+
+	private XmpWriter() {
+	}
+
+	/**
+	 * Writes the packet of {@code xmpMeta} into the file, in place if possible,
+	 * otherwise into a temp file in the same directory. A {@code null}
+	 * {@code xmpMeta} removes the XMP segment. Nothing is synced to disk yet.
+	 */
+	static PendingXmpWrite prepare(Path file, XMPMeta xmpMeta) throws IOException, XMPException {
+		if (xmpMeta != null && writeInPlace(file, xmpMeta)) {
+			return PendingXmpWrite.inPlace(file);
+		}
+		try (FileChannel source = FileChannel.open(file, StandardOpenOption.READ)) {
+			return prepareRewrite(file, source, XmpFormats.scan(source), xmpMeta);
+		}
+	}
+
+	/**
+	 * Like {@link #prepare(Path, XMPMeta)}, but leaves the file untouched: an
+	 * in-place update is only serialized and written by
+	 * {@link PendingXmpWrite#force()}.
+	 */
+	static PendingXmpWrite prepareDeferred(Path file, XMPMeta xmpMeta) throws IOException, XMPException {
+		try (FileChannel source = FileChannel.open(file, StandardOpenOption.READ)) {
+			XmpContainer container = XmpFormats.scan(source);
+			byte[] packet = xmpMeta == null ? null : inPlacePacket(file, container, xmpMeta);
+			if (packet != null) {
+				return PendingXmpWrite.deferredInPlace(file, container, packet);
+			}
+			return prepareRewrite(file, source, container, xmpMeta);
+		}
+	}
+
+	/**
+	 * Writes a rewritten copy of the already scanned {@code source} into a temp
+	 * file, without trying an in-place update.
+	 */
+	static PendingXmpWrite prepareRewrite(Path file, FileChannel source, XmpContainer container, XMPMeta xmpMeta)
+			throws IOException, XMPException {
+		byte[] packet = xmpMeta == null ? null : serialize(xmpMeta, container.maxPacketLength());
+		if (packet == null && !container.hasXmp()) {
+			return PendingXmpWrite.unchanged(file);
+		}
+		Path temp = createSiblingTempFile(file);
+		try (FileChannel target = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+			long start = System.nanoTime();
+			container.rewrite(source, packet, target);
+			ImagingMetrics.get().record(Stage.REWRITE, start);
+			ImagingMetrics.get().rewritten(target.size());
+		} catch (IOException | RuntimeException e) {
+			Files.deleteIfExists(temp);
+			throw e;
+		}
+		return PendingXmpWrite.replace(file, temp);
+	}
+
+	/**
+	 * The temp file must live on the same file system to be moved atomically. It
+	 * gets the permissions of the original, createTempFile would make it private.
+	 */
+	private static Path createSiblingTempFile(Path file) throws IOException {
+		return createSiblingTempFile(file, file);
+	}
+
+	static Path createSiblingTempFile(Path file, Path permissionsOf) throws IOException {
+		Path directory = file.toAbsolutePath().getParent();
+		Path temp = Files.createTempFile(directory, "." + file.getFileName() + ".", ".tmp");
+		if (FileSystems.getDefault().supportedFileAttributeViews().contains("posix")) {
+			try {
+				Files.getFileAttributeView(temp, PosixFileAttributeView.class)
+						.setPermissions(Files.getPosixFilePermissions(permissionsOf));
+			} catch (IOException | UnsupportedOperationException e) {
+				LOG.debug(() -> "could not copy permissions of " + permissionsOf + ", cause: " + e);
+			}
+		}
+		return temp;
+	}
+
+	/**
+	 * Overwrites the existing XMP packet if the new one fits into its padding.
+	 * Only the bytes of the packet are written.
+	 *
+	 * @return {@code false} if the file has no writable XMP packet or the new
+	 *         packet is too large, the file is untouched in that case
+	 */
+	static boolean writeInPlace(Path file, XMPMeta xmpMeta) throws IOException, XMPException {
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+			XmpContainer container = XmpFormats.scan(channel);
+			byte[] packet = inPlacePacket(file, container, xmpMeta);
+			if (packet == null) {
+				return false;
+			}
+			writePacket(file, channel, container, packet);
+			return true;
+		}
+	}
+
+	/**
+	 * @return the packet padded to the length of the existing one or
+	 *         {@code null} if it cannot be written in place
+	 */
+	static byte[] inPlacePacket(Path file, XmpContainer container, XMPMeta xmpMeta) throws XMPException {
+		if (!container.isPacketWritableInPlace() || !isWritableUtf8Packet(container.xmpPacket())) {
+			return null;
+		}
+		byte[] packet = serializeExact(xmpMeta, container.xmpPacket().length);
+		if (packet == null) {
+			LOG.debug(() -> "XMP packet of " + file + " has not enough padding for an in-place update");
+		}
+		return packet;
+	}
+
+	/**
+	 * Overwrites the packet of the container with one of the same length.
+	 */
+	static void writePacket(Path file, FileChannel channel, XmpContainer container, byte[] packet)
+			throws IOException {
+		long start = System.nanoTime();
+		writeFully(ByteBuffer.wrap(packet), channel, container.xmpPacketOffset());
+		container.packetUpdated(channel);
+		XmpSnapshotCache.written(file);
+		ImagingMetrics.get().record(Stage.WRITE_IN_PLACE, start);
+		ImagingMetrics.get().writtenInPlace(packet.length);
+	}
+
+	/**
+	 * Serializes with the default padding, so later updates can be done in place.
+	 * The padding is dropped if the packet would not fit into the container.
+	 */
+	static byte[] serialize(XMPMeta xmpMeta, int maxPacketLength) throws IOException, XMPException {
+		long start = System.nanoTime();
+		byte[] packet = XMPMetaFactory.serializeToBuffer(xmpMeta, new SerializeOptions());
+		if (packet.length > maxPacketLength) {
+			SerializeOptions options = new SerializeOptions();
+			options.setPadding(0);
+			packet = XMPMetaFactory.serializeToBuffer(xmpMeta, options);
+		}
+		ImagingMetrics.get().record(Stage.SERIALIZE, start);
+		if (packet.length > maxPacketLength) {
+			throw new IOException("XMP packet of " + packet.length + " bytes exceeds the maximum of "
+					+ maxPacketLength + " bytes");
+		}
+		return packet;
+	}
+
+	static void transferFully(FileChannel source, long position, long count, WritableByteChannel target)
+			throws IOException {
+		while (count > 0) {
+			long transferred = source.transferTo(position, count, target);
+			if (transferred <= 0) {
+				throw new IOException("unexpected end of file at offset " + position);
+			}
+			position += transferred;
+			count -= transferred;
+		}
+	}
+
+	static void writeFully(ByteBuffer buffer, WritableByteChannel target) throws IOException {
+		while (buffer.hasRemaining()) {
+			target.write(buffer);
+		}
+	}
+
+	static void writeFully(ByteBuffer buffer, FileChannel target, long position) throws IOException {
+		while (buffer.hasRemaining()) {
+			position += target.write(buffer, position);
+		}
+	}
+
+	static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+		while (buffer.hasRemaining()) {
+			int read = channel.read(buffer, position);
+			if (read < 0) {
+				throw new IOException("unexpected end of file at offset " + position);
+			}
+			position += read;
+		}
+		buffer.flip();
+	}
+
+	/**
+	 * @return the packet padded to exactly {@code packetLength} bytes or
+	 *         {@code null} if it does not fit
+	 */
+	static byte[] serializeExact(XMPMeta xmpMeta, int packetLength) throws XMPException {
+		SerializeOptions options = new SerializeOptions();
+		options.setExactPacketLength(true);
+		options.setPadding(packetLength);
+		long start = System.nanoTime();
+		try {
+			return XMPMetaFactory.serializeToBuffer(xmpMeta, options);
+		} catch (XMPException e) {
+			if (e.getErrorCode() == XMPError.BADSERIALIZE) {
+				return null;
+			}
+			throw e;
+		} finally {
+			ImagingMetrics.get().record(Stage.SERIALIZE, start);
+		}
+	}
+
+	static boolean isWritableUtf8Packet(byte[] packet) {
+		if (packet.length == 0 || (packet[0] != '<' && packet[0] != (byte) 0xEF)) {
+			return false;
+		}
+		// the trailer is the last processing instruction, e.g. <?xpacket end="w"?>
+		int from = Math.max(0, packet.length - 32);
+		for (int i = packet.length - READ_ONLY_TRAILER.length; i >= from; i--) {
+			int j = 0;
+			while (j < READ_ONLY_TRAILER.length && packet[i + j] == READ_ONLY_TRAILER[j]) {
+				j++;
+			}
+			if (j == READ_ONLY_TRAILER.length) {
+				return false;
+			}
+		}
+		return true;
+	}
+}
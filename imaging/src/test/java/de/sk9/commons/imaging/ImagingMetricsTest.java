@@ -0,0 +1,113 @@
+package de.sk9.commons.imaging;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.stream.IntStream;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.hamcrest.Matchers;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.adobe.internal.xmp.XMPError;
+import com.adobe.internal.xmp.XMPException;
+
+import de.sk9.commons.imaging.ImagingMetrics.Stage;
+
+class ImagingMetricsTest {
+	private final ImagingMetrics metrics = ImagingMetrics.get();
+
+	private Path testDir;
+
+	@BeforeEach
+	void beforeEach() throws IOException {
+		testDir = Files.createTempDirectory(ImagingMetricsTest.class.getSimpleName());
+	}
+
+	@Test
+	void testReadAndWrites() throws Exception {
+		File file = copy("adobe_lightroom.jpg");
+		long scans = metrics.count(Stage.SCAN);
+		long bytesRead = metrics.getBytesRead();
+		long inPlace = metrics.getInPlaceWrites();
+		long rewrites = metrics.getRewrites();
+		long bytesRewritten = metrics.getBytesRewritten();
+
+		JpegXmpData xmpData = JpegXmpData.fromFile(file);
+		xmpData.addKeywords("Foo");
+		xmpData.replaceInFile(file);
+		xmpData.addKeywords(IntStream.range(0, 500).mapToObj(i -> "Keyword number " + i).toArray(String[]::new));
+		xmpData.replaceInFile(file);
+
+		assertThat(metrics.count(Stage.SCAN), Matchers.greaterThanOrEqualTo(scans + 3));
+		assertThat(metrics.getBytesRead(), Matchers.greaterThan(bytesRead));
+		assertThat(metrics.getInPlaceWrites(), Matchers.is(inPlace + 1));
+		assertThat(metrics.getRewrites(), Matchers.is(rewrites + 1));
+		assertThat(metrics.getBytesRewritten(), Matchers.is(bytesRewritten + file.length()));
+		assertThat(metrics.count(Stage.SYNC), Matchers.greaterThanOrEqualTo(2L));
+		assertThat(metrics.nanos(Stage.PARSE), Matchers.greaterThan(0L));
+	}
+
+	@Test
+	void testErrorsByType() throws Exception {
+		Path file = testDir.resolve("broken.jpg");
+		Files.writeString(file, "not a jpeg");
+		long before = metrics.getErrors().getOrDefault(IOException.class.getName(), 0L);
+
+		assertThrows(JpegXmpDataException.class, () -> JpegXmpData.fromFile(file.toFile()));
+
+		assertThat(metrics.getErrors().get(IOException.class.getName()), Matchers.is(before + 1));
+	}
+
+	@Test
+	void testErrorsCountedPerOperation() throws Exception {
+		File file = copy("adobe_lightroom.jpg");
+		long errors = metrics.getErrorCount();
+
+		new JpegXmpDataException(new IOException());
+		new JpegXmpDataException(null, new XMPException("invalid", XMPError.BADXMP));
+		assertThat(metrics.getErrorCount(), Matchers.is(errors));
+
+		try (JpegXmpBatch batch = new JpegXmpBatch()) {
+			JpegXmpData xmpData = JpegXmpData.fromFile(file);
+			xmpData.addKeywords("Batch");
+			batch.add(file, xmpData);
+			JpegXmpData other = JpegXmpData.fromFile(file);
+			other.addKeywords("Other");
+			other.replaceInFile(file);
+
+			JpegXmpDataException e = assertThrows(JpegXmpDataException.class, batch::commit);
+			assertThat(e.getCause(), Matchers.instanceOf(IOException.class));
+		}
+		assertThat(metrics.getErrorCount(), Matchers.is(errors + 1));
+
+		Path notAJpeg = Files.writeString(testDir.resolve("broken.jpg"), "not a jpeg");
+		assertThrows(JpegXmpDataException.class, () -> JpegMetadata.fromFile(notAJpeg.toFile()));
+		assertThat(metrics.getErrorCount(), Matchers.is(errors + 2));
+	}
+
+	@Test
+	void testMBean() throws Exception {
+		ImagingMetrics.registerMBean();
+		ImagingMetrics.registerMBean();
+		MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+
+		Object rewrites = server.getAttribute(new ObjectName(ImagingMetrics.OBJECT_NAME), "Rewrites");
+
+		assertThat(rewrites, Matchers.is(metrics.getRewrites()));
+	}
+
+	private File copy(String resourceName) throws IOException {
+		Path copy = testDir.resolve(resourceName);
+		Files.copy(new File(getClass().getClassLoader().getResource(resourceName).getFile()).toPath(), copy);
+		return copy.toFile();
+	}
+}
@@ -0,0 +1,101 @@
+package de.sk9.commons.imaging;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+
+import java.awt.Dimension;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+
+import javax.imageio.ImageIO;
+
+import org.apache.commons.imaging.Imaging;
+import org.hamcrest.Matchers;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+class JpegMetadataTest {
+
+	@ParameterizedTest
+	@ValueSource(strings = { "no_xmp.jpg", "adobe_lightroom.jpg", "affinity_photo.jpg", "synology_photos.jpg",
+			"gimp_210.jpg" })
+	void testReadsExifAndXmpTogether(String resourceName) throws Exception {
+		File file = resource(resourceName);
+		Dimension size = Imaging.getImageSize(file);
+
+		JpegMetadata metadata = JpegMetadata.fromFile(file);
+
+		assertThat(metadata.exif().width(), Matchers.is(size.width));
+		assertThat(metadata.exif().height(), Matchers.is(size.height));
+		assertThat(metadata.xmp().getKeywords(), Matchers.is(JpegXmpData.fromFile(file).getKeywords()));
+	}
+
+	@ParameterizedTest
+	@ValueSource(strings = { "BIG_ENDIAN", "LITTLE_ENDIAN" })
+	void testExifValues(String byteOrder) throws Exception {
+		ByteOrder order = byteOrder.equals("BIG_ENDIAN") ? ByteOrder.BIG_ENDIAN : ByteOrder.LITTLE_ENDIAN;
+		Path file = jpegWithExif(exif(order));
+
+		JpegMetadata metadata = JpegMetadata.fromFile(file.toFile());
+
+		assertThat(metadata.exif(), Matchers.is(new ExifBasics(LocalDateTime.of(2021, 7, 4, 18, 30, 5), 6, 40, 30)));
+		assertThat(metadata.xmp().getKeywords(), Matchers.empty());
+	}
+
+	@Test
+	void testInvalidExifIsIgnored() throws Exception {
+		Path file = jpegWithExif("MM\0*garbage".getBytes(StandardCharsets.US_ASCII));
+
+		JpegMetadata metadata = JpegMetadata.fromFile(file.toFile());
+
+		assertThat(metadata.exif(), Matchers.is(new ExifBasics(null, null, 40, 30)));
+	}
+
+	/**
+	 * IFD0 with Orientation 6 and the Exif IFD with DateTimeOriginal.
+	 */
+	private static byte[] exif(ByteOrder order) {
+		ByteBuffer tiff = ByteBuffer.allocate(100).order(order);
+		tiff.put(order == ByteOrder.BIG_ENDIAN ? (byte) 'M' : (byte) 'I');
+		tiff.put(tiff.get(0)).putShort((short) 42).putInt(8);
+		// IFD0 at 8
+		tiff.putShort((short) 2);
+		tiff.putShort((short) ExifBasics.ORIENTATION).putShort((short) 3).putInt(1).putShort((short) 6).putShort((short) 0);
+		tiff.putShort((short) ExifBasics.EXIF_IFD_POINTER).putShort((short) 4).putInt(1).putInt(38);
+		tiff.putInt(0);
+		// Exif IFD at 38, value at 56
+		tiff.putShort((short) 1);
+		tiff.putShort((short) ExifBasics.DATE_TIME_ORIGINAL).putShort((short) 2).putInt(20).putInt(56);
+		tiff.putInt(0);
+		tiff.put("2021:07:04 18:30:05\0".getBytes(StandardCharsets.US_ASCII));
+		return tiff.array();
+	}
+
+	private static Path jpegWithExif(byte[] tiff) throws Exception {
+		ByteArrayOutputStream jpeg = new ByteArrayOutputStream();
+		ImageIO.write(new BufferedImage(40, 30, BufferedImage.TYPE_INT_RGB), "jpg", jpeg);
+		byte[] image = jpeg.toByteArray();
+		int length = 2 + JpegSegmentScanner.EXIF_IDENTIFIER.length + tiff.length;
+
+		Path file = Files.createTempFile(JpegMetadataTest.class.getSimpleName(), ".jpg");
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		out.write(image, 0, 2);
+		out.write(new byte[] { (byte) 0xFF, (byte) JpegSegmentScanner.APP1, (byte) (length >> 8), (byte) length });
+		out.write(JpegSegmentScanner.EXIF_IDENTIFIER);
+		out.write(tiff);
+		out.write(image, 2, image.length - 2);
+		Files.write(file, out.toByteArray());
+		return file;
+	}
+
+	private File resource(String resourceName) {
+		return new File(getClass().getClassLoader().getResource(resourceName).getFile());
+	}
+}
@@ -0,0 +1,96 @@
+package de.sk9.commons.imaging;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import org.apache.commons.imaging.common.bytesource.ByteSourceFile;
+import org.apache.commons.imaging.formats.jpeg.JpegImageParser;
+import org.apache.commons.imaging.formats.jpeg.JpegImagingParameters;
+import org.hamcrest.Matchers;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+class JpegSegmentScannerTest {
+
+	@ParameterizedTest
+	@ValueSource(strings = { "adobe_lightroom.jpg", "affinity_photo.jpg", "synology_photos.jpg", "gimp_210.jpg" })
+	void testXmpPacketMatchesImagingParser(String resourceName) throws Exception {
+		File file = resource(resourceName);
+		String expected = new JpegImageParser().getXmpXml(new ByteSourceFile(file), new JpegImagingParameters());
+
+		JpegHeader header = JpegSegmentScanner.scan(file.toPath());
+
+		assertThat(header.hasXmp(), Matchers.is(true));
+		assertThat(new String(header.xmpPacket(), StandardCharsets.UTF_8), Matchers.is(expected));
+	}
+
+	@Test
+	void testSegments() throws Exception {
+		JpegHeader header = JpegSegmentScanner.scan(resource("adobe_lightroom.jpg").toPath());
+
+		assertThat(header.xmpSegment(), Matchers.is(new JpegSegment(JpegSegmentScanner.APP1, 0x11ae, 10109)));
+		assertThat(header.scanOffset(), Matchers.is(0x3a44L));
+		assertThat(header.segments().get(header.segments().size() - 1).marker(), Matchers.is(JpegSegmentScanner.SOS));
+	}
+
+	@Test
+	void testNoXmp() throws Exception {
+		JpegHeader header = JpegSegmentScanner.scan(resource("no_xmp.jpg").toPath());
+
+		assertThat(header.hasXmp(), Matchers.is(false));
+		assertThat(header.xmpPacket(), Matchers.nullValue());
+	}
+
+	@Test
+	void testStopsAtScan() throws Exception {
+		// large image data must not be read; garbage after SOS is never looked at
+		Path file = Files.createTempFile("JpegSegmentScannerTest", ".jpg");
+		file.toFile().deleteOnExit();
+		byte[] template = Files.readAllBytes(resource("synology_photos.jpg").toPath());
+		byte[] large = Arrays.copyOf(template, 8 * 1024 * 1024);
+		Arrays.fill(large, template.length, large.length, (byte) 0xFF);
+		Files.write(file, large);
+
+		JpegHeader header = JpegSegmentScanner.scan(file);
+
+		assertThat(header.hasXmp(), Matchers.is(true));
+		assertThat(header.scanOffset(), Matchers.is(0xdb7L));
+	}
+
+	@Test
+	void testScanPrefix() throws Exception {
+		byte[] bytes = Files.readAllBytes(resource("adobe_lightroom.jpg").toPath());
+
+		JpegSegmentScanner.PrefixTooShortException tooShort = assertThrows(
+				JpegSegmentScanner.PrefixTooShortException.class,
+				() -> JpegSegmentScanner.scan(ByteBuffer.wrap(bytes, 0, 0x2000).slice(), bytes.length));
+		JpegHeader header = JpegSegmentScanner.scan(ByteBuffer.wrap(bytes, 0, 0x3a48).slice(), bytes.length);
+
+		JpegHeader expected = JpegSegmentScanner.scan(resource("adobe_lightroom.jpg").toPath());
+		assertThat(tooShort.required(), Matchers.greaterThan(0x2000L));
+		assertThat(header.segments(), Matchers.is(expected.segments()));
+		assertThat(header.xmpPacket(), Matchers.is(expected.xmpPacket()));
+	}
+
+	@Test
+	void testNotAJpeg() throws Exception {
+		Path file = Files.createTempFile("JpegSegmentScannerTest", ".txt");
+		file.toFile().deleteOnExit();
+		Files.writeString(file, "no jpeg");
+
+		assertThrows(IOException.class, () -> JpegSegmentScanner.scan(file));
+	}
+
+	private File resource(String resourceName) {
+		return new File(getClass().getClassLoader().getResource(resourceName).getFile());
+	}
+}
@@ -0,0 +1,133 @@
+package de.sk9.commons.imaging;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import org.hamcrest.Matchers;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class JpegXmpBatchTest {
+	private static final String[] RESOURCES = { "no_xmp.jpg", "adobe_lightroom.jpg", "affinity_photo.jpg",
+			"synology_photos.jpg", "gimp_210.jpg" };
+	private static final String[] MANY_KEYWORDS = IntStream.range(0, 200)
+			.mapToObj(i -> "Keyword number " + i).toArray(String[]::new);
+
+	private Path testDir;
+
+	@BeforeEach
+	void beforeEach() throws IOException {
+		testDir = Files.createTempDirectory(JpegXmpBatchTest.class.getSimpleName());
+	}
+
+	@Test
+	void testCommit() throws Exception {
+		List<File> files = copyResources();
+
+		try (JpegXmpBatch batch = new JpegXmpBatch()) {
+			for (File file : files) {
+				JpegXmpData xmpData = JpegXmpData.fromFile(file);
+				xmpData.addKeywords("Foo");
+				if (file.getName().startsWith("gimp")) {
+					xmpData.addKeywords(MANY_KEYWORDS);
+				}
+				batch.add(file, xmpData);
+			}
+			assertThat(batch.size(), Matchers.is(files.size()));
+			batch.commit();
+			assertThat(batch.size(), Matchers.is(0));
+		}
+
+		for (File file : files) {
+			assertThat(JpegXmpData.fromFile(file).getKeywords(), Matchers.hasItem("Foo"));
+		}
+		assertThat(listDir(), Matchers.is(files.size()));
+	}
+
+	@Test
+	void testCloseWithoutCommitDiscardsRewrites() throws Exception {
+		File file = copyResources().get(1);
+		long length = file.length();
+
+		try (JpegXmpBatch batch = new JpegXmpBatch()) {
+			JpegXmpData xmpData = JpegXmpData.fromFile(file);
+			xmpData.addKeywords(MANY_KEYWORDS);
+			batch.add(file, xmpData);
+		}
+
+		assertThat(file.length(), Matchers.is(length));
+		assertThat(JpegXmpData.fromFile(file).getKeywords(), Matchers.not(Matchers.hasItem(MANY_KEYWORDS[0])));
+		assertThat(listDir(), Matchers.is(RESOURCES.length));
+	}
+
+	@Test
+	void testCloseWithoutCommitLeavesInPlaceUpdatesUnwritten() throws Exception {
+		File file = copyResources().get(1);
+		byte[] original = Files.readAllBytes(file.toPath());
+
+		try (JpegXmpBatch batch = new JpegXmpBatch()) {
+			JpegXmpData xmpData = JpegXmpData.fromFile(file);
+			xmpData.addKeywords("Foo");
+			batch.add(file, xmpData);
+		}
+
+		assertThat(Files.readAllBytes(file.toPath()), Matchers.is(original));
+	}
+
+	@Test
+	void testRejectsDuplicateFile() throws Exception {
+		File file = copyResources().get(1);
+
+		try (JpegXmpBatch batch = new JpegXmpBatch()) {
+			batch.add(file, JpegXmpData.fromFile(file));
+			assertThrows(IllegalArgumentException.class,
+					() -> batch.add(new File(file.getParentFile(), "./" + file.getName()), JpegXmpData.fromFile(file)));
+			assertThat(batch.size(), Matchers.is(1));
+		}
+	}
+
+	@Test
+	void testCommitFailsIfFileChangedAfterAdd() throws Exception {
+		File file = copyResources().get(1);
+
+		try (JpegXmpBatch batch = new JpegXmpBatch()) {
+			JpegXmpData xmpData = JpegXmpData.fromFile(file);
+			xmpData.addKeywords("Foo");
+			batch.add(file, xmpData);
+
+			JpegXmpData concurrent = JpegXmpData.fromFile(file);
+			concurrent.addKeywords("Bar");
+			concurrent.replaceInFile(file);
+
+			assertThrows(JpegXmpDataException.class, batch::commit);
+		}
+		assertThat(JpegXmpData.fromFile(file).getKeywords(), Matchers.hasItem("Bar"));
+		assertThat(JpegXmpData.fromFile(file).getKeywords(), Matchers.not(Matchers.hasItem("Foo")));
+	}
+
+	private List<File> copyResources() throws IOException {
+		List<File> files = new ArrayList<>();
+		for (String resourceName : RESOURCES) {
+			File template = new File(getClass().getClassLoader().getResource(resourceName).getFile());
+			Path copy = testDir.resolve(resourceName);
+			Files.copy(template.toPath(), copy);
+			files.add(copy.toFile());
+		}
+		return files;
+	}
+
+	private int listDir() throws IOException {
+		try (Stream<Path> list = Files.list(testDir)) {
+			return (int) list.count();
+		}
+	}
+}
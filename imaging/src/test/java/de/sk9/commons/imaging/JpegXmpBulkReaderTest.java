@@ -0,0 +1,103 @@
+package de.sk9.commons.imaging;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assumptions.assumeFalse;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.hamcrest.Matchers;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class JpegXmpBulkReaderTest {
+	private static final String[] RESOURCES = { "no_xmp.jpg", "adobe_lightroom.jpg", "affinity_photo.jpg",
+			"synology_photos.jpg", "gimp_210.jpg" };
+
+	private Path testDir;
+
+	@BeforeEach
+	void beforeEach() throws IOException {
+		testDir = Files.createTempDirectory(JpegXmpBulkReaderTest.class.getSimpleName());
+		Path subDir = Files.createDirectory(testDir.resolve("sub"));
+		for (int i = 0; i < RESOURCES.length; i++) {
+			File template = new File(getClass().getClassLoader().getResource(RESOURCES[i]).getFile());
+			Files.copy(template.toPath(), (i % 2 == 0 ? testDir : subDir).resolve(RESOURCES[i]));
+		}
+		Files.writeString(subDir.resolve("broken.jpg"), "not a jpeg");
+		Files.writeString(testDir.resolve("notes.txt"), "ignored");
+	}
+
+	@Test
+	void testReadDirectory() throws Exception {
+		Map<Boolean, List<XmpReadResult>> results;
+		try (JpegXmpBulkReader reader = new JpegXmpBulkReader(2);
+				Stream<XmpReadResult> stream = reader.read(testDir)) {
+			results = stream.collect(Collectors.partitioningBy(XmpReadResult::isSuccess));
+		}
+
+		assertThat(results.get(true).size(), Matchers.is(RESOURCES.length));
+		assertThat(results.get(false).size(), Matchers.is(1));
+		XmpReadResult failed = results.get(false).get(0);
+		assertThat(failed.path().getFileName().toString(), Matchers.is("broken.jpg"));
+		assertThat(failed.error(), Matchers.notNullValue());
+
+		XmpReadResult lightroom = results.get(true).stream()
+				.filter(r -> r.path().getFileName().toString().equals("adobe_lightroom.jpg"))
+				.findFirst().orElseThrow();
+		assertThat(lightroom.xmpData().getKeywords(), Matchers.containsInAnyOrder("Adobe", "Lightroom"));
+	}
+
+	@Test
+	void testUnreadableDirectoryIsReportedPerFile() throws Exception {
+		Path locked = Files.createDirectory(testDir.resolve("locked"));
+		Files.setPosixFilePermissions(locked, PosixFilePermissions.fromString("---------"));
+		try {
+			assumeFalse(Files.isReadable(locked), "permissions are not enforced for this user");
+			List<XmpReadResult> results;
+			try (JpegXmpBulkReader reader = new JpegXmpBulkReader(2);
+					Stream<XmpReadResult> stream = reader.read(testDir)) {
+				results = stream.toList();
+			}
+
+			assertThat(results.size(), Matchers.is(RESOURCES.length + 2));
+			assertThat(results.stream().filter(r -> r.path().equals(locked)).findFirst().orElseThrow().error(),
+					Matchers.notNullValue());
+		} finally {
+			Files.setPosixFilePermissions(locked, PosixFilePermissions.fromString("rwx------"));
+		}
+	}
+
+	@Test
+	void testInterruptIsNotAnEndOfStream() throws Exception {
+		try (JpegXmpBulkReader reader = new JpegXmpBulkReader(2);
+				Stream<XmpReadResult> stream = reader.read(testDir)) {
+			Thread.currentThread().interrupt();
+			assertThrows(CancellationException.class, () -> stream.toList());
+			assertThat(Thread.interrupted(), Matchers.is(true));
+		}
+	}
+
+	@Test
+	void testForEach() throws Exception {
+		List<Path> files = Stream.of(RESOURCES).map(testDir::resolve).filter(Files::exists).toList();
+		List<XmpReadResult> results = new ArrayList<>();
+
+		try (JpegXmpBulkReader reader = new JpegXmpBulkReader()) {
+			reader.forEach(files.stream(), results::add);
+		}
+
+		assertThat(results.size(), Matchers.is(files.size()));
+		assertThat(results.stream().allMatch(XmpReadResult::isSuccess), Matchers.is(true));
+	}
+}
@@ -2,10 +2,14 @@ package de.sk9.commons.imaging;
 
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.empty;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 
 import java.io.File;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.stream.IntStream;
 import java.util.stream.Stream;
 
 import org.hamcrest.Matchers;
@@ -64,6 +68,69 @@ class JpegXmpDataTest {
 				Arguments.of("gimp_210.jpg", new String[] { "type=\"Bag\" Gimp, 2.10", "Foo", "Photo" }));
 	}
 
+	@ParameterizedTest
+	@MethodSource("provideDataForWriteKeywords")
+	void testWriteKeywordsInPlace(String resourceName, String... expectedKeywords) throws Exception {
+		File testFile = copyOfResource(resourceName);
+		byte[] before = Files.readAllBytes(testFile.toPath());
+		JpegHeader header = JpegSegmentScanner.scan(testFile.toPath());
+
+		JpegXmpData xmpData = JpegXmpData.fromFile(testFile);
+		xmpData.addKeywords(new String[] { "Foo", "Photo" });
+		xmpData.replaceInFile(testFile);
+
+		assertThat(JpegXmpData.fromFile(testFile).getKeywords(), Matchers.containsInAnyOrder(expectedKeywords));
+		if (header.hasXmp()) {
+			// nothing outside of the packet has been touched
+			byte[] after = Files.readAllBytes(testFile.toPath());
+			assertThat(after.length, Matchers.is(before.length));
+			int packetStart = (int) header.xmpPacketOffset();
+			int packetEnd = packetStart + header.xmpPacket().length;
+			assertThat(Arrays.equals(before, 0, packetStart, after, 0, packetStart), Matchers.is(true));
+			assertThat(Arrays.equals(before, packetEnd, before.length, after, packetEnd, after.length), Matchers.is(true));
+		}
+	}
+
+	@Test
+	void testWriteKeywordsExceedingPadding() throws Exception {
+		File testFile = copyOfResource("synology_photos.jpg");
+		byte[] before = Files.readAllBytes(testFile.toPath());
+		long imageDataBefore = JpegSegmentScanner.scan(testFile.toPath()).scanOffset();
+		String[] keywords = IntStream.range(0, 200).mapToObj(i -> "Keyword number " + i).toArray(String[]::new);
+
+		JpegXmpData xmpData = JpegXmpData.fromFile(testFile);
+		xmpData.addKeywords(keywords);
+		xmpData.replaceInFile(testFile);
+
+		assertThat(JpegXmpData.fromFile(testFile).getKeywords(), Matchers.hasItems(keywords));
+		// the image data is copied unchanged
+		byte[] after = Files.readAllBytes(testFile.toPath());
+		long imageDataAfter = JpegSegmentScanner.scan(testFile.toPath()).scanOffset();
+		assertThat(after.length - imageDataAfter, Matchers.is(before.length - imageDataBefore));
+		assertThat(Arrays.equals(before, (int) imageDataBefore, before.length,
+				after, (int) imageDataAfter, after.length), Matchers.is(true));
+	}
+
+	@ParameterizedTest
+	@MethodSource("provideResourceList")
+	void testRemoveXmpFromFile(String resourceName) throws Exception {
+		File testFile = copyOfResource(resourceName);
+
+		new JpegXmpData().replaceInFile(testFile);
+
+		assertThat(JpegSegmentScanner.scan(testFile.toPath()).hasXmp(), Matchers.is(false));
+		assertThat(JpegXmpData.fromFile(testFile).getKeywords(), Matchers.is(empty()));
+	}
+
+	private File copyOfResource(String resourceName) throws Exception {
+		ClassLoader classLoader = getClass().getClassLoader();
+		File templateFile = new File(classLoader.getResource(resourceName).getFile());
+		File testFile = File.createTempFile("JpegXmpDataTest", "jpg");
+		testFile.deleteOnExit();
+		Files.copy(templateFile.toPath(), testFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+		return testFile;
+	}
+
 	@Test
 	void testRemoveKeywordsWithDuplicates() throws JpegXmpDataException {
 		JpegXmpData xmpData = new JpegXmpData();
@@ -109,6 +176,18 @@ class JpegXmpDataTest {
 		assertThat(xmpData.getKeywords(), Matchers.is(empty()));
 	}
 
+	@Test
+	void testRemoveAllKeywordsOfInvalidXmp() throws Exception {
+		byte[] packet = ("<x:xmpmeta xmlns:x=\"adobe:ns:meta/\"><rdf:RDF"
+				+ " xmlns:rdf=\"http://www.w3.org/1999/02/22-rdf-syntax-ns#\"><rdf:Description rdf:about=\"\">"
+				+ "<rdf:li>not a property</rdf:li></rdf:Description></rdf:RDF></x:xmpmeta>")
+				.getBytes(StandardCharsets.UTF_8);
+		JpegXmpData xmpData = JpegXmpData.fromPacket(packet);
+
+		IllegalStateException e = assertThrows(IllegalStateException.class, xmpData::removeAllKeywords);
+		assertThat(e.getCause(), Matchers.instanceOf(JpegXmpDataException.class));
+	}
+
 	private static Stream<Arguments> provideResourceList() {
 		return Stream.of(
 				Arguments.of("no_xmp.jpg"),
@@ -0,0 +1,110 @@
+package de.sk9.commons.imaging;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.IntStream;
+
+import javax.imageio.ImageIO;
+
+import org.hamcrest.Matchers;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import de.sk9.commons.imaging.ImagingMetrics.Stage;
+
+class XmpAsyncTest {
+	private ExecutorService executor;
+	private Path testDir;
+
+	@BeforeEach
+	void beforeEach() throws Exception {
+		executor = Executors.newFixedThreadPool(2);
+		testDir = Files.createTempDirectory(XmpAsyncTest.class.getSimpleName());
+	}
+
+	@AfterEach
+	void afterEach() {
+		executor.shutdownNow();
+	}
+
+	@ParameterizedTest
+	@ValueSource(strings = { "no_xmp.jpg", "adobe_lightroom.jpg", "affinity_photo.jpg", "synology_photos.jpg",
+			"gimp_210.jpg" })
+	void testRead(String resourceName) throws Exception {
+		File file = resource(resourceName);
+
+		JpegXmpData xmpData = XmpAsync.read(file.toPath(), executor).get();
+
+		assertThat(xmpData.getKeywords(), Matchers.is(JpegXmpData.fromFile(file).getKeywords()));
+	}
+
+	@Test
+	void testWriteInPlaceAndRewrite() throws Exception {
+		Path file = copy("adobe_lightroom.jpg");
+		long length = Files.size(file);
+
+		JpegXmpData xmpData = XmpAsync.read(file, executor).get();
+		xmpData.addKeywords("Async");
+		long inPlace = ImagingMetrics.get().count(Stage.WRITE_IN_PLACE);
+		XmpAsync.write(file, xmpData, executor).get();
+		assertThat(Files.size(file), Matchers.is(length));
+		assertThat(ImagingMetrics.get().count(Stage.WRITE_IN_PLACE), Matchers.is(inPlace + 1));
+
+		// a header larger than the first read
+		String[] keywords = IntStream.range(0, 1200).mapToObj(i -> "Keyword number " + i).toArray(String[]::new);
+		xmpData.addKeywords(keywords);
+		long scans = ImagingMetrics.get().count(Stage.SCAN);
+		XmpAsync.write(file, xmpData, executor).get();
+		assertThat(Files.size(file), Matchers.greaterThan(64 * 1024L));
+		// the rewrite reuses the header scanned through the asynchronous channel
+		assertThat(ImagingMetrics.get().count(Stage.SCAN), Matchers.is(scans + 1));
+
+		JpegXmpData reread = XmpAsync.read(file, executor).get();
+		assertThat(reread.getKeywords(), Matchers.hasItems("Adobe", "Async", keywords[1199]));
+	}
+
+	@Test
+	void testOtherFormat() throws Exception {
+		Path file = testDir.resolve("image.png");
+		ImageIO.write(new BufferedImage(4, 4, BufferedImage.TYPE_INT_RGB), "png", file.toFile());
+		JpegXmpData xmpData = new JpegXmpData();
+		xmpData.addKeywords("Png");
+
+		XmpAsync.write(file, xmpData, executor).get();
+
+		assertThat(XmpAsync.read(file, executor).get().getKeywords(), Matchers.contains("Png"));
+	}
+
+	@Test
+	void testFailure() throws Exception {
+		Path file = testDir.resolve("broken.jpg");
+		Files.writeString(file, "not a jpeg");
+
+		ExecutionException e = assertThrows(ExecutionException.class, () -> XmpAsync.read(file, executor).get());
+		assertThat(e.getCause(), Matchers.instanceOf(JpegXmpDataException.class));
+		e = assertThrows(ExecutionException.class,
+				() -> XmpAsync.read(testDir.resolve("missing.jpg"), executor).get());
+		assertThat(e.getCause(), Matchers.instanceOf(JpegXmpDataException.class));
+	}
+
+	private File resource(String resourceName) {
+		return new File(getClass().getClassLoader().getResource(resourceName).getFile());
+	}
+
+	private Path copy(String resourceName) throws Exception {
+		Path copy = testDir.resolve(resourceName);
+		Files.copy(resource(resourceName).toPath(), copy);
+		return copy;
+	}
+}
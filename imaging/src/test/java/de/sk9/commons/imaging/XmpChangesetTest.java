@@ -0,0 +1,110 @@
+package de.sk9.commons.imaging;
+
+import static de.sk9.commons.imaging.JpegXmpData.KEYWORD_QUALIFIER;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.hamcrest.Matchers;
+import org.junit.jupiter.api.Test;
+
+class XmpChangesetTest {
+	private static final String[] RESOURCES = { "no_xmp.jpg", "adobe_lightroom.jpg", "affinity_photo.jpg",
+			"synology_photos.jpg", "gimp_210.jpg" };
+
+	@Test
+	void testApply() throws Exception {
+		JpegXmpData xmpData = new JpegXmpData();
+		xmpData.addKeywords("a", "b", "c", "d");
+
+		boolean modified = xmpData.apply(new XmpChangeset()
+				.remove(KEYWORD_QUALIFIER, "b", "d", "x")
+				.add(KEYWORD_QUALIFIER, "e", "a", "e")
+				.remove(KEYWORD_QUALIFIER, "e")
+				.add(KEYWORD_QUALIFIER, "d"));
+
+		assertThat(modified, Matchers.is(true));
+		assertThat(xmpData.getKeywords(), Matchers.contains("a", "c", "d"));
+		assertThat(xmpData.apply(new XmpChangeset().add(KEYWORD_QUALIFIER, "a").remove(KEYWORD_QUALIFIER, "b")),
+				Matchers.is(false));
+	}
+
+	@Test
+	void testReplace() throws Exception {
+		JpegXmpData xmpData = new JpegXmpData();
+		xmpData.addKeywords("a", "b");
+
+		xmpData.apply(new XmpChangeset().add(KEYWORD_QUALIFIER, "c").replace(KEYWORD_QUALIFIER, "x", "y")
+				.remove(KEYWORD_QUALIFIER, "y"));
+
+		assertThat(xmpData.getKeywords(), Matchers.contains("x"));
+	}
+
+	@Test
+	void testApplyToFiles() throws Exception {
+		List<File> files = copyResources();
+		XmpChangeset changeset = new XmpChangeset().add(KEYWORD_QUALIFIER, "Foo").remove(KEYWORD_QUALIFIER,
+				"Adobe", "Photos");
+
+		assertThat(changeset.applyTo(files).changed(), Matchers.is(files));
+		assertThat(changeset.applyTo(files).changed(), Matchers.empty());
+
+		for (File file : files) {
+			List<String> keywords = JpegXmpData.fromFile(file).getKeywords();
+			assertThat(keywords, Matchers.hasItem("Foo"));
+			assertThat(keywords, Matchers.not(Matchers.hasItems("Adobe", "Photos")));
+		}
+		assertThat(JpegXmpData.fromFile(files.get(1)).getKeywords(), Matchers.contains("Lightroom", "Foo"));
+	}
+
+	@Test
+	void testReplaceWithSameValuesDoesNotModify() throws Exception {
+		JpegXmpData xmpData = new JpegXmpData();
+		xmpData.addKeywords("a", "b");
+
+		assertThat(xmpData.apply(new XmpChangeset().replace(KEYWORD_QUALIFIER, "b", "a")), Matchers.is(false));
+		assertThat(xmpData.apply(new XmpChangeset().replace(KEYWORD_QUALIFIER, "a")), Matchers.is(true));
+		assertThat(xmpData.getKeywords(), Matchers.contains("a"));
+	}
+
+	@Test
+	void testRejectsNonArrayProperty() {
+		assertThrows(IllegalArgumentException.class,
+				() -> new XmpChangeset().replace(JpegXmpData.IMAGE_RATING_QUALIFIER, 5));
+	}
+
+	@Test
+	void testApplyToFilesCollectsFailures() throws Exception {
+		List<File> files = copyResources();
+		Path broken = files.get(0).toPath().resolveSibling("broken.jpg");
+		Files.writeString(broken, "not a jpeg");
+		List<File> all = new ArrayList<>(files);
+		all.add(1, broken.toFile());
+
+		XmpChangeset.Result result = new XmpChangeset().add(KEYWORD_QUALIFIER, "Foo").applyTo(all);
+
+		assertThat(result.changed(), Matchers.is(files));
+		assertThat(result.failed().keySet(), Matchers.contains(broken.toFile()));
+		for (File file : files) {
+			assertThat(JpegXmpData.fromFile(file).getKeywords(), Matchers.hasItem("Foo"));
+		}
+	}
+
+	private List<File> copyResources() throws IOException {
+		Path testDir = Files.createTempDirectory(XmpChangesetTest.class.getSimpleName());
+		List<File> files = new ArrayList<>();
+		for (String resourceName : RESOURCES) {
+			File template = new File(getClass().getClassLoader().getResource(resourceName).getFile());
+			Path copy = testDir.resolve(resourceName);
+			Files.copy(template.toPath(), copy);
+			files.add(copy.toFile());
+		}
+		return files;
+	}
+}
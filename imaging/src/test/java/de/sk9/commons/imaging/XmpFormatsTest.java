@@ -0,0 +1,188 @@
+package de.sk9.commons.imaging;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+import java.util.zip.DeflaterOutputStream;
+
+import javax.imageio.ImageIO;
+
+import org.apache.commons.imaging.Imaging;
+import org.hamcrest.Matchers;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+class XmpFormatsTest {
+	// 1x1 lossless WebP without VP8X chunk
+	private static final byte[] SIMPLE_WEBP = { 'R', 'I', 'F', 'F', 0x1A, 0, 0, 0, 'W', 'E', 'B', 'P', 'V', 'P',
+			'8', 'L', 0x0D, 0, 0, 0, 0x2F, 0, 0, 0, 0x10, 0x07, 0x10, 0x11, 0x11, (byte) 0x88, (byte) 0x88,
+			(byte) 0xFE, 0x07, 0 };
+
+	private Path testDir;
+
+	@BeforeEach
+	void beforeEach() throws IOException {
+		testDir = Files.createTempDirectory(XmpFormatsTest.class.getSimpleName());
+	}
+
+	@ParameterizedTest
+	@ValueSource(strings = { "png", "tiff" })
+	void testWriteAndReadWithImageIo(String format) throws Exception {
+		File file = testDir.resolve("image." + format).toFile();
+		ImageIO.write(new BufferedImage(16, 8, BufferedImage.TYPE_INT_RGB), format, file);
+
+		assertThat(JpegXmpData.fromFile(file).getKeywords(), Matchers.empty());
+		writeKeywords(file, "First");
+		long length = file.length();
+		writeKeywords(file, "Second");
+
+		assertThat(file.length(), Matchers.is(length));
+		assertThat(JpegXmpData.fromFile(file).getKeywords(), Matchers.contains("First", "Second"));
+		assertThat(Imaging.getXmpXml(file), Matchers.containsString("Second"));
+		BufferedImage image = ImageIO.read(file);
+		assertThat(image.getWidth(), Matchers.is(16));
+		assertThat(image.getHeight(), Matchers.is(8));
+		if (format.equals("png")) {
+			assertPngChecksums(file.toPath());
+		}
+
+		new JpegXmpData().replaceInFile(file);
+		assertThat(XmpFormats.scan(file.toPath()).hasXmp(), Matchers.is(false));
+		assertThat(ImageIO.read(file).getWidth(), Matchers.is(16));
+	}
+
+	@Test
+	void testCompressedPngPacket() throws Exception {
+		Path file = testDir.resolve("compressed.png");
+		ImageIO.write(new BufferedImage(4, 4, BufferedImage.TYPE_INT_RGB), "png", file.toFile());
+		JpegXmpData xmpData = new JpegXmpData();
+		xmpData.addKeywords("Deflated");
+		ByteArrayOutputStream deflated = new ByteArrayOutputStream();
+		try (DeflaterOutputStream out = new DeflaterOutputStream(deflated)) {
+			out.write(xmpData.toString().getBytes(StandardCharsets.UTF_8));
+		}
+		insertAfterIhdr(file, "iTXt", concat(PngXmpFormat.XMP_KEYWORD, new byte[] { 1, 0, 0, 0 },
+				deflated.toByteArray()));
+
+		assertThat(JpegXmpData.fromFile(file.toFile()).getKeywords(), Matchers.contains("Deflated"));
+		writeKeywords(file.toFile(), "Plain");
+
+		assertThat(JpegXmpData.fromFile(file.toFile()).getKeywords(), Matchers.contains("Deflated", "Plain"));
+		assertPngChecksums(file);
+	}
+
+	@Test
+	void testSimpleWebp() throws Exception {
+		File file = testDir.resolve("image.webp").toFile();
+		Files.write(file.toPath(), SIMPLE_WEBP);
+
+		writeKeywords(file, "WebP");
+		long length = file.length();
+		writeKeywords(file, "Again");
+
+		byte[] bytes = Files.readAllBytes(file.toPath());
+		ByteBuffer buffer = ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN);
+		assertThat(file.length(), Matchers.is(length));
+		assertThat(buffer.getInt(4), Matchers.is(bytes.length - 8));
+		assertThat(new String(bytes, 12, 4, StandardCharsets.US_ASCII), Matchers.is("VP8X"));
+		assertThat(bytes[20] & 0x04, Matchers.is(0x04));
+		// canvas 1x1, stored minus one
+		assertThat(buffer.getInt(24) & 0xFFFFFF, Matchers.is(0));
+		assertThat(JpegXmpData.fromFile(file).getKeywords(), Matchers.contains("WebP", "Again"));
+
+		new JpegXmpData().replaceInFile(file);
+		bytes = Files.readAllBytes(file.toPath());
+		assertThat(bytes[20] & 0x04, Matchers.is(0));
+		assertThat(ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN).getInt(4), Matchers.is(bytes.length - 8));
+		assertThat(XmpFormats.scan(file.toPath()).hasXmp(), Matchers.is(false));
+	}
+
+	@Test
+	void testTiffRewritesDoNotGrow() throws Exception {
+		File file = testDir.resolve("image.tiff").toFile();
+		ImageIO.write(new BufferedImage(16, 8, BufferedImage.TYPE_INT_RGB), "tiff", file);
+		String[] keywords = new String[200];
+		Arrays.setAll(keywords, i -> "Keyword" + i);
+
+		writeKeywords(file, keywords);
+		long length = file.length();
+		for (int i = 0; i < 3; i++) {
+			new JpegXmpData().replaceInFile(file);
+			writeKeywords(file, keywords);
+		}
+
+		assertThat(file.length(), Matchers.is(length));
+		assertThat(JpegXmpData.fromFile(file).getKeywords(), Matchers.hasSize(200));
+		assertThat(ImageIO.read(file).getWidth(), Matchers.is(16));
+	}
+
+	@Test
+	void testFormatDetection() throws Exception {
+		assertThat(XmpFormats.isSupported(Path.of("a.JPG")), Matchers.is(true));
+		assertThat(XmpFormats.isSupported(Path.of("a.dng")), Matchers.is(true));
+		assertThat(XmpFormats.isSupported(Path.of("a.txt")), Matchers.is(false));
+
+		Path misnamed = testDir.resolve("image.bin");
+		ImageIO.write(new BufferedImage(1, 1, BufferedImage.TYPE_INT_RGB), "png", misnamed.toFile());
+		assertThat(XmpFormats.isSupported(misnamed), Matchers.is(true));
+		Path notes = testDir.resolve("notes.txt");
+		Files.writeString(notes, "not an image");
+		assertThat(XmpFormats.isSupported(notes), Matchers.is(false));
+
+		Path text = testDir.resolve("image.png");
+		Files.writeString(text, "not an image");
+		assertThrows(IOException.class, () -> XmpFormats.scan(text));
+	}
+
+	private static void writeKeywords(File file, String... keywords) throws Exception {
+		JpegXmpData xmpData = JpegXmpData.fromFile(file);
+		xmpData.addKeywords(keywords);
+		xmpData.replaceInFile(file);
+	}
+
+	private static void assertPngChecksums(Path file) throws IOException {
+		ByteBuffer png = ByteBuffer.wrap(Files.readAllBytes(file));
+		int pos = PngXmpFormat.SIGNATURE.length;
+		while (pos < png.limit()) {
+			int length = png.getInt(pos);
+			CRC32 crc = new CRC32();
+			crc.update(png.array(), pos + 4, length + 4);
+			assertThat(png.getInt(pos + 8 + length), Matchers.is((int) crc.getValue()));
+			pos += 12 + length;
+		}
+	}
+
+	private static void insertAfterIhdr(Path file, String type, byte[] data) throws IOException {
+		byte[] png = Files.readAllBytes(file);
+		int ihdrEnd = PngXmpFormat.SIGNATURE.length + 12 + ByteBuffer.wrap(png).getInt(PngXmpFormat.SIGNATURE.length);
+		ByteBuffer chunk = ByteBuffer.allocate(12 + data.length);
+		chunk.putInt(data.length).put(type.getBytes(StandardCharsets.US_ASCII)).put(data);
+		CRC32 crc = new CRC32();
+		crc.update(chunk.array(), 4, 4 + data.length);
+		chunk.putInt((int) crc.getValue());
+		byte[] head = Arrays.copyOf(png, ihdrEnd);
+		byte[] tail = Arrays.copyOfRange(png, ihdrEnd, png.length);
+		Files.write(file, concat(head, chunk.array(), tail));
+	}
+
+	private static byte[] concat(byte[]... parts) {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		for (byte[] part : parts) {
+			out.writeBytes(part);
+		}
+		return out.toByteArray();
+	}
+}
@@ -0,0 +1,109 @@
+package de.sk9.commons.imaging;
+
+import static de.sk9.commons.imaging.JpegXmpData.CREATE_DATE_QUALIFIER;
+import static de.sk9.commons.imaging.JpegXmpData.HIERARCHICAL_SUBJECT_QUALIFIER;
+import static de.sk9.commons.imaging.JpegXmpData.IMAGE_RATING_QUALIFIER;
+import static de.sk9.commons.imaging.JpegXmpData.KEYWORD_QUALIFIER;
+import static de.sk9.commons.imaging.JpegXmpData.LABEL_QUALIFIER;
+import static de.sk9.commons.imaging.JpegXmpData.TITLE_QUALIFIER;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+import java.io.File;
+import java.util.List;
+import java.util.Map;
+
+import org.hamcrest.Matchers;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import com.adobe.internal.xmp.XMPConst;
+import com.adobe.internal.xmp.XMPDateTime;
+import com.adobe.internal.xmp.XMPMeta;
+import com.adobe.internal.xmp.XMPMetaFactory;
+import com.adobe.internal.xmp.options.PropertyOptions;
+
+class XmpProjectionTest {
+	private static final PropertyQualifier<String> CREATOR_EMAIL = new PropertyQualifier<>(
+			XMPConst.NS_IPTCCORE, "Iptc4xmpCore:CreatorContactInfo/Iptc4xmpCore:CiEmailWork",
+			String.class, s -> s, s -> s);
+
+	private static final XmpProjection PROJECTION = new XmpProjection()
+			.array(KEYWORD_QUALIFIER)
+			.value(IMAGE_RATING_QUALIFIER)
+			.value(LABEL_QUALIFIER)
+			.value(TITLE_QUALIFIER)
+			.array(HIERARCHICAL_SUBJECT_QUALIFIER)
+			.value(CREATE_DATE_QUALIFIER)
+			.value(CREATOR_EMAIL);
+
+	@ParameterizedTest
+	@ValueSource(strings = { "adobe_lightroom.jpg", "affinity_photo.jpg", "synology_photos.jpg", "gimp_210.jpg",
+			"no_xmp.jpg" })
+	void testProjectFile(String resourceName) throws Exception {
+		File file = new File(getClass().getClassLoader().getResource(resourceName).getFile());
+		JpegXmpData xmpData = JpegXmpData.fromFile(file);
+
+		XmpValues values = xmpData.project(PROJECTION);
+
+		assertThat(values.getAll(KEYWORD_QUALIFIER), Matchers.is(xmpData.getKeywords()));
+		assertThat(values.get(IMAGE_RATING_QUALIFIER), Matchers.is(xmpData.getImageRating()));
+	}
+
+	@Test
+	void testScanMatchesTree() throws Exception {
+		XMPMeta xmpMeta = XMPMetaFactory.create();
+		xmpMeta.appendArrayItem(XMPConst.NS_DC, "dc:subject", new PropertyOptions(PropertyOptions.ARRAY), "Tree",
+				null);
+		xmpMeta.setPropertyInteger(XMPConst.NS_XMP, "xmp:Rating", 4);
+		xmpMeta.setProperty(XMPConst.NS_XMP, "xmp:Label", "Red");
+		xmpMeta.setLocalizedText(XMPConst.NS_DC, "dc:title", "", XMPConst.X_DEFAULT, "A title");
+		xmpMeta.appendArrayItem(HIERARCHICAL_SUBJECT_QUALIFIER.namespace(), "lr:hierarchicalSubject",
+				new PropertyOptions(PropertyOptions.ARRAY), "Places|Europe", null);
+		xmpMeta.appendArrayItem(HIERARCHICAL_SUBJECT_QUALIFIER.namespace(), "lr:hierarchicalSubject",
+				new PropertyOptions(PropertyOptions.ARRAY), "Places|Asia", null);
+		xmpMeta.setProperty(XMPConst.NS_XMP, "xmp:CreateDate", "2022-03-31T11:14:39+02:00");
+		xmpMeta.setStructField(XMPConst.NS_IPTCCORE, "Iptc4xmpCore:CreatorContactInfo", XMPConst.NS_IPTCCORE,
+				"Iptc4xmpCore:CiEmailWork", "me@example.org");
+		byte[] packet = XMPMetaFactory.serializeToBuffer(xmpMeta, null);
+
+		XmpValues scanned = PROJECTION.fromScan(XmpPropertyScanner.scan(packet, PROJECTION.qualifiers()));
+		XmpValues tree = PROJECTION.fromMeta(XMPMetaFactory.parseFromBuffer(packet));
+
+		for (XmpValues values : new XmpValues[] { scanned, tree }) {
+			assertThat(values.getAll(KEYWORD_QUALIFIER), Matchers.contains("Tree"));
+			assertThat(values.get(IMAGE_RATING_QUALIFIER), Matchers.is(4));
+			assertThat(values.get(LABEL_QUALIFIER), Matchers.is("Red"));
+			assertThat(values.get(TITLE_QUALIFIER), Matchers.is("A title"));
+			assertThat(values.getAll(HIERARCHICAL_SUBJECT_QUALIFIER),
+					Matchers.contains("Places|Europe", "Places|Asia"));
+			XMPDateTime createDate = values.get(CREATE_DATE_QUALIFIER);
+			assertThat(createDate.getISO8601String(), Matchers.is("2022-03-31T11:14:39+02:00"));
+			assertThat(values.get(CREATOR_EMAIL), Matchers.is("me@example.org"));
+		}
+	}
+
+	@Test
+	void testPrefixBoundToOtherNamespace() throws Exception {
+		String taken = "http://example.org/taken/";
+		String mine = "http://example.org/mine/";
+		XMPMetaFactory.getSchemaRegistry().registerNamespace(taken, "projtest");
+		PropertyQualifier<String> qualifier = new PropertyQualifier<>(mine, "projtest:Prop", String.class, s -> s,
+				s -> s);
+		XmpProjection projection = new XmpProjection().value(qualifier);
+
+		XMPMeta xmpMeta = XMPMetaFactory.create();
+		String prefix = XMPMetaFactory.getSchemaRegistry().getNamespacePrefix(mine);
+		xmpMeta.setProperty(mine, prefix + "Prop", "mine");
+		xmpMeta.setProperty(taken, "projtest:Prop", "taken");
+
+		assertThat(projection.fromMeta(xmpMeta).get(qualifier), Matchers.is("mine"));
+	}
+
+	@Test
+	void testIntegerCodecMatchesQualifier() {
+		assertThat(IMAGE_RATING_QUALIFIER.stringToValue().apply(" 3 "), Matchers.is(3));
+		assertThat(PROJECTION.fromScan(Map.of(IMAGE_RATING_QUALIFIER, List.of(" 3 ")))
+				.get(IMAGE_RATING_QUALIFIER), Matchers.is(3));
+	}
+}
@@ -0,0 +1,83 @@
+package de.sk9.commons.imaging;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import org.hamcrest.Matchers;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import com.adobe.internal.xmp.XMPIterator;
+import com.adobe.internal.xmp.XMPMeta;
+import com.adobe.internal.xmp.XMPMetaFactory;
+import com.adobe.internal.xmp.options.IteratorOptions;
+import com.adobe.internal.xmp.properties.XMPProperty;
+import com.adobe.internal.xmp.properties.XMPPropertyInfo;
+
+class XmpPropertyScannerTest {
+	private static final PropertyQualifier<String> SUBJECT = new PropertyQualifier<>(
+			"http://purl.org/dc/elements/1.1/", "dc:subject", String.class, s -> s, s -> s);
+	private static final PropertyQualifier<String> RATING = new PropertyQualifier<>(
+			"http://ns.adobe.com/xap/1.0/", "xmp:Rating", String.class, s -> s, s -> s);
+	private static final PropertyQualifier<String> CREATOR_TOOL = new PropertyQualifier<>(
+			"http://ns.adobe.com/xap/1.0/", "xmp:CreatorTool", String.class, s -> s, s -> s);
+
+	@ParameterizedTest
+	@ValueSource(strings = { "adobe_lightroom.jpg", "affinity_photo.jpg", "synology_photos.jpg", "gimp_210.jpg" })
+	void testScanMatchesXmpCore(String resourceName) throws Exception {
+		File file = new File(getClass().getClassLoader().getResource(resourceName).getFile());
+		byte[] packet = JpegSegmentScanner.scan(file.toPath()).xmpPacket();
+		XMPMeta xmpMeta = XMPMetaFactory.parseFromBuffer(packet);
+
+		Map<PropertyQualifier<?>, List<String>> scanned = XmpPropertyScanner.scan(packet,
+				List.of(SUBJECT, RATING, CREATOR_TOOL));
+
+		assertThat(scanned.get(SUBJECT), Matchers.is(arrayItems(xmpMeta, SUBJECT)));
+		assertThat(scanned.get(RATING), Matchers.is(property(xmpMeta, RATING)));
+		assertThat(scanned.get(CREATOR_TOOL), Matchers.is(property(xmpMeta, CREATOR_TOOL)));
+	}
+
+	@Test
+	void testElementForms() throws Exception {
+		String packet = """
+				<x:xmpmeta xmlns:x="adobe:ns:meta/">
+				 <rdf:RDF xmlns:rdf="http://www.w3.org/1999/02/22-rdf-syntax-ns#">
+				  <rdf:Description rdf:about="" xmlns:xmp="http://ns.adobe.com/xap/1.0/">
+				   <xmp:Rating>4</xmp:Rating>
+				  </rdf:Description>
+				  <rdf:Description rdf:about="" xmlns:dc="http://purl.org/dc/elements/1.1/">
+				   <dc:subject><rdf:Seq><rdf:li>a &amp; b</rdf:li><rdf:li><![CDATA[<c>]]></rdf:li></rdf:Seq></dc:subject>
+				  </rdf:Description>
+				 </rdf:RDF>
+				</x:xmpmeta>
+				""";
+
+		Map<PropertyQualifier<?>, List<String>> scanned = XmpPropertyScanner
+				.scan(packet.getBytes(StandardCharsets.UTF_8), List.of(SUBJECT, RATING, CREATOR_TOOL));
+
+		assertThat(scanned.get(RATING), Matchers.contains("4"));
+		assertThat(scanned.get(SUBJECT), Matchers.contains("a & b", "<c>"));
+		assertThat(scanned.containsKey(CREATOR_TOOL), Matchers.is(false));
+	}
+
+	private static List<String> arrayItems(XMPMeta xmpMeta, PropertyQualifier<?> qualifier) throws Exception {
+		List<String> items = new ArrayList<>();
+		XMPIterator iterator = xmpMeta.iterator(qualifier.namespace(), qualifier.propertyName(),
+				new IteratorOptions().setJustChildren(true));
+		while (iterator.hasNext()) {
+			items.add(((XMPPropertyInfo) iterator.next()).getValue());
+		}
+		return items.isEmpty() ? null : items;
+	}
+
+	private static List<String> property(XMPMeta xmpMeta, PropertyQualifier<?> qualifier) throws Exception {
+		XMPProperty property = xmpMeta.getProperty(qualifier.namespace(), qualifier.propertyName());
+		return property == null ? null : List.of(property.getValue());
+	}
+}
@@ -0,0 +1,120 @@
+package de.sk9.commons.imaging;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.hamcrest.Matchers;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class XmpSidecarTest {
+	private Path testDir;
+
+	@BeforeEach
+	void beforeEach() throws Exception {
+		testDir = Files.createTempDirectory(XmpSidecarTest.class.getSimpleName());
+	}
+
+	@Test
+	void testSidecarOf() {
+		assertThat(XmpSidecar.sidecarOf(Path.of("a", "IMG_1.jpg")), Matchers.is(Path.of("a", "IMG_1.jpg.xmp")));
+		assertThat(XmpSidecar.sidecarOf(Path.of("a", "IMG_1.png")), Matchers.is(Path.of("a", "IMG_1.png.xmp")));
+		assertThat(XmpSidecar.sidecarOf(Path.of("noext")), Matchers.is(Path.of("noext.xmp")));
+	}
+
+	@Test
+	void testWriteAndRead() throws Exception {
+		File template = resource("adobe_lightroom.jpg");
+		File image = copy(template);
+
+		JpegXmpData xmpData = XmpSidecar.read(image);
+		assertThat(xmpData.getKeywords(), Matchers.containsInAnyOrder("Adobe", "Lightroom"));
+		xmpData.replaceKeywords("Sidecar");
+		XmpSidecar.write(image, xmpData);
+
+		assertThat(Files.mismatch(template.toPath(), image.toPath()), Matchers.is(-1L));
+		assertThat(Files.isRegularFile(testDir.resolve("adobe_lightroom.jpg.xmp")), Matchers.is(true));
+
+		JpegXmpData fromSidecar = XmpSidecar.read(image);
+		assertThat(fromSidecar.getKeywords(), Matchers.contains("Sidecar"));
+		assertThat(fromSidecar.getImageRating(), Matchers.is(3));
+		assertThat(JpegXmpData.fromFile(image).getKeywords(), Matchers.containsInAnyOrder("Adobe", "Lightroom"));
+	}
+
+	@Test
+	void testDeletionSticks() throws Exception {
+		File image = copy(resource("adobe_lightroom.jpg"));
+
+		JpegXmpData xmpData = XmpSidecar.read(image);
+		xmpData.removeAllKeywords();
+		XmpSidecar.write(image, xmpData);
+
+		JpegXmpData reread = XmpSidecar.read(image);
+		assertThat(reread.getKeywords(), Matchers.empty());
+		assertThat(reread.getImageRating(), Matchers.is(3));
+
+		reread.replaceKeywords();
+		XmpSidecar.write(image, reread);
+		assertThat(XmpSidecar.read(image).getKeywords(), Matchers.empty());
+	}
+
+	@Test
+	void testSidecarOverridesEmbeddedValue() throws Exception {
+		File image = copy(resource("synology_photos.jpg"));
+		Files.writeString(testDir.resolve("synology_photos.jpg.xmp"), """
+				<x:xmpmeta xmlns:x="adobe:ns:meta/">
+				 <rdf:RDF xmlns:rdf="http://www.w3.org/1999/02/22-rdf-syntax-ns#">
+				  <rdf:Description rdf:about="" xmlns:xmp="http://ns.adobe.com/xap/1.0/" xmp:Rating="5"/>
+				 </rdf:RDF>
+				</x:xmpmeta>
+				""");
+
+		JpegXmpData merged = XmpSidecar.read(image);
+
+		assertThat(merged.getImageRating(), Matchers.is(5));
+		assertThat(merged.getKeywords(), Matchers.containsInAnyOrder("Synology", "Photos"));
+	}
+
+	@Test
+	void testRemovedRatingSticks() throws Exception {
+		File image = copy(resource("adobe_lightroom.jpg"));
+
+		JpegXmpData xmpData = XmpSidecar.read(image);
+		xmpData.removeAllXmpArrayValues(JpegXmpData.IMAGE_RATING_QUALIFIER);
+		XmpSidecar.write(image, xmpData);
+
+		JpegXmpData reread = XmpSidecar.read(image);
+		assertThat(reread.getImageRating(), Matchers.nullValue());
+		assertThat(reread.getKeywords(), Matchers.containsInAnyOrder("Adobe", "Lightroom"));
+	}
+
+	@Test
+	void testBatchWithoutEmbeddedXmp() throws Exception {
+		File image = copy(resource("no_xmp.jpg"));
+
+		try (JpegXmpBatch batch = new JpegXmpBatch()) {
+			JpegXmpData xmpData = XmpSidecar.read(image);
+			xmpData.addKeywords("Foo");
+			batch.addSidecar(image, xmpData);
+			batch.commit();
+		}
+
+		assertThat(XmpSidecar.read(image).getKeywords(), Matchers.contains("Foo"));
+		try (var files = Files.list(testDir)) {
+			assertThat(files.count(), Matchers.is(2L));
+		}
+	}
+
+	private File resource(String resourceName) {
+		return new File(getClass().getClassLoader().getResource(resourceName).getFile());
+	}
+
+	private File copy(File template) throws Exception {
+		Path copy = testDir.resolve(template.getName());
+		Files.copy(template.toPath(), copy);
+		return copy.toFile();
+	}
+}
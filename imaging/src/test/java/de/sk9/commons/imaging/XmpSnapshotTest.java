@@ -0,0 +1,102 @@
+package de.sk9.commons.imaging;
+
+import static de.sk9.commons.imaging.JpegXmpData.KEYWORD_QUALIFIER;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.hamcrest.Matchers;
+import org.junit.jupiter.api.Test;
+
+class XmpSnapshotTest {
+
+	@Test
+	void testEditDoesNotChangeSnapshot() throws Exception {
+		XmpSnapshot snapshot = XmpSnapshot.fromFile(resource("adobe_lightroom.jpg"));
+
+		JpegXmpData xmpData = snapshot.edit();
+		xmpData.addKeywords("Edited");
+		XmpSnapshot changed = snapshot.apply(new XmpChangeset().remove(KEYWORD_QUALIFIER, "Adobe"));
+
+		assertThat(xmpData.getKeywords(), Matchers.contains("Adobe", "Lightroom", "Edited"));
+		assertThat(changed.getKeywords(), Matchers.contains("Lightroom"));
+		assertThat(changed.getImageRating(), Matchers.is(3));
+		assertThat(snapshot.getKeywords(), Matchers.contains("Adobe", "Lightroom"));
+		assertThat(snapshot.apply(new XmpChangeset().add(KEYWORD_QUALIFIER, "Adobe")),
+				Matchers.sameInstance(snapshot));
+	}
+
+	@Test
+	void testEmptySnapshot() throws Exception {
+		XmpSnapshot snapshot = XmpSnapshot.fromFile(resource("no_xmp.jpg"));
+
+		assertThat(snapshot.hasXmp(), Matchers.is(false));
+		assertThat(snapshot.getKeywords(), Matchers.empty());
+		assertThat(snapshot.getImageRating(), Matchers.nullValue());
+		assertThat(snapshot.apply(new XmpChangeset().add(KEYWORD_QUALIFIER, "New")).getKeywords(),
+				Matchers.contains("New"));
+	}
+
+	@Test
+	void testConcurrentReads() throws Exception {
+		XmpSnapshot snapshot = XmpSnapshot.fromFile(resource("synology_photos.jpg"));
+		XmpProjection projection = new XmpProjection().array(KEYWORD_QUALIFIER);
+		ExecutorService executor = Executors.newFixedThreadPool(8);
+		try {
+			List<Future<List<String>>> results = new ArrayList<>();
+			for (int i = 0; i < 64; i++) {
+				results.add(executor.submit(() -> snapshot.project(projection).getAll(KEYWORD_QUALIFIER)));
+			}
+			for (Future<List<String>> result : results) {
+				assertThat(result.get(), Matchers.contains("Synology", "Photos"));
+			}
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+	@Test
+	void testCache() throws Exception {
+		Path testDir = Files.createTempDirectory(XmpSnapshotTest.class.getSimpleName());
+		Path lightroom = testDir.resolve("adobe_lightroom.jpg");
+		Path gimp = testDir.resolve("gimp_210.jpg");
+		Files.copy(resource("adobe_lightroom.jpg").toPath(), lightroom);
+		Files.copy(resource("gimp_210.jpg").toPath(), gimp);
+		XmpSnapshotCache cache = new XmpSnapshotCache(1);
+
+		XmpSnapshot first = cache.get(lightroom);
+		assertThat(cache.get(lightroom), Matchers.sameInstance(first));
+		assertThat(cache.hits(), Matchers.is(1L));
+
+		JpegXmpData xmpData = first.edit();
+		xmpData.addKeywords("Changed");
+		xmpData.replaceInFile(lightroom.toFile());
+		assertThat(cache.get(lightroom).getKeywords(), Matchers.hasItem("Changed"));
+
+		// an in-place update keeps the size and may keep the timestamp
+		long length = Files.size(lightroom);
+		FileTime lastModified = Files.getLastModifiedTime(lightroom);
+		xmpData.addKeywords("Again");
+		xmpData.replaceInFile(lightroom.toFile());
+		Files.setLastModifiedTime(lightroom, lastModified);
+		assertThat(Files.size(lightroom), Matchers.is(length));
+		assertThat(cache.get(lightroom).getKeywords(), Matchers.hasItem("Again"));
+
+		cache.get(gimp);
+		assertThat(cache.size(), Matchers.is(1));
+		cache.get(lightroom);
+		assertThat(cache.misses(), Matchers.is(5L));
+	}
+
+	private File resource(String resourceName) {
+		return new File(getClass().getClassLoader().getResource(resourceName).getFile());
+	}
+}